@@ -0,0 +1,53 @@
+package se.magnus.api.composite.product;
+
+/**
+ * The outcome of one composite product of a bulk import, see {@link ProductCompositeBulkService}.
+ */
+public class BulkItemStatus {
+
+    public enum Status {
+        /**
+         * The events of the product, its recommendations and reviews are published, the core services create them
+         * asynchronously, as for a single composite product.
+         */
+        ACCEPTED,
+        /**
+         * The composite product is invalid, no events are published.
+         */
+        REJECTED,
+        /**
+         * The events could not be published, some of them may have been published.
+         */
+        FAILED
+    }
+
+    private final int productId;
+
+    private final Status status;
+
+    private final String message;
+
+    public BulkItemStatus() {
+        productId = 0;
+        status = null;
+        message = null;
+    }
+
+    public BulkItemStatus(int productId, Status status, String message) {
+        this.productId = productId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
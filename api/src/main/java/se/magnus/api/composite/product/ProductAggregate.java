@@ -1,6 +1,7 @@
 package se.magnus.api.composite.product;
 
 import java.util.List;
+import se.magnus.api.core.recommendation.RatingSummary;
 
 public class ProductAggregate {
 
@@ -16,6 +17,8 @@ public class ProductAggregate {
 
     private final ServiceAddresses serviceAddresses;
 
+    private final RatingSummary ratings;
+
     public ProductAggregate() {
         productId = 0;
         name = null;
@@ -23,6 +26,7 @@ public class ProductAggregate {
         recommendations = null;
         reviews = null;
         serviceAddresses = null;
+        ratings = null;
     }
     public ProductAggregate(
             int productId,
@@ -32,12 +36,25 @@ public class ProductAggregate {
             List<ReviewSummary> reviews,
             ServiceAddresses serviceAddresses) {
 
+        this(productId, name, weight, recommendations, reviews, serviceAddresses, null);
+    }
+
+    public ProductAggregate(
+            int productId,
+            String name,
+            int weight,
+            List<RecommendationSummary> recommendations,
+            List<ReviewSummary> reviews,
+            ServiceAddresses serviceAddresses,
+            RatingSummary ratings) {
+
         this.productId = productId;
         this.name = name;
         this.weight = weight;
         this.recommendations = recommendations;
         this.reviews = reviews;
         this.serviceAddresses = serviceAddresses;
+        this.ratings = ratings;
     }
 
     public int getProductId() {
@@ -64,5 +81,13 @@ public class ProductAggregate {
         return serviceAddresses;
     }
 
+    /**
+     * The summary of the ratings of the recommendations, only included if the composite service is configured to
+     * include it, see app.composite.include-ratings.
+     */
+    public RatingSummary getRatings() {
+        return ratings;
+    }
+
 
 }
@@ -0,0 +1,37 @@
+package se.magnus.api.composite.product;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import reactor.core.publisher.Flux;
+
+@SecurityRequirement(name = "security_auth")
+@Tag(name = "ProductComposite", description = "REST API for composite product information.")
+public interface ProductCompositeBulkService {
+
+    /**
+     * Sample usage, see below.
+     *
+     * curl -X POST $HOST:$PORT/product-composite/bulk \
+     *   -H "Content-Type: application/x-ndjson" --data-binary @products.ndjson
+     *
+     * @param body the composite products, one JSON document per line
+     * @return the status of each composite product, one JSON document per line in the order of the request
+     */
+    @Operation(
+            summary = "${api.product-composite.create-composite-products.description}",
+            description = "${api.product-composite.create-composite-products.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "400", description = "${api.responseCodes.badRequest.description}")
+    })
+    @PostMapping(
+            value    = "/product-composite/bulk",
+            consumes = "application/x-ndjson",
+            produces = "application/x-ndjson")
+    Flux<BulkItemStatus> createProducts(@RequestBody Flux<ProductAggregate> body);
+}
@@ -0,0 +1,36 @@
+package se.magnus.api.composite.product;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
+
+@SecurityRequirement(name = "security_auth")
+@Tag(name = "ProductComposite", description = "REST API for composite product information.")
+public interface ProductCompositeExportService {
+
+    /**
+     * Sample usage: "curl --compressed $HOST:$PORT/product-composite/export?afterProductId=0".
+     *
+     * An interrupted export is resumed by passing the productId of the last received line as afterProductId.
+     *
+     * @param afterProductId the composite products with a higher productId are exported, 0 to export all of them
+     * @return the composite products in productId order, one JSON document per line
+     */
+    @Operation(
+            summary = "${api.product-composite.export-composite-products.description}",
+            description = "${api.product-composite.export-composite-products.notes}")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.responseCodes.ok.description}"),
+            @ApiResponse(responseCode = "422", description = "${api.responseCodes.unprocessableEntity.description}")
+    })
+    @GetMapping(
+            value = "/product-composite/export",
+            produces = "application/x-ndjson")
+    Flux<ProductAggregate> exportProducts(
+            @RequestParam(value = "afterProductId", required = false, defaultValue = "0") int afterProductId);
+}
@@ -1,6 +1,7 @@
 package se.magnus.api.core.product;
 
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductService {
@@ -37,6 +38,20 @@ public interface ProductService {
                              @RequestParam(value = "delay", required = false, defaultValue = "0") int delay,
                              @RequestParam(value = "faultPercent", required = false, defaultValue = "0") int faultPercent);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/product/range?afterProductId=0&limit=100".
+     *
+     * @param afterProductId the products with a higher productId are returned, 0 to start with the first product
+     * @param limit the max number of products to return, at most 1000
+     * @return the products in productId order, as newline delimited JSON
+     */
+    @GetMapping(
+            value = "/product/range",
+            produces = "application/x-ndjson"
+    )
+    Flux<Product> getProducts(@RequestParam(value = "afterProductId", required = false, defaultValue = "0") int afterProductId,
+                              @RequestParam(value = "limit", required = false, defaultValue = "100") int limit);
+
     /**
      * Sample usage: "curl -X DELETE $HOST:$PORT/product/1".
      *
@@ -0,0 +1,98 @@
+package se.magnus.api.core.recommendation;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The ratings of the recommendations of a product: the number of ratings, their sum, lowest and highest rating, and
+ * the number of recommendations per rating. The minimum, maximum and average are 0 if there are no ratings.
+ */
+public class RatingSummary {
+    private int productId;
+    private int count;
+    private long sum;
+    private int min;
+    private int max;
+    private double average;
+    private Map<Integer, Integer> histogram;
+
+    public RatingSummary() {
+        productId = 0;
+        count = 0;
+        sum = 0;
+        min = 0;
+        max = 0;
+        average = 0;
+        histogram = null;
+    }
+
+    public RatingSummary(int productId, int count, long sum, int min, int max, Map<Integer, Integer> histogram) {
+        this.productId = productId;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.average = count == 0 ? 0 : (double) sum / count;
+        this.histogram = histogram;
+    }
+
+    public static RatingSummary empty(int productId) {
+        return new RatingSummary(productId, 0, 0, 0, 0, new TreeMap<>());
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getAverage() {
+        return average;
+    }
+
+    public Map<Integer, Integer> getHistogram() {
+        return histogram;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public void setMin(int min) {
+        this.min = min;
+    }
+
+    public void setMax(int max) {
+        this.max = max;
+    }
+
+    public void setAverage(double average) {
+        this.average = average;
+    }
+
+    public void setHistogram(Map<Integer, Integer> histogram) {
+        this.histogram = histogram;
+    }
+}
@@ -39,6 +39,35 @@ public interface RecommendationService {
             @RequestParam(value = "productId", required = true)
             int productId);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/rating?productId=1".
+     *
+     * @param productId Id of the product
+     * @return the summary of the ratings of the recommendations of the product, with a count of 0 if it has none
+     */
+    @GetMapping(
+            value = "/recommendation/rating",
+            produces = "application/json"
+    )
+    Mono<RatingSummary> getRatingSummary(
+            @RequestParam(value = "productId", required = true)
+            int productId);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/recommendation/range?afterProductId=0&lastProductId=100".
+     *
+     * @param afterProductId the recommendations of products with a higher productId are returned
+     * @param lastProductId the recommendations of products up to and including this productId are returned
+     * @return the recommendations in productId and recommendationId order, as newline delimited JSON
+     */
+    @GetMapping(
+            value = "/recommendation/range",
+            produces = "application/x-ndjson"
+    )
+    Flux<Recommendation> getRecommendationsInRange(
+            @RequestParam(value = "afterProductId", required = true) int afterProductId,
+            @RequestParam(value = "lastProductId", required = true) int lastProductId);
+
     /**
      * Sample usage: "curl -X DELETE $HOST:$PORT/recommendation?productId=1"
      * @param productId Id of the product
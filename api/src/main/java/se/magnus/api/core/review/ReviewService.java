@@ -37,6 +37,32 @@ public interface ReviewService {
     )
     Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
 
+    /**
+     * Sample usage: "curl $HOST:$PORT/review/range?afterProductId=0&lastProductId=100".
+     *
+     * @param afterProductId the reviews of products with a higher productId are returned
+     * @param lastProductId the reviews of products up to and including this productId are returned
+     * @return the reviews in productId and reviewId order, as newline delimited JSON
+     */
+    @GetMapping(
+            value = "/review/range",
+            produces = "application/x-ndjson"
+    )
+    Flux<Review> getReviewsInRange(@RequestParam(value = "afterProductId", required = true) int afterProductId,
+                                   @RequestParam(value = "lastProductId", required = true) int lastProductId);
+
+    /**
+     * Sample usage: "curl $HOST:$PORT/review/summary?productId=1".
+     *
+     * @param productId Id of the product
+     * @return the number of reviews of the product and its most recent reviews, without loading the reviews
+     */
+    @GetMapping(
+            value = "/review/summary",
+            produces = "application/json"
+    )
+    Mono<ReviewSummary> getReviewSummary(@RequestParam(value = "productId", required = true) int productId);
+
 
     /**
      * Sample usage: "CURL -X DELETE $HOST:$PORT/review?productid=1"
@@ -0,0 +1,69 @@
+package se.magnus.api.core.review;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.datatype.jsr310.ser.ZonedDateTimeSerializer;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The reviews of a product in short: the number of reviews, when the latest review was written and the ids of the
+ * most recent reviews, newest first. The latest review date is null if the product has no reviews.
+ */
+public class ReviewSummary {
+    private int productId;
+    private int count;
+    private ZonedDateTime latestReviewDate;
+    private List<Integer> recentReviewIds;
+
+    public ReviewSummary() {
+        productId = 0;
+        count = 0;
+        latestReviewDate = null;
+        recentReviewIds = null;
+    }
+
+    public ReviewSummary(int productId, int count, ZonedDateTime latestReviewDate, List<Integer> recentReviewIds) {
+        this.productId = productId;
+        this.count = count;
+        this.latestReviewDate = latestReviewDate;
+        this.recentReviewIds = recentReviewIds;
+    }
+
+    public static ReviewSummary empty(int productId) {
+        return new ReviewSummary(productId, 0, null, new ArrayList<>());
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @JsonSerialize(using = ZonedDateTimeSerializer.class)
+    public ZonedDateTime getLatestReviewDate() {
+        return latestReviewDate;
+    }
+
+    public List<Integer> getRecentReviewIds() {
+        return recentReviewIds;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setLatestReviewDate(ZonedDateTime latestReviewDate) {
+        this.latestReviewDate = latestReviewDate;
+    }
+
+    public void setRecentReviewIds(List<Integer> recentReviewIds) {
+        this.recentReviewIds = recentReviewIds;
+    }
+}
@@ -0,0 +1,111 @@
+package se.magnus.microservices.jmh;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import se.magnus.util.collections.ConcurrentIntHashSet;
+import se.magnus.util.collections.ConcurrentIntObjectHashMap;
+
+/**
+ * Lookups and updates of product id keyed state, in the int keyed collections of the util module compared to a
+ * ConcurrentHashMap with Integer keys, using random keys from the whole key range so that most lookups miss the CPU
+ * caches. Run with the GC profiler to compare the allocation rates, e.g.
+ * ./gradlew :jmh:jmh -Pjmh.includes=IntCollectionsBenchmark -Pjmh.profilers=gc
+ *
+ * The update benchmarks replace the value of existing keys, i.e. the maps keep their size over the iterations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@Threads(4)
+public class IntCollectionsBenchmark {
+
+    private static final int LOOKUPS = 1 << 20;
+
+    @Param({"100000", "10000000"})
+    int keyCount;
+
+    private final Object value = new Object();
+
+    private ConcurrentHashMap<Integer, Object> boxedMap;
+    private ConcurrentIntObjectHashMap<Object> intMap;
+    private Map<Integer, Boolean> boxedSet;
+    private ConcurrentIntHashSet intSet;
+
+    private int[] lookups;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boxedMap = new ConcurrentHashMap<>(keyCount);
+        intMap = new ConcurrentIntObjectHashMap<>(keyCount);
+        boxedSet = new ConcurrentHashMap<>(keyCount);
+        intSet = new ConcurrentIntHashSet(keyCount);
+        for (int key = 1; key <= keyCount; key++) {
+            boxedMap.put(key, value);
+            intMap.put(key, value);
+            boxedSet.put(key, Boolean.TRUE);
+            intSet.add(key);
+        }
+
+        // Product ids from the whole range, known before the measurement so that the random generator is not measured
+        Random random = new Random(42);
+        lookups = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = 1 + random.nextInt(keyCount);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        // The threads start at different positions of the lookups
+        private int next = ThreadLocalRandom.current().nextInt(LOOKUPS);
+
+        int next(int[] lookups) {
+            return lookups[next++ & (LOOKUPS - 1)];
+        }
+    }
+
+    @Benchmark
+    public Object boxedMapGet(Cursor cursor) {
+        return boxedMap.get(cursor.next(lookups));
+    }
+
+    @Benchmark
+    public Object intMapGet(Cursor cursor) {
+        return intMap.get(cursor.next(lookups));
+    }
+
+    @Benchmark
+    public Object boxedMapCompute(Cursor cursor) {
+        return boxedMap.compute(cursor.next(lookups), (key, existing) -> value);
+    }
+
+    @Benchmark
+    public Object intMapCompute(Cursor cursor) {
+        return intMap.compute(cursor.next(lookups), existing -> value);
+    }
+
+    @Benchmark
+    public boolean boxedSetContains(Cursor cursor) {
+        return boxedSet.containsKey(cursor.next(lookups));
+    }
+
+    @Benchmark
+    public boolean intSetContains(Cursor cursor) {
+        return intSet.contains(cursor.next(lookups));
+    }
+}
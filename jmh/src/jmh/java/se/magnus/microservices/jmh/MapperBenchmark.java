@@ -0,0 +1,95 @@
+package se.magnus.microservices.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.core.product.persistence.ProductEntity;
+import se.magnus.microservices.core.product.services.ProductMapper;
+import se.magnus.microservices.core.product.services.ProductMapperImpl;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.recommendation.services.RecommendationMapper;
+import se.magnus.microservices.core.recommendation.services.RecommendationMapperImpl;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.services.ReviewMapper;
+import se.magnus.microservices.core.review.services.ReviewMapperImpl;
+
+/**
+ * Conversions between entities and api classes, as done by the core services for every read and write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MapperBenchmark {
+
+    @Param({"1", "10", "1000"})
+    int listSize;
+
+    private final ProductMapper productMapper = new ProductMapperImpl();
+    private final RecommendationMapper recommendationMapper = new RecommendationMapperImpl();
+    private final ReviewMapper reviewMapper = new ReviewMapperImpl();
+
+    private Product product;
+    private ProductEntity productEntity;
+    private List<Recommendation> recommendations;
+    private List<RecommendationEntity> recommendationEntities;
+    private List<Review> reviews;
+    private List<ReviewEntity> reviewEntities;
+
+    @Setup
+    public void setUp() {
+        product = new Product(1, "name", 1, "sa");
+        productEntity = new ProductEntity(1, "name", 1);
+
+        recommendations = new ArrayList<>();
+        recommendationEntities = new ArrayList<>();
+        reviews = new ArrayList<>();
+        reviewEntities = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            recommendations.add(new Recommendation(1, i, "author " + i, i % 5, "content " + i, "sa"));
+            recommendationEntities.add(new RecommendationEntity(1, i, "author " + i, i % 5, "content " + i));
+            reviews.add(new Review(1, i, "author " + i, "subject " + i, "content " + i, "sa"));
+            reviewEntities.add(new ReviewEntity(1, i, "author " + i, "subject " + i, "content " + i));
+        }
+    }
+
+    @Benchmark
+    public Product productEntityToApi() {
+        return productMapper.entityToApi(productEntity);
+    }
+
+    @Benchmark
+    public ProductEntity productApiToEntity() {
+        return productMapper.apiToEntity(product);
+    }
+
+    @Benchmark
+    public List<Recommendation> recommendationEntityListToApiList() {
+        return recommendationMapper.entityListToApiList(recommendationEntities);
+    }
+
+    @Benchmark
+    public List<RecommendationEntity> recommendationApiListToEntityList() {
+        return recommendationMapper.apiListToEntityList(recommendations);
+    }
+
+    @Benchmark
+    public List<Review> reviewEntityListToApiList() {
+        return reviewMapper.entityListToApiList(reviewEntities);
+    }
+
+    @Benchmark
+    public List<ReviewEntity> reviewApiListToEntityList() {
+        return reviewMapper.apiListToEntityList(reviews);
+    }
+}
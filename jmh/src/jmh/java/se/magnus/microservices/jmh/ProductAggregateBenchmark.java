@@ -0,0 +1,56 @@
+package se.magnus.microservices.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.readmodel.ProductAggregateReadModel;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+
+/**
+ * Assembly of the composite response from the responses of the core services, i.e. without any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductAggregateBenchmark {
+
+    @Param({"0", "10", "1000", "100000"})
+    int reviewCount;
+
+    private final ProductCompositeServiceImpl service = new ProductCompositeServiceImpl(
+            null, null, null, new DefaultListableBeanFactory().getBeanProvider(ProductAggregateReadModel.class), false, 100, 3);
+
+    private Product product;
+    private List<Recommendation> recommendations;
+    private List<Review> reviews;
+
+    @Setup
+    public void setUp() {
+        product = new Product(1, "name", 1, "product");
+
+        recommendations = new ArrayList<>();
+        reviews = new ArrayList<>();
+        for (int i = 0; i < reviewCount; i++) {
+            recommendations.add(new Recommendation(1, i, "author " + i, i % 5, "content " + i, "recommendation"));
+            reviews.add(new Review(1, i, "author " + i, "subject " + i, "content " + i, "review"));
+        }
+    }
+
+    @Benchmark
+    public ProductAggregate createProductAggregate() {
+        return service.createProductAggregate(product, recommendations, reviews, "composite");
+    }
+}
@@ -0,0 +1,100 @@
+package se.magnus.microservices.jmh;
+
+import static se.magnus.api.event.Event.Type.CREATE;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+import se.magnus.util.http.HttpErrorInfo;
+
+/**
+ * Jackson serialization of the messages sent to the core services, the composite response and error responses.
+ * The ObjectMapper is configured the same way as in the Spring Boot applications.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializationBenchmark {
+
+    private static final TypeReference<Event<Integer, Product>> PRODUCT_EVENT_TYPE = new TypeReference<Event<Integer, Product>>() {};
+
+    @Param({"0", "10", "1000"})
+    int listSize;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private Event<Integer, Product> productEvent;
+    private String productEventJson;
+    private ProductAggregate productAggregate;
+    private String productAggregateJson;
+    private HttpErrorInfo httpErrorInfo;
+    private String httpErrorInfoJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        productEvent = new Event<>(CREATE, 1, new Product(1, "name", 1, null));
+        productEventJson = mapper.writeValueAsString(productEvent);
+
+        List<RecommendationSummary> recommendations = new ArrayList<>();
+        List<ReviewSummary> reviews = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            recommendations.add(new RecommendationSummary(i, "author " + i, i % 5, "content " + i));
+            reviews.add(new ReviewSummary(i, "author " + i, "subject " + i, "content " + i));
+        }
+        productAggregate = new ProductAggregate(1, "name", 1, recommendations, reviews,
+                new ServiceAddresses("composite", "product", "review", "recommendation"));
+        productAggregateJson = mapper.writeValueAsString(productAggregate);
+
+        httpErrorInfo = new HttpErrorInfo(HttpStatus.NOT_FOUND, "/product/1", "No product found for productId: 1");
+        httpErrorInfoJson = mapper.writeValueAsString(httpErrorInfo);
+    }
+
+    @Benchmark
+    public String serializeProductEvent() throws JsonProcessingException {
+        return mapper.writeValueAsString(productEvent);
+    }
+
+    @Benchmark
+    public Event<Integer, Product> deserializeProductEvent() throws JsonProcessingException {
+        return mapper.readValue(productEventJson, PRODUCT_EVENT_TYPE);
+    }
+
+    @Benchmark
+    public String serializeProductAggregate() throws JsonProcessingException {
+        return mapper.writeValueAsString(productAggregate);
+    }
+
+    @Benchmark
+    public ProductAggregate deserializeProductAggregate() throws JsonProcessingException {
+        return mapper.readValue(productAggregateJson, ProductAggregate.class);
+    }
+
+    @Benchmark
+    public String serializeHttpErrorInfo() throws JsonProcessingException {
+        return mapper.writeValueAsString(httpErrorInfo);
+    }
+
+    @Benchmark
+    public HttpErrorInfo deserializeHttpErrorInfo() throws JsonProcessingException {
+        return mapper.readValue(httpErrorInfoJson, HttpErrorInfo.class);
+    }
+}
@@ -0,0 +1,158 @@
+package se.magnus.loadtest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Spring Boot application started in its own class loader, i.e. isolated from the other services in this JVM.
+ *
+ * All services scan the se.magnus package for components, so they can't share a class loader without picking up each
+ * other's beans. The application context is only accessed through reflection, and only JDK types are passed in and out,
+ * since Spring classes loaded by different class loaders are different classes.
+ *
+ * Each service is started with the test binder, whose in-memory destinations are used to pass messages between the
+ * services, see {@link #send(String, byte[])} and {@link #receive(String, long)}.
+ */
+public class IsolatedService implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IsolatedService.class);
+
+    private static final String TEST_BINDER_CONFIGURATION = "org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration";
+
+    private final String name;
+    private final URLClassLoader classLoader;
+
+    private Object context;
+    private Object inputDestination;
+    private Object outputDestination;
+    private Method withPayload;
+    private Method setHeader;
+    private Method build;
+    private Method send;
+    private Method receive;
+    private Method getPayload;
+
+    public IsolatedService(String name, String classpath) {
+        this.name = name;
+        this.classLoader = new URLClassLoader(toUrls(classpath), ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void start(String mainClass, List<String> args) {
+        LOG.info("Starts the {} service", name);
+
+        Thread thread = Thread.currentThread();
+        ClassLoader previousClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            Class<?> springApplicationClass = classLoader.loadClass("org.springframework.boot.SpringApplication");
+            Class<?>[] primarySources = {classLoader.loadClass(mainClass), classLoader.loadClass(TEST_BINDER_CONFIGURATION)};
+            Object application = springApplicationClass.getConstructor(Class[].class).newInstance((Object) primarySources);
+            context = springApplicationClass.getMethod("run", String[].class).invoke(application, (Object) args.toArray(new String[0]));
+
+            Class<?> inputDestinationClass = classLoader.loadClass("org.springframework.cloud.stream.binder.test.InputDestination");
+            Class<?> outputDestinationClass = classLoader.loadClass("org.springframework.cloud.stream.binder.test.OutputDestination");
+            Class<?> messageClass = classLoader.loadClass("org.springframework.messaging.Message");
+            Class<?> messageBuilderClass = classLoader.loadClass("org.springframework.messaging.support.MessageBuilder");
+
+            inputDestination = getBean(inputDestinationClass);
+            outputDestination = getBean(outputDestinationClass);
+            withPayload = messageBuilderClass.getMethod("withPayload", Object.class);
+            setHeader = messageBuilderClass.getMethod("setHeader", String.class, Object.class);
+            build = messageBuilderClass.getMethod("build");
+            send = inputDestinationClass.getMethod("send", messageClass, String.class);
+            receive = outputDestinationClass.getMethod("receive", long.class, String.class);
+            getPayload = messageClass.getMethod("getPayload");
+
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException("Failed to start the " + name + " service", unwrap(roe));
+        } finally {
+            thread.setContextClassLoader(previousClassLoader);
+        }
+
+        LOG.info("The {} service is started on port {}", name, getPort());
+    }
+
+    public int getPort() {
+        try {
+            Object environment = context.getClass().getMethod("getEnvironment").invoke(context);
+            Object port = environment.getClass().getMethod("getProperty", String.class).invoke(environment, "local.server.port");
+            return Integer.parseInt((String) port);
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException("Failed to get the port of the " + name + " service", unwrap(roe));
+        }
+    }
+
+    /**
+     * Sends a JSON message to a destination of this service, i.e. as if it was received from the message broker.
+     */
+    public void send(String destination, byte[] payload) {
+        try {
+            Object builder = withPayload.invoke(null, (Object) payload);
+            setHeader.invoke(builder, "contentType", "application/json");
+            send.invoke(inputDestination, build.invoke(builder), destination);
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException("Failed to send a message to " + destination + " in the " + name + " service", unwrap(roe));
+        }
+    }
+
+    /**
+     * Receives the next message this service has published to a destination, or null if none arrives within the timeout.
+     */
+    public byte[] receive(String destination, long timeoutMillis) {
+        try {
+            Object message = receive.invoke(outputDestination, timeoutMillis, destination);
+            return message == null ? null : (byte[]) getPayload.invoke(message);
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException("Failed to receive a message from " + destination + " in the " + name + " service", unwrap(roe));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (context != null) {
+            LOG.info("Stops the {} service", name);
+            try {
+                context.getClass().getMethod("close").invoke(context);
+            } catch (ReflectiveOperationException roe) {
+                LOG.warn("Failed to stop the {} service: {}", name, unwrap(roe).toString());
+            }
+        }
+        classLoader.close();
+    }
+
+    private Object getBean(Class<?> type) throws ReflectiveOperationException {
+        return context.getClass().getMethod("getBean", Class.class).invoke(context, type);
+    }
+
+    private static Throwable unwrap(ReflectiveOperationException roe) {
+        return roe instanceof InvocationTargetException ? roe.getCause() : roe;
+    }
+
+    private static URL[] toUrls(String classpath) {
+        List<URL> urls = new ArrayList<>();
+        for (String path : classpath.split(File.pathSeparator)) {
+            if (!path.isEmpty()) {
+                try {
+                    urls.add(new File(path).toURI().toURL());
+                } catch (MalformedURLException mue) {
+                    throw new IllegalArgumentException("Invalid classpath element: " + path, mue);
+                }
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+}
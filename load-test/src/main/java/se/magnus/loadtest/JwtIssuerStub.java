@@ -0,0 +1,85 @@
+package se.magnus.loadtest;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.Date;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Stands in for the authorization server: issues signed access tokens and serves the JWK set used to verify them.
+ */
+public class JwtIssuerStub implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwtIssuerStub.class);
+
+    private static final String JWK_SET_PATH = "/oauth2/jwks";
+
+    private final RSAKey key;
+    private final DisposableServer server;
+
+    public JwtIssuerStub() {
+        try {
+            this.key = new RSAKeyGenerator(2048).keyID("load-test").generate();
+        } catch (JOSEException je) {
+            throw new IllegalStateException("Failed to generate a signing key", je);
+        }
+
+        String jwkSet = new JWKSet(key.toPublicJWK()).toString();
+        this.server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get(JWK_SET_PATH, (request, response) -> response
+                        .header("Content-Type", "application/json")
+                        .sendString(Mono.just(jwkSet))))
+                .bindNow();
+
+        LOG.info("Serves the JWK set on: {}", getJwkSetUri());
+    }
+
+    public String getIssuer() {
+        return "http://localhost:" + server.port();
+    }
+
+    public String getJwkSetUri() {
+        return getIssuer() + JWK_SET_PATH;
+    }
+
+    public String issueToken(String subject, String scope, Duration timeToLive) {
+        long now = System.currentTimeMillis();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(getIssuer())
+                .subject(subject)
+                .audience(subject)
+                .claim("scope", scope)
+                .issueTime(new Date(now))
+                .notBeforeTime(new Date(now))
+                .expirationTime(new Date(now + timeToLive.toMillis()))
+                .build();
+
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        try {
+            jwt.sign(new RSASSASigner(key));
+        } catch (JOSEException je) {
+            throw new IllegalStateException("Failed to sign the access token", je);
+        }
+        return jwt.serialize();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,93 @@
+package se.magnus.loadtest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latencies, in microseconds, and response status counts per operation of a load test run.
+ */
+public class LatencyReport {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> statusCounts = new ConcurrentHashMap<>();
+
+    private long startNanos;
+    private long stopNanos;
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void stop() {
+        stopNanos = System.nanoTime();
+    }
+
+    Recorder recorder(String operation) {
+        return recorders.computeIfAbsent(operation, key -> new Recorder(SIGNIFICANT_DIGITS));
+    }
+
+    void countStatus(String operation, Object status) {
+        statusCounts.computeIfAbsent(operation + " " + status, key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Prints throughput and latency percentiles per operation, in milliseconds, followed by the response status counts.
+     * If a report folder is given, the full latency distribution of each operation is written to it.
+     */
+    public void print(PrintStream out, String reportDir) throws IOException {
+        double seconds = (stopNanos - startNanos) / 1e9;
+        Map<String, Histogram> histograms = new TreeMap<>();
+        recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+
+        out.printf("%nMeasured for %.1f s%n%n", seconds);
+        out.printf("%-10s %10s %12s %10s %10s %10s %10s %10s%n", "operation", "count", "ops/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        histograms.forEach((operation, histogram) -> {
+            printRow(out, operation, histogram, seconds);
+            total.add(histogram);
+        });
+        printRow(out, "total", total, seconds);
+
+        out.printf("%nResponses:%n");
+        new TreeMap<>(statusCounts).forEach((status, count) -> out.printf("  %-30s %10d%n", status, count.sum()));
+
+        if (reportDir != null) {
+            Path dir = Files.createDirectories(Paths.get(reportDir));
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                Path file = dir.resolve(entry.getKey() + ".hgrm");
+                try (PrintStream histogramOut = new PrintStream(file.toFile())) {
+                    entry.getValue().outputPercentileDistribution(histogramOut, 1000.0);
+                } catch (FileNotFoundException fnfe) {
+                    throw new IOException("Failed to write " + file, fnfe);
+                }
+                out.printf("Wrote the latency distribution of %s to %s%n", entry.getKey(), file);
+            }
+        }
+    }
+
+    private static void printRow(PrintStream out, String operation, Histogram histogram, double seconds) {
+        out.printf("%-10s %10d %12.1f %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                operation,
+                histogram.getTotalCount(),
+                histogram.getTotalCount() / seconds,
+                histogram.getValueAtPercentile(50.0) / 1000.0,
+                histogram.getValueAtPercentile(90.0) / 1000.0,
+                histogram.getValueAtPercentile(99.0) / 1000.0,
+                histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMaxValue() / 1000.0);
+    }
+}
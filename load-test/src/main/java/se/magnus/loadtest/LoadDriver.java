@@ -0,0 +1,159 @@
+package se.magnus.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+
+/**
+ * Drives a mix of reads and writes against the composite service from a fixed number of closed loop workers, i.e. each
+ * worker sends its next request as soon as the previous one is completed.
+ *
+ * Reads get one of the seeded products, writes create new products. The latency of each request is recorded in
+ * microseconds, per operation, from the time the request is sent until the response body is received.
+ */
+public class LoadDriver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadDriver.class);
+
+    private static final Duration SEED_TIMEOUT = Duration.ofSeconds(60);
+
+    private final LoadTestOptions options;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicInteger nextProductId;
+
+    public LoadDriver(String baseUrl, String accessToken, LoadTestOptions options) {
+        this.options = options;
+        this.nextProductId = new AtomicInteger(options.getProducts() + 1);
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("load-test")
+                .maxConnections(options.getConcurrency())
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.client = HttpClient.create(connectionProvider)
+                .baseUrl(baseUrl)
+                .headers(headers -> headers
+                        .set("Authorization", "Bearer " + accessToken)
+                        .set("Accept", "application/json"));
+    }
+
+    /**
+     * Creates the products that the reads are spread over and waits until they are all readable, i.e. until the
+     * core services have processed the create events.
+     */
+    public void seed() {
+        LOG.info("Creates {} products", options.getProducts());
+        Flux.range(1, options.getProducts())
+                .flatMap(productId -> createProduct(productId).doOnNext(status -> {
+                    if (status != 202) {
+                        throw new IllegalStateException("Failed to create product " + productId + ", status: " + status);
+                    }
+                }), options.getConcurrency())
+                .then()
+                .block();
+
+        LOG.info("Waits for the products to be readable");
+        Flux.range(1, options.getProducts())
+                .concatMap(productId -> getProduct(productId)
+                        .filter(status -> status == 200)
+                        .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100))))
+                .then()
+                .timeout(SEED_TIMEOUT)
+                .block();
+    }
+
+    /**
+     * Runs the load for the given duration and returns the measurements.
+     */
+    public LatencyReport run(Duration duration) {
+        LatencyReport report = new LatencyReport();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        report.start();
+        Flux.range(0, options.getConcurrency())
+                .flatMap(worker -> Mono.defer(() -> nextRequest(report))
+                        .repeat(() -> System.nanoTime() < deadline)
+                        .then(), options.getConcurrency())
+                .then()
+                .block();
+        report.stop();
+
+        return report;
+    }
+
+    private Mono<Integer> nextRequest(LatencyReport report) {
+        boolean read = ThreadLocalRandom.current().nextDouble() < options.getReadRatio();
+        String operation = read ? "read" : "write";
+        Recorder recorder = report.recorder(operation);
+
+        Mono<Integer> request = read
+                ? getProduct(ThreadLocalRandom.current().nextInt(options.getProducts()) + 1)
+                : createProduct(nextProductId.getAndIncrement());
+
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request
+                    .doOnNext(status -> {
+                        recorder.recordValue((System.nanoTime() - start) / 1000);
+                        report.countStatus(operation, status);
+                    })
+                    .onErrorResume(error -> {
+                        report.countStatus(operation, error.getClass().getSimpleName());
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private Mono<Integer> getProduct(int productId) {
+        return client.get()
+                .uri("/product-composite/" + productId)
+                .responseSingle((response, body) -> body.asByteArray().then(Mono.just(response.status().code())));
+    }
+
+    private Mono<Integer> createProduct(int productId) {
+        String json = toJson(createAggregate(productId));
+        return client
+                .headers(headers -> headers.set("Content-Type", "application/json"))
+                .post()
+                .uri("/product-composite")
+                .send(ByteBufFlux.fromString(Mono.just(json)))
+                .responseSingle((response, body) -> body.asByteArray().then(Mono.just(response.status().code())));
+    }
+
+    private ProductAggregate createAggregate(int productId) {
+        List<RecommendationSummary> recommendations = new ArrayList<>(options.getRecommendations());
+        for (int i = 1; i <= options.getRecommendations(); i++) {
+            recommendations.add(new RecommendationSummary(i, "author " + i, i % 5 + 1, "content " + i));
+        }
+
+        List<ReviewSummary> reviews = new ArrayList<>(options.getReviews());
+        for (int i = 1; i <= options.getReviews(); i++) {
+            reviews.add(new ReviewSummary(i, "author " + i, "subject " + i, "content " + i));
+        }
+
+        return new ProductAggregate(productId, "product " + productId, productId % 100, recommendations, reviews, null);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException jpe) {
+            throw new IllegalStateException(jpe);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package se.magnus.loadtest;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Boots the composite and core services in this JVM and runs a load test against the composite service.
+ *
+ * The infrastructure is replaced with in-process stand-ins: embedded MongoDB for the product and recommendation
+ * services, H2 in MySQL mode for the review service, the Spring Cloud Stream test binder, with a {@link MessageForwarder}
+ * per topic, for the message broker and a {@link JwtIssuerStub} for the authorization server. The composite service
+ * finds the core services through the simple discovery client instead of Eureka, and the gateway is not involved.
+ *
+ * The services are configured by the config-repo, read from disk instead of from the config server, overridden by the
+ * settings below.
+ * Classpaths and the config-repo location are given as system properties by the loadTest task, see load-test/build.gradle.
+ */
+public class LoadTestApplication {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTestApplication.class);
+
+    private static final String EMBEDDED_MONGO_VERSION = "4.4.2";
+
+    private static final List<String> TOPICS = Arrays.asList("products", "recommendations", "reviews");
+
+    public static void main(String[] args) throws IOException {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        String configRepo = requiredProperty("loadtest.config-repo");
+
+        LOG.info("Starts a load test with {}", options);
+
+        try (JwtIssuerStub issuer = new JwtIssuerStub();
+             IsolatedService product = new IsolatedService("product", requiredProperty("loadtest.classpath.product"));
+             IsolatedService recommendation = new IsolatedService("recommendation", requiredProperty("loadtest.classpath.recommendation"));
+             IsolatedService review = new IsolatedService("review", requiredProperty("loadtest.classpath.review"));
+             IsolatedService composite = new IsolatedService("composite", requiredProperty("loadtest.classpath.composite"))) {
+
+            product.start("se.magnus.microservices.core.product.ProductServiceApplication",
+                    serviceArgs("product", configRepo,
+                            "--spring.data.mongodb.port=0",
+                            "--spring.mongodb.embedded.version=" + EMBEDDED_MONGO_VERSION));
+
+            recommendation.start("se.magnus.microservices.core.recommendation.RecommendationServiceApplication",
+                    serviceArgs("recommendation", configRepo,
+                            "--spring.data.mongodb.port=0",
+                            "--spring.mongodb.embedded.version=" + EMBEDDED_MONGO_VERSION));
+
+            review.start("se.magnus.microservices.core.review.ReviewServiceApplication",
+                    serviceArgs("review", configRepo,
+                            "--spring.datasource.url=jdbc:h2:mem:review-db;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                            "--spring.datasource.driver-class-name=org.h2.Driver",
+                            "--spring.datasource.username=sa",
+                            "--spring.datasource.password="));
+
+            composite.start("se.magnus.microservices.composite.product.ProductCompositeServiceApplication",
+                    serviceArgs("product-composite", configRepo,
+                            "--spring.cloud.discovery.client.simple.instances.product[0].uri=http://localhost:" + product.getPort(),
+                            "--spring.cloud.discovery.client.simple.instances.recommendation[0].uri=http://localhost:" + recommendation.getPort(),
+                            "--spring.cloud.discovery.client.simple.instances.review[0].uri=http://localhost:" + review.getPort(),
+                            "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + issuer.getIssuer(),
+                            "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + issuer.getJwkSetUri(),
+                            "--springdoc.swagger-ui.oauth.clientSecret="));
+
+            List<MessageForwarder> forwarders = new ArrayList<>();
+            forwarders.add(new MessageForwarder(composite, product, "products"));
+            forwarders.add(new MessageForwarder(composite, recommendation, "recommendations"));
+            forwarders.add(new MessageForwarder(composite, review, "reviews"));
+            forwarders.forEach(MessageForwarder::start);
+
+            try {
+                String accessToken = issuer.issueToken("load-test", "product:read product:write",
+                        options.getWarmup().plus(options.getDuration()).plus(Duration.ofHours(1)));
+                LoadDriver driver = new LoadDriver("http://localhost:" + composite.getPort(), accessToken, options);
+
+                driver.seed();
+
+                LOG.info("Warms up for {}", options.getWarmup());
+                driver.run(options.getWarmup());
+
+                LOG.info("Measures for {}", options.getDuration());
+                LatencyReport report = driver.run(options.getDuration());
+                report.print(System.out, options.getReportDir());
+
+            } finally {
+                forwarders.forEach(MessageForwarder::close);
+            }
+        }
+    }
+
+    /**
+     * Command line arguments of a service, i.e. taking precedence over the config-repo.
+     */
+    private static List<String> serviceArgs(String applicationName, String configRepo, String... extraArgs) {
+        List<String> args = new ArrayList<>(Arrays.asList(
+                // Replaces the application.yml of the service, that imports the config from the config server
+                "--spring.config.location=file:" + configRepo + "/",
+                "--spring.config.name=application," + applicationName,
+                "--spring.application.name=" + applicationName,
+                "--spring.cloud.config.enabled=false",
+                "--eureka.client.enabled=false",
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.zipkin.enabled=false",
+                "--management.health.rabbit.enabled=false",
+
+                // The encrypted values in the config-repo are only used to connect to infrastructure that is not used here
+                "--encrypt.fail-on-error=false",
+                "--app.eureka-password=",
+                "--spring.rabbitmq.password=",
+
+                "--logging.level.root=WARN",
+                "--logging.level.se.magnus=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+                "--logging.level.org.springframework.data.mongodb.core.ReactiveMongoTemplate=WARN",
+                "--logging.level.org.springframework.web.server.adapter.HttpWebHandlerAdapter=WARN"));
+        args.addAll(Arrays.asList(extraArgs));
+        return args;
+    }
+
+    private static String requiredProperty(String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            throw new IllegalStateException("Missing system property " + name + ", run the load test with: ./gradlew :load-test:loadTest");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,140 @@
+package se.magnus.loadtest;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Options of a load test run, given as --name=value arguments:
+ *
+ * --duration=60s          how long to measure, after the warmup
+ * --warmup=15s            how long to run the load before measuring, to let the JIT and the caches warm up
+ * --concurrency=32        number of concurrent requests, i.e. closed loop workers
+ * --read-ratio=0.9        share of the requests that are reads, the rest creates new products
+ * --products=100          number of products created before the load starts, that the reads are spread over
+ * --recommendations=3     number of recommendations per product
+ * --reviews=3             number of reviews per product
+ * --report-dir=path       if set, the latency histograms are also written to this folder, in the HdrHistogram format
+ */
+public class LoadTestOptions {
+
+    private Duration duration = Duration.ofSeconds(60);
+    private Duration warmup = Duration.ofSeconds(15);
+    private int concurrency = 32;
+    private double readRatio = 0.9;
+    private int products = 100;
+    private int recommendations = 3;
+    private int reviews = 3;
+    private String reportDir;
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (arg.isEmpty()) {
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Invalid argument, expected --name=value: " + arg);
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+
+            switch (name) {
+                case "duration":
+                    options.duration = parseDuration(value);
+                    break;
+                case "warmup":
+                    options.warmup = parseDuration(value);
+                    break;
+                case "concurrency":
+                    options.concurrency = parsePositive(name, value);
+                    break;
+                case "read-ratio":
+                    options.readRatio = Double.parseDouble(value);
+                    if (options.readRatio < 0.0 || options.readRatio > 1.0) {
+                        throw new IllegalArgumentException("Invalid read-ratio, must be between 0 and 1: " + value);
+                    }
+                    break;
+                case "products":
+                    options.products = parsePositive(name, value);
+                    break;
+                case "recommendations":
+                    options.recommendations = Integer.parseInt(value);
+                    break;
+                case "reviews":
+                    options.reviews = Integer.parseInt(value);
+                    break;
+                case "report-dir":
+                    options.reportDir = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + name);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Parses durations like 500ms, 30s, 5m or the ISO-8601 format, e.g. PT30S.
+     */
+    static Duration parseDuration(String value) {
+        String lowerCase = value.trim().toLowerCase(Locale.ROOT);
+        if (lowerCase.startsWith("pt")) {
+            return Duration.parse(value);
+        } else if (lowerCase.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 2)));
+        } else if (lowerCase.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 1)));
+        } else if (lowerCase.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 1)));
+        } else {
+            return Duration.ofSeconds(Long.parseLong(lowerCase));
+        }
+    }
+
+    private static int parsePositive(String name, String value) {
+        int number = Integer.parseInt(value);
+        if (number < 1) {
+            throw new IllegalArgumentException("Invalid " + name + ", must be positive: " + value);
+        }
+        return number;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public double getReadRatio() {
+        return readRatio;
+    }
+
+    public int getProducts() {
+        return products;
+    }
+
+    public int getRecommendations() {
+        return recommendations;
+    }
+
+    public int getReviews() {
+        return reviews;
+    }
+
+    public String getReportDir() {
+        return reportDir;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("duration: %s, warmup: %s, concurrency: %d, read-ratio: %.2f, products: %d, recommendations: %d, reviews: %d",
+                duration, warmup, concurrency, readRatio, products, recommendations, reviews);
+    }
+}
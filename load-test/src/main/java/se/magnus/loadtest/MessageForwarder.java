@@ -0,0 +1,68 @@
+package se.magnus.loadtest;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Plays the role of the message broker for one destination, i.e. forwards the messages published by one service to
+ * the service consuming them.
+ */
+public class MessageForwarder implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MessageForwarder.class);
+
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
+    private final IsolatedService from;
+    private final IsolatedService to;
+    private final String destination;
+    private final Thread thread;
+    private final AtomicLong forwardedCount = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public MessageForwarder(IsolatedService from, IsolatedService to, String destination) {
+        this.from = from;
+        this.to = to;
+        this.destination = destination;
+        this.thread = new Thread(this::forward, "forward-" + destination);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        LOG.info("Forwards messages to {} from the {} service to the {} service", destination, from.getName(), to.getName());
+        thread.start();
+    }
+
+    public long getForwardedCount() {
+        return forwardedCount.get();
+    }
+
+    private void forward() {
+        while (running) {
+            try {
+                byte[] payload = from.receive(destination, POLL_TIMEOUT_MILLIS);
+                if (payload != null) {
+                    to.send(destination, payload);
+                    forwardedCount.incrementAndGet();
+                }
+            } catch (RuntimeException re) {
+                // The consumer has already retried the message, same as a broker with a dead letter queue we move on
+                LOG.warn("Failed to forward a message to {}: {}", destination, re.toString());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join(POLL_TIMEOUT_MILLIS * 10);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        LOG.info("Forwarded {} messages to {}", forwardedCount.get(), destination);
+    }
+}
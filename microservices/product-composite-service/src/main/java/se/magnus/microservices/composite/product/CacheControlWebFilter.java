@@ -0,0 +1,68 @@
+package se.magnus.microservices.composite.product;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marks successful composite reads as cacheable by shared caches, i.e. the response cache in the edge server.
+ *
+ * Spring Security adds "Cache-Control: no-cache, no-store" to every response by default, which would prevent the
+ * edge server from ever caching a composite product. The header is replaced just before the response is committed,
+ * after Spring Security has written its defaults.
+ *
+ * The export is a stream of the whole catalogue. It is marked no-store, so the edge server passes it through instead
+ * of collecting it to cache it.
+ */
+@Component
+public class CacheControlWebFilter implements WebFilter {
+
+    private static final String PRODUCT_COMPOSITE_PATH = "/product-composite/";
+    private static final String EXPORT_PATH = "/product-composite/export";
+
+    private final int sharedMaxAge;
+
+    @Autowired
+    public CacheControlWebFilter(@Value("${app.cache-control.shared-max-age:30}") int sharedMaxAge) {
+        this.sharedMaxAge = sharedMaxAge;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+
+        String path = exchange.getRequest().getPath().value();
+        if (exchange.getRequest().getMethod() != HttpMethod.GET || !path.startsWith(PRODUCT_COMPOSITE_PATH)) {
+            return chain.filter(exchange);
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        if (path.equals(EXPORT_PATH)) {
+            response.beforeCommit(() -> {
+                response.getHeaders().setCacheControl(CacheControl.noStore());
+                return Mono.empty();
+            });
+
+        } else if (sharedMaxAge > 0) {
+            response.beforeCommit(() -> {
+                if (response.getStatusCode() == HttpStatus.OK) {
+                    HttpHeaders headers = response.getHeaders();
+                    headers.setCacheControl("s-maxage=" + sharedMaxAge);
+                    headers.remove(HttpHeaders.PRAGMA);
+                    headers.remove(HttpHeaders.EXPIRES);
+                }
+                return Mono.empty();
+            });
+        }
+
+        return chain.filter(exchange);
+    }
+}
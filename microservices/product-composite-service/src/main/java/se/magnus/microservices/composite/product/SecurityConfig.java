@@ -3,15 +3,25 @@ package se.magnus.microservices.composite.product;
 import static org.springframework.http.HttpMethod.*;
 
 import org.springframework.context.annotation.Bean;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import se.magnus.microservices.composite.product.audit.AuthorizationAuditor;
 
 @EnableWebFluxSecurity
 public class SecurityConfig {
 
     @Bean
-    SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+    SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http, ReactiveJwtDecoder jwtDecoder, AuthorizationAuditor auditor) {
+
+        // Hands each successful authentication over to the auditor, instead of looking up the security context per request
+        ReactiveAuthenticationManager jwtAuthenticationManager = new JwtReactiveAuthenticationManager(jwtDecoder);
+        ReactiveAuthenticationManager auditingAuthenticationManager = authentication ->
+                jwtAuthenticationManager.authenticate(authentication).doOnNext(auditor::record);
+
         http
                 .authorizeExchange()
                 .pathMatchers("/openapi/**").permitAll()
@@ -23,7 +33,8 @@ public class SecurityConfig {
                 .anyExchange().authenticated()
                 .and()
                 .oauth2ResourceServer()
-                .jwt();
+                .jwt()
+                .authenticationManager(auditingAuthenticationManager);
         return http.build();
     }
 }
\ No newline at end of file
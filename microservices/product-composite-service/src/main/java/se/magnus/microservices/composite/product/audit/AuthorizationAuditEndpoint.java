@@ -0,0 +1,27 @@
+package se.magnus.microservices.composite.product.audit;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the counters and most recent records of the {@link AuthorizationAuditor} on /actuator/authorizationaudit.
+ */
+@Component
+@Endpoint(id = "authorizationaudit")
+public class AuthorizationAuditEndpoint {
+
+    private final AuthorizationAuditor auditor;
+
+    @Autowired
+    public AuthorizationAuditEndpoint(AuthorizationAuditor auditor) {
+        this.auditor = auditor;
+    }
+
+    @ReadOperation
+    public Map<String, Object> authorizationAudit() {
+        return auditor.getSummary();
+    }
+}
@@ -0,0 +1,213 @@
+package se.magnus.microservices.composite.product.audit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Records authorization info, i.e. subject, scopes, expiry, issuer and audience of the JWT used by a caller, outside of
+ * the request processing.
+ *
+ * Authentications are sampled and put on a bounded queue, which is drained in batches by a single background thread.
+ * If the queue is full, the authorization info is dropped instead of slowing down the request. The most recent records,
+ * the number of records of the most recently seen subjects and a few counters are available through the
+ * authorizationaudit actuator endpoint.
+ */
+@Component
+public class AuthorizationAuditor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizationAuditor.class);
+
+    private final double sampleRate;
+    private final int batchSize;
+    private final int recentRecordsSize;
+
+    private final BlockingQueue<AuthorizationRecord> queue;
+    private final Deque<AuthorizationRecord> recentRecords = new ArrayDeque<>();
+    private final Map<String, Long> recordsPerSubject;
+
+    private final AtomicLong authenticationCount = new AtomicLong();
+    private final AtomicLong sampledCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong evictedSubjectsCount = new AtomicLong();
+
+    private final Scheduler scheduler;
+    private final Disposable drainer;
+
+    @Autowired
+    public AuthorizationAuditor(
+            @Value("${app.authorization-audit.sample-rate:0.01}") double sampleRate,
+            @Value("${app.authorization-audit.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.authorization-audit.batch-size:500}") int batchSize,
+            @Value("${app.authorization-audit.flush-interval:1s}") Duration flushInterval,
+            @Value("${app.authorization-audit.recent-records:100}") int recentRecordsSize,
+            @Value("${app.authorization-audit.max-subjects:1000}") int maxSubjects) {
+
+        this.sampleRate = sampleRate;
+        this.batchSize = batchSize;
+        this.recentRecordsSize = recentRecordsSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        // A LinkedHashMap in access order evicts the least recently seen subject once maxSubjects is reached, guarded
+        // by the lock on recentRecords
+        this.recordsPerSubject = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > maxSubjects) {
+                    evictedSubjectsCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        LOG.info("Audits authorization info with sample rate: {}, queue capacity: {}, batch size: {}, flush interval: {}",
+                sampleRate, queueCapacity, batchSize, flushInterval);
+
+        this.scheduler = Schedulers.newSingle("authorization-audit", true);
+        this.drainer = Flux.interval(flushInterval, scheduler)
+                .onBackpressureDrop()
+                .subscribe(tick -> drain());
+    }
+
+    /**
+     * Called for each successful authentication, must be cheap since it is on the request path.
+     */
+    public void record(Authentication authentication) {
+        authenticationCount.incrementAndGet();
+
+        if (!(authentication instanceof JwtAuthenticationToken)) {
+            return;
+        }
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        sampledCount.incrementAndGet();
+        if (!queue.offer(new AuthorizationRecord(((JwtAuthenticationToken) authentication).getToken()))) {
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drains the queue, in batches, and records the authorization info of each sampled authentication.
+     */
+    void drain() {
+        List<AuthorizationRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            recordBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void recordBatch(List<AuthorizationRecord> batch) {
+        LOG.debug("Records a batch of {} authorizations", batch.size());
+
+        synchronized (recentRecords) {
+            for (AuthorizationRecord record : batch) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Authorization info: Subject: {}, scopes: {}, expires {}: issuer: {}, audience: {}",
+                            record.getSubject(), record.getScopes(), record.getExpiresAt(), record.getIssuer(), record.getAudience());
+                }
+
+                recentRecords.addFirst(record);
+                if (recentRecords.size() > recentRecordsSize) {
+                    recentRecords.removeLast();
+                }
+                recordsPerSubject.merge(String.valueOf(record.getSubject()), 1L, Long::sum);
+            }
+        }
+        recordedCount.addAndGet(batch.size());
+    }
+
+    public Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("sampleRate", sampleRate);
+        summary.put("authentications", authenticationCount.get());
+        summary.put("sampled", sampledCount.get());
+        summary.put("dropped", droppedCount.get());
+        summary.put("recorded", recordedCount.get());
+        summary.put("queued", queue.size());
+        summary.put("evictedSubjects", evictedSubjectsCount.get());
+
+        synchronized (recentRecords) {
+            summary.put("subjects", new LinkedHashMap<>(recordsPerSubject));
+            summary.put("recent", Collections.unmodifiableList(new ArrayList<>(recentRecords)));
+        }
+        return summary;
+    }
+
+    @PreDestroy
+    public void stop() {
+        drainer.dispose();
+        drain();
+        scheduler.dispose();
+    }
+
+    public static class AuthorizationRecord {
+
+        private final Instant authenticatedAt;
+        private final String subject;
+        private final Object scopes;
+        private final Instant expiresAt;
+        private final String issuer;
+        private final List<String> audience;
+
+        AuthorizationRecord(Jwt jwt) {
+            this.authenticatedAt = Instant.now();
+            this.subject = jwt.getSubject();
+            this.scopes = jwt.getClaims().get("scope");
+            this.expiresAt = jwt.getExpiresAt();
+            this.issuer = jwt.getClaims().containsKey("iss") ? String.valueOf(jwt.getClaims().get("iss")) : null;
+            this.audience = jwt.getAudience();
+        }
+
+        public Instant getAuthenticatedAt() {
+            return authenticatedAt;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public Object getScopes() {
+            return scopes;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getIssuer() {
+            return issuer;
+        }
+
+        public List<String> getAudience() {
+            return audience;
+        }
+    }
+}
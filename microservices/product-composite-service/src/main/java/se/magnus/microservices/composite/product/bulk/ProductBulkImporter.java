@@ -0,0 +1,106 @@
+package se.magnus.microservices.composite.product.bulk;
+
+import static se.magnus.api.composite.product.BulkItemStatus.Status.ACCEPTED;
+import static se.magnus.api.composite.product.BulkItemStatus.Status.FAILED;
+import static se.magnus.api.composite.product.BulkItemStatus.Status.REJECTED;
+import static se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl.toProduct;
+import static se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl.toRecommendations;
+import static se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl.toReviews;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.BulkItemStatus;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.ProductCompositeBulkService;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.util.collections.IntHashSet;
+
+/**
+ * Imports a stream of composite products, as {@link se.magnus.api.composite.product.ProductCompositeService#createProduct}
+ * does for one composite product.
+ *
+ * The composite products are read in batches, and the events of a batch are published with one task per binding
+ * instead of one task per event. The batches are published one at a time, and concatMap reads one batch ahead of the
+ * one being published, i.e. at most two batches are held in memory and a slow broker slows down the upload instead of
+ * filling up the memory. The status of each composite product is streamed back as soon as its batch is published, or
+ * FAILED if the events of its batch can't be published.
+ */
+@RestController
+public class ProductBulkImporter implements ProductCompositeBulkService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductBulkImporter.class);
+
+    private final ProductCompositeIntegration integration;
+    private final int batchSize;
+
+    @Autowired
+    public ProductBulkImporter(
+            ProductCompositeIntegration integration,
+            @Value("${app.composite.bulk.batch-size:500}") int batchSize) {
+
+        this.integration = integration;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Flux<BulkItemStatus> createProducts(Flux<ProductAggregate> body) {
+        return Flux.defer(() -> {
+            // The product ids of the request, to reject duplicates before their events are published
+            IntHashSet productIds = new IntHashSet();
+
+            // A prefetch of one batch, the smallest concatMap allows, while the current batch is published
+            return body.buffer(batchSize)
+                    .concatMap(batch -> createBatch(batch, productIds), 1)
+                    .concatMapIterable(statuses -> statuses);
+        });
+    }
+
+    private Mono<List<BulkItemStatus>> createBatch(List<ProductAggregate> batch, IntHashSet productIds) {
+        List<BulkItemStatus> statuses = new ArrayList<>(batch.size());
+        List<Product> products = new ArrayList<>(batch.size());
+        List<Recommendation> recommendations = new ArrayList<>();
+        List<Review> reviews = new ArrayList<>();
+
+        for (ProductAggregate body : batch) {
+            int productId = body.getProductId();
+            if (productId < 1) {
+                statuses.add(new BulkItemStatus(productId, REJECTED, "Invalid productId: " + productId));
+                continue;
+            }
+            if (!productIds.add(productId)) {
+                statuses.add(new BulkItemStatus(productId, REJECTED, "Duplicate productId in the request: " + productId));
+                continue;
+            }
+
+            products.add(toProduct(body));
+            recommendations.addAll(toRecommendations(body));
+            reviews.addAll(toReviews(body));
+            statuses.add(new BulkItemStatus(productId, ACCEPTED, null));
+        }
+
+        LOG.debug("createProducts: publishes the events of a batch of {} composite products", products.size());
+
+        return Mono.when(
+                        integration.createProducts(products),
+                        integration.createRecommendations(recommendations),
+                        integration.createReviews(reviews))
+                .thenReturn(statuses)
+                .onErrorResume(error -> {
+                    LOG.warn("createProducts: failed to publish a batch of {} composite products: {}", products.size(), error.toString());
+                    return Mono.just(statuses.stream()
+                            .map(s -> s.getStatus() == ACCEPTED ? new BulkItemStatus(s.getProductId(), FAILED, error.getMessage()) : s)
+                            .collect(Collectors.toList()));
+                });
+    }
+}
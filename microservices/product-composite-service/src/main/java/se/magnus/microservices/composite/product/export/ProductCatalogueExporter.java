@@ -0,0 +1,166 @@
+package se.magnus.microservices.composite.product.export;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.ProductCompositeExportService;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+
+/**
+ * Exports the composite products of the whole catalogue in productId order, one JSON document per line.
+ *
+ * The products are read a page at a time, with the productId of the last product of the previous page as the cursor,
+ * and the recommendations and reviews of a page are streamed with one range request each, sorted by productId. The
+ * three sorted streams are merged and cut into the parts of one product at a time, so besides the products of about
+ * two pages only the recommendations and reviews of the product being joined, and the prefetch of the two range
+ * responses, are held in memory.
+ *
+ * The pages are read at different times, so the export is not a snapshot of the catalogue. An interrupted export is
+ * resumed from the productId of the last line received.
+ */
+@RestController
+public class ProductCatalogueExporter implements ProductCompositeExportService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductCatalogueExporter.class);
+
+    // The parts of a product are merged in this order, i.e. the product comes first
+    private static final int PRODUCT = 0;
+    private static final int RECOMMENDATION = 1;
+    private static final int REVIEW = 2;
+
+    private static final Comparator<Part> PART_ORDER = Comparator.<Part>comparingInt(part -> part.productId)
+            .thenComparingInt(part -> part.type);
+
+    private final ProductCompositeIntegration integration;
+    private final ProductCompositeServiceImpl service;
+    private final int pageSize;
+
+    @Autowired
+    public ProductCatalogueExporter(
+            ProductCompositeIntegration integration,
+            ProductCompositeServiceImpl service,
+            @Value("${app.composite.export.page-size:500}") int pageSize) {
+
+        this.integration = integration;
+        this.service = service;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public Flux<ProductAggregate> exportProducts(int afterProductId) {
+
+        if (afterProductId < 0) {
+            throw new InvalidInputException("Invalid afterProductId: " + afterProductId);
+        }
+
+        LOG.info("Will export the composite products after id={}", afterProductId);
+
+        // expand() reads the pages one after the other without nesting the subscriptions, and a prefetch of one page
+        // keeps the next page from being read before the current one is written
+        return readPage(afterProductId)
+                .expand(page -> page.isLast() ? Mono.empty() : readPage(page.getLastProductId()))
+                .concatMap(this::join, 1);
+    }
+
+    private Mono<Page> readPage(int afterProductId) {
+        return integration.getProducts(afterProductId, pageSize).collectList()
+                .filter(products -> !products.isEmpty())
+                .map(products -> new Page(products, afterProductId, products.size() < pageSize));
+    }
+
+    /**
+     * Merges the products of a page with their recommendations and reviews, streamed in productId order, into
+     * composite products. Recommendations and reviews of products that were deleted after the products were read are
+     * skipped.
+     */
+    private Flux<ProductAggregate> join(Page page) {
+        int afterProductId = page.getAfterProductId();
+        int lastProductId = page.getLastProductId();
+        LOG.debug("Exporting the composite products with ids in ({}, {}]", afterProductId, lastProductId);
+
+        Flux<Part> products = Flux.fromIterable(page.getProducts())
+                .map(p -> new Part(p.getProductId(), PRODUCT, p));
+        Flux<Part> recommendations = integration.getRecommendationsInRange(afterProductId, lastProductId)
+                .map(r -> new Part(r.getProductId(), RECOMMENDATION, r));
+        Flux<Part> reviews = integration.getReviewsInRange(afterProductId, lastProductId)
+                .map(r -> new Part(r.getProductId(), REVIEW, r));
+
+        return Flux.mergeOrdered(PART_ORDER, products, recommendations, reviews)
+                .bufferUntilChanged(part -> part.productId)
+                .filter(parts -> parts.get(0).type == PRODUCT)
+                .map(this::toAggregate);
+    }
+
+    private ProductAggregate toAggregate(List<Part> parts) {
+        Product product = (Product) parts.get(0).value;
+        List<Recommendation> recommendations = new ArrayList<>();
+        List<Review> reviews = new ArrayList<>();
+        for (int i = 1; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            if (part.type == RECOMMENDATION) {
+                recommendations.add((Recommendation) part.value);
+            } else if (part.type == REVIEW) {
+                reviews.add((Review) part.value);
+            }
+        }
+        return service.createProductAggregate(product, recommendations, reviews, null);
+    }
+
+    /**
+     * A product, recommendation or review, tagged with its productId and type to be merged in order.
+     */
+    private static class Part {
+
+        private final int productId;
+        private final int type;
+        private final Object value;
+
+        Part(int productId, int type, Object value) {
+            this.productId = productId;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    private static class Page {
+
+        private final List<Product> products;
+        private final int afterProductId;
+        private final boolean last;
+
+        Page(List<Product> products, int afterProductId, boolean last) {
+            this.products = products;
+            this.afterProductId = afterProductId;
+            this.last = last;
+        }
+
+        List<Product> getProducts() {
+            return products;
+        }
+
+        int getAfterProductId() {
+            return afterProductId;
+        }
+
+        int getLastProductId() {
+            return products.get(products.size() - 1).getProductId();
+        }
+
+        boolean isLast() {
+            return last;
+        }
+    }
+}
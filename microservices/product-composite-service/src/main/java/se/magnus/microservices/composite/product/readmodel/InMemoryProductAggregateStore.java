@@ -0,0 +1,41 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import java.util.function.UnaryOperator;
+import se.magnus.util.collections.ConcurrentIntObjectHashMap;
+
+/**
+ * Keeps the read model on the heap. The read model is rebuilt from the event streams when the instance starts, see
+ * {@link ReadModelConfig}, so nothing needs to survive a restart.
+ *
+ * The entries are kept by the primitive product id, so a lookup neither boxes the key nor walks a chain of entry
+ * objects.
+ */
+public class InMemoryProductAggregateStore implements ProductAggregateStore {
+
+    private final ConcurrentIntObjectHashMap<ReadModelEntry> entries = new ConcurrentIntObjectHashMap<>();
+
+    @Override
+    public ReadModelEntry get(int productId) {
+        return entries.get(productId);
+    }
+
+    @Override
+    public ReadModelEntry update(int productId, UnaryOperator<ReadModelEntry> update) {
+        return entries.compute(productId, update);
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+}
@@ -0,0 +1,550 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.magnus.api.composite.product.ProductAggregate;
+
+/**
+ * Keeps the read model in memory-mapped files, i.e. outside of the Java heap, and lets it survive restarts.
+ *
+ * The entries are serialized as JSON and appended to a log of fixed size segment files, an update appends a new
+ * record and a removal appends a tombstone. The position of the current record of each product is kept in an
+ * {@link OffHeapIntLongIndex}, so the heap usage and the GC pauses do not depend on the number of products.
+ *
+ * When the instance starts, the index is rebuilt by scanning the record headers of the segments, only the records of
+ * the last segment are verified against their checksums since that is where an interrupted write may be found. When a
+ * segment is full a new one is started, and the segment with the least share of current records is cleaned if less
+ * than half of it is current. Its current records are copied to a new file without holding the write lock, so reads
+ * and updates go on meanwhile, and the write lock is only taken to point the index to the copies and replace the
+ * segment with the new file. The copies keep the id of the segment, so the order of the records is unchanged.
+ *
+ * Record layout: productId (int), length of the payload or -1 for a tombstone (int), CRC32 of the payload (int) and
+ * the payload. The productId is written last, a zero productId marks the end of the records of a segment.
+ */
+public class MappedProductAggregateStore implements ProductAggregateStore, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedProductAggregateStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CLEANED_SUFFIX = ".cleaned";
+
+    private static final int HEADER_SIZE = 12;
+    private static final int TOMBSTONE = -1;
+    private static final double CLEANING_THRESHOLD = 0.5;
+
+    // Number of records of a segment being cleaned that are checked against the index per read lock
+    private static final int CLEANING_BATCH_SIZE = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ObjectMapper mapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock cleaningLock = new ReentrantLock();
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final OffHeapIntLongIndex index;
+    private Segment active;
+    private volatile boolean cleaningDue;
+
+    public MappedProductAggregateStore(Path directory, int segmentSize, int expectedEntries, ObjectMapper mapper) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.mapper = mapper;
+        this.index = new OffHeapIntLongIndex(expectedEntries);
+
+        Files.createDirectories(directory);
+        load();
+    }
+
+    @Override
+    public ReadModelEntry get(int productId) {
+        byte[] payload;
+        lock.readLock().lock();
+        try {
+            long offset = index.get(productId);
+            if (offset == OffHeapIntLongIndex.NO_VALUE) {
+                return null;
+            }
+            payload = readPayload(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return deserialize(payload);
+    }
+
+    @Override
+    public ReadModelEntry update(int productId, UnaryOperator<ReadModelEntry> update) {
+        ReadModelEntry updated;
+        lock.writeLock().lock();
+        try {
+            long offset = index.get(productId);
+            ReadModelEntry current = offset == OffHeapIntLongIndex.NO_VALUE ? null : deserialize(readPayload(offset));
+
+            updated = update.apply(current);
+            if (updated != current) {
+                if (updated != null) {
+                    append(productId, serialize(updated));
+                } else if (current != null) {
+                    append(productId, null);
+                }
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (cleaningDue) {
+            cleanIfDue();
+        }
+        return updated;
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            LOG.info("Deletes the {} segments of the read model in {}", segments.size(), directory);
+            for (Segment segment : new ArrayList<>(segments.values())) {
+                delete(segment);
+            }
+            index.clear();
+            active = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                closeQuietly(segment);
+            }
+            segments.clear();
+            active = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        // A file left by a cleaning that was interrupted, the segment it was copied from is still in place
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + CLEANED_SUFFIX)) {
+            for (Path file : files) {
+                LOG.info("Deletes {} left by an interrupted cleaning", file);
+                Files.delete(file);
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        ids.sort(null);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = open(ids.get(i), 0);
+            segments.put(segment.id, segment);
+            scan(segment, i == ids.size() - 1);
+            active = segment;
+        }
+        LOG.info("Loaded {} entries from {} segments in {} in {} ms",
+                index.size(), segments.size(), directory, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds the records of a segment to the index, the records of the last segment are verified.
+     */
+    private void scan(Segment segment, boolean verify) {
+        ByteBuffer buffer = segment.buffer;
+        int limit = buffer.capacity();
+        int position = 0;
+
+        while (position + HEADER_SIZE <= limit) {
+            int productId = buffer.getInt(position);
+            if (productId == 0) {
+                break;
+            }
+
+            int length = buffer.getInt(position + 4);
+            int recordSize = HEADER_SIZE + Math.max(length, 0);
+            if (length < TOMBSTONE || position + recordSize > limit
+                    || (verify && length > 0 && buffer.getInt(position + 8) != checksum(buffer, position + HEADER_SIZE, length))) {
+
+                LOG.warn("Found an incomplete record at position {} of segment {}, ignores the rest of the segment", position, segment.id);
+                for (int i = position; i < limit; i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+
+            indexRecord(productId, length, segment, position);
+            position += recordSize;
+        }
+        segment.position = position;
+    }
+
+    /**
+     * Appends a record, or a tombstone if the payload is null, and points the index to it.
+     */
+    private void append(int productId, byte[] payload) {
+        if (productId == 0) {
+            throw new IllegalArgumentException("Product id 0 can't be stored, it marks the end of the records of a segment");
+        }
+        int length = payload == null ? TOMBSTONE : payload.length;
+        int recordSize = HEADER_SIZE + Math.max(length, 0);
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("The entry of product " + productId + " needs " + recordSize + " bytes, the segment size is " + segmentSize);
+        }
+
+        if (active == null || active.position + recordSize > active.buffer.capacity()) {
+            roll();
+        }
+
+        ByteBuffer buffer = active.buffer;
+        int position = active.position;
+        buffer.putInt(position + 4, length);
+        if (payload != null) {
+            for (int i = 0; i < payload.length; i++) {
+                buffer.put(position + HEADER_SIZE + i, payload[i]);
+            }
+            buffer.putInt(position + 8, checksum(buffer, position + HEADER_SIZE, length));
+        }
+        buffer.putInt(position, productId);
+        active.position += recordSize;
+
+        indexRecord(productId, length, active, position);
+    }
+
+    private void indexRecord(int productId, int length, Segment segment, int position) {
+        long previous = length == TOMBSTONE
+                ? index.remove(productId)
+                : index.put(productId, offset(segment.id, position));
+
+        if (previous != OffHeapIntLongIndex.NO_VALUE) {
+            Segment previousSegment = segments.get(segmentId(previous));
+            previousSegment.liveBytes -= HEADER_SIZE + previousSegment.buffer.getInt(position(previous) + 4);
+        }
+        if (length != TOMBSTONE) {
+            segment.liveBytes += HEADER_SIZE + length;
+        }
+    }
+
+    private void roll() {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        try {
+            active = open(id, segmentSize);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to create segment " + id + " in " + directory, ioe);
+        }
+        segments.put(id, active);
+        LOG.debug("Started segment {} of the read model", id);
+
+        // Cleaned by the updating thread once it has released the write lock
+        cleaningDue = true;
+    }
+
+    private void cleanIfDue() {
+        // Another thread is cleaning already, it cleans at most one segment per call as well
+        if (!cleaningLock.tryLock()) {
+            return;
+        }
+        try {
+            if (cleaningDue) {
+                cleaningDue = false;
+                clean();
+            }
+        } catch (IOException ioe) {
+            LOG.warn("Failed to clean a segment of the read model in {}: {}", directory, ioe.toString());
+        } finally {
+            cleaningLock.unlock();
+        }
+    }
+
+    /**
+     * Cleans the segment with the least share of current records, if less than half of it is current.
+     *
+     * The records of a segment never change once it is no longer the active segment, so they are copied to the
+     * cleaned file without holding any lock, only the check against the index is made under the read lock. The write
+     * lock is held to point the index to the copies that are still current and to replace the segment.
+     */
+    private void clean() throws IOException {
+        Segment candidate = null;
+        boolean oldest;
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.liveBytes < segment.position * CLEANING_THRESHOLD
+                        && (candidate == null || segment.liveRatio() < candidate.liveRatio())) {
+                    candidate = segment;
+                }
+            }
+            if (candidate == null) {
+                return;
+            }
+            oldest = candidate.id == segments.firstKey();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        LOG.debug("Cleans segment {} of the read model, {} of {} bytes are current", candidate.id, candidate.liveBytes, candidate.position);
+        Path cleanedPath = directory.resolve(candidate.path.getFileName() + CLEANED_SUFFIX);
+
+        // The positions of the copied records in the segment and in the cleaned file
+        List<int[]> copies = new ArrayList<>();
+        int cleanedSize = 0;
+        try (FileChannel cleaned = FileChannel.open(cleanedPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = candidate.buffer;
+            int position = 0;
+            while (position < candidate.position) {
+                List<int[]> batch = new ArrayList<>();
+                lock.readLock().lock();
+                try {
+                    if (segments.get(candidate.id) != candidate) {
+                        // Cleared or closed meanwhile
+                        Files.deleteIfExists(cleanedPath);
+                        return;
+                    }
+                    for (int i = 0; i < CLEANING_BATCH_SIZE && position < candidate.position; i++) {
+                        int productId = buffer.getInt(position);
+                        int length = buffer.getInt(position + 4);
+
+                        // Older records of the product may remain in older segments, so a tombstone is kept unless this is the oldest segment
+                        boolean current = length == TOMBSTONE
+                                ? !oldest && index.get(productId) == OffHeapIntLongIndex.NO_VALUE
+                                : index.get(productId) == offset(candidate.id, position);
+                        if (current) {
+                            batch.add(new int[] {position, HEADER_SIZE + Math.max(length, 0)});
+                        }
+                        position += HEADER_SIZE + Math.max(length, 0);
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+
+                for (int[] record : batch) {
+                    ByteBuffer copy = buffer.duplicate();
+                    copy.limit(record[0] + record[1]);
+                    copy.position(record[0]);
+                    while (copy.hasRemaining()) {
+                        cleaned.write(copy);
+                    }
+                    copies.add(new int[] {record[0], cleanedSize});
+                    cleanedSize += record[1];
+                }
+            }
+            cleaned.force(true);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (segments.get(candidate.id) != candidate) {
+                Files.deleteIfExists(cleanedPath);
+                return;
+            }
+            if (copies.isEmpty()) {
+                Files.deleteIfExists(cleanedPath);
+                delete(candidate);
+                return;
+            }
+
+            Files.move(cleanedPath, candidate.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            closeQuietly(candidate);
+            Segment replacement = open(candidate.id, 0);
+            replacement.position = cleanedSize;
+            for (int[] copy : copies) {
+                int productId = replacement.buffer.getInt(copy[1]);
+                int length = replacement.buffer.getInt(copy[1] + 4);
+                // Records updated or removed while they were copied stay stale in the cleaned segment
+                if (length != TOMBSTONE && index.get(productId) == offset(candidate.id, copy[0])) {
+                    index.put(productId, offset(candidate.id, copy[1]));
+                    replacement.liveBytes += HEADER_SIZE + length;
+                }
+            }
+            segments.put(candidate.id, replacement);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Segment open(int id, int size) throws IOException {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long mappedSize = Math.max(size, channel.size());
+            return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        closeQuietly(segment);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ioe) {
+            LOG.warn("Failed to delete segment {}: {}", segment.path, ioe.toString());
+        }
+    }
+
+    private byte[] readPayload(long offset) {
+        Segment segment = segments.get(segmentId(offset));
+        ByteBuffer record = segment.buffer.duplicate();
+        int position = position(offset);
+        byte[] payload = new byte[record.getInt(position + 4)];
+        record.position(position + HEADER_SIZE);
+        record.get(payload);
+        return payload;
+    }
+
+    private byte[] serialize(ReadModelEntry entry) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("productCreated", entry.isProductCreated());
+            generator.writeNumberField("revision", entry.getRevision());
+            generator.writeFieldName("aggregate");
+            mapper.writeValue(generator, entry.getAggregate());
+            generator.writeEndObject();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to serialize the read model entry of product " + entry.getAggregate().getProductId(), ioe);
+        }
+        return out.toByteArray();
+    }
+
+    private ReadModelEntry deserialize(byte[] payload) {
+        boolean productCreated = false;
+        long revision = 0;
+        ProductAggregate aggregate = null;
+
+        try (JsonParser parser = mapper.getFactory().createParser(payload)) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "productCreated":
+                        productCreated = parser.getBooleanValue();
+                        break;
+                    case "revision":
+                        revision = parser.getLongValue();
+                        break;
+                    case "aggregate":
+                        aggregate = mapper.readValue(parser, ProductAggregate.class);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Failed to deserialize a read model entry", ioe);
+        }
+        return ReadModelEntry.of(productCreated, aggregate, revision);
+    }
+
+    private static int checksum(ByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(position);
+        payload.limit(position + length);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static long offset(int segmentId, int position) {
+        return ((long) segmentId << 32) | position;
+    }
+
+    private static int segmentId(long offset) {
+        return (int) (offset >>> 32);
+    }
+
+    private static int position(long offset) {
+        return (int) offset;
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException ioe) {
+            LOG.warn("Failed to close segment {}: {}", segment.path, ioe.toString());
+        }
+    }
+
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Segment {
+        final int id;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int position;
+        long liveBytes;
+
+        Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        double liveRatio() {
+            return position == 0 ? 1.0 : (double) liveBytes / position;
+        }
+    }
+}
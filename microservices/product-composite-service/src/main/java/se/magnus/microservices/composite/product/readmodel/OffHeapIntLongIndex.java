@@ -0,0 +1,162 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * An open addressing hash map from int keys to long values, kept in direct buffers outside of the Java heap, i.e. it
+ * neither holds one object per entry nor adds to the work of the garbage collector however many entries it holds.
+ *
+ * Uses linear probing with backward shift deletion, so no tombstones are left behind when keys are removed. Key 0 marks
+ * an empty slot and is kept aside. Not thread safe.
+ */
+final class OffHeapIntLongIndex {
+
+    static final long NO_VALUE = -1L;
+
+    // Direct buffers are limited to Integer.MAX_VALUE bytes, i.e. 2^28 slots of 8 bytes
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private IntBuffer keys;
+    private LongBuffer values;
+    private int capacity;
+    private int size;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    OffHeapIntLongIndex(int expectedSize) {
+        int capacity = 16;
+        while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    long get(int key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        int mask = capacity - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int existing = keys.get(slot);
+            if (existing == key) {
+                return values.get(slot);
+            }
+            if (existing == 0) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return the previous value of the key, or {@link #NO_VALUE} if it had none
+     */
+    long put(int key, long value) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : NO_VALUE;
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        int mask = capacity - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            int existing = keys.get(slot);
+            if (existing == key) {
+                long previous = values.get(slot);
+                values.put(slot, value);
+                return previous;
+            }
+            if (existing == 0) {
+                keys.put(slot, key);
+                values.put(slot, value);
+                if (++size > capacity * LOAD_FACTOR) {
+                    resize();
+                }
+                return NO_VALUE;
+            }
+        }
+    }
+
+    /**
+     * @return the value of the removed key, or {@link #NO_VALUE} if it had none
+     */
+    long remove(int key) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : NO_VALUE;
+            hasZeroKey = false;
+            return previous;
+        }
+        int mask = capacity - 1;
+        int slot = slot(key, mask);
+        while (keys.get(slot) != key) {
+            if (keys.get(slot) == 0) {
+                return NO_VALUE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        long previous = values.get(slot);
+        size--;
+
+        // Move back the following entries of the cluster that would no longer be found past the emptied slot
+        int empty = slot;
+        for (int next = (empty + 1) & mask; keys.get(next) != 0; next = (next + 1) & mask) {
+            int home = slot(keys.get(next), mask);
+            if (((next - home) & mask) >= ((next - empty) & mask)) {
+                keys.put(empty, keys.get(next));
+                values.put(empty, values.get(next));
+                empty = next;
+            }
+        }
+        keys.put(empty, 0);
+        return previous;
+    }
+
+    void clear() {
+        allocate(16);
+        hasZeroKey = false;
+    }
+
+    private void resize() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("The index can't hold more than " + (int) (MAX_CAPACITY * LOAD_FACTOR) + " entries");
+        }
+        IntBuffer oldKeys = keys;
+        LongBuffer oldValues = values;
+        int oldCapacity = capacity;
+
+        allocate(capacity << 1);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldCapacity; i++) {
+            int key = oldKeys.get(i);
+            if (key != 0) {
+                int slot = slot(key, mask);
+                while (keys.get(slot) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys.put(slot, key);
+                values.put(slot, oldValues.get(i));
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        // Direct buffers are zeroed, i.e. all slots are empty
+        this.keys = ByteBuffer.allocateDirect(capacity * Integer.BYTES).asIntBuffer();
+        this.values = ByteBuffer.allocateDirect(capacity * Long.BYTES).asLongBuffer();
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    private static int slot(int key, int mask) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,176 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.util.http.ETagUtil;
+
+/**
+ * The read side of the composite service: keeps a denormalised ProductAggregate per product, maintained from the
+ * events on the products, recommendations and reviews destinations, so that a composite product can be read with a
+ * single key lookup instead of three calls to the core services.
+ *
+ * The read model is eventually consistent with the core services. The lag, i.e. the time from an event was created
+ * until it is applied, is recorded per destination by the app.read-model.lag timer.
+ */
+public class ProductAggregateReadModel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateReadModel.class);
+
+    public static final String LAG_TIMER = "app.read-model.lag";
+    public static final String ENTRIES_GAUGE = "app.read-model.entries";
+
+    private final ProductAggregateStore store;
+    private final Timer productLag;
+    private final Timer recommendationLag;
+    private final Timer reviewLag;
+
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private volatile long epoch = System.currentTimeMillis();
+    private volatile ZonedDateTime lastEventCreatedAt;
+
+    public ProductAggregateReadModel(ProductAggregateStore store, MeterRegistry registry) {
+        this.store = store;
+        this.productLag = lagTimer("products", registry);
+        this.recommendationLag = lagTimer("recommendations", registry);
+        this.reviewLag = lagTimer("reviews", registry);
+        registry.gauge(ENTRIES_GAUGE, store, ProductAggregateStore::size);
+    }
+
+    /**
+     * Returns the entry of a product, or null if the read model has no complete entry for it, e.g. if the product
+     * event has not been applied yet.
+     */
+    public ReadModelEntry get(int productId) {
+        ReadModelEntry entry = store.get(productId);
+        return entry != null && entry.isProductCreated() ? entry : null;
+    }
+
+    /**
+     * The ETag of an entry. The epoch changes when the read model is rebuilt, since the revisions start over.
+     */
+    public String getETag(ReadModelEntry entry) {
+        return ETagUtil.strongETag("read-model", epoch, entry.getAggregate().getProductId(), entry.getRevision());
+    }
+
+    public void applyProductEvent(Event<Integer, Product> event) {
+        switch (eventType(event)) {
+            case CREATE:
+                update(event.getKey(), entry -> entry.withProduct(event.getData()));
+                break;
+            case DELETE:
+                update(event.getKey(), ReadModelEntry::withoutProduct);
+                break;
+            default:
+                throw unexpectedEventType(event);
+        }
+        applied(event, productLag);
+    }
+
+    public void applyRecommendationEvent(Event<Integer, Recommendation> event) {
+        switch (eventType(event)) {
+            case CREATE:
+                update(event.getKey(), entry -> entry.withRecommendation(event.getData()));
+                break;
+            case DELETE:
+                update(event.getKey(), ReadModelEntry::withoutRecommendations);
+                break;
+            default:
+                throw unexpectedEventType(event);
+        }
+        applied(event, recommendationLag);
+    }
+
+    public void applyReviewEvent(Event<Integer, Review> event) {
+        switch (eventType(event)) {
+            case CREATE:
+                update(event.getKey(), entry -> entry.withReview(event.getData()));
+                break;
+            case DELETE:
+                update(event.getKey(), ReadModelEntry::withoutReviews);
+                break;
+            default:
+                throw unexpectedEventType(event);
+        }
+        applied(event, reviewLag);
+    }
+
+    /**
+     * Removes all entries, used when the read model is rebuilt from the start of the event streams.
+     */
+    public void clear() {
+        LOG.info("Clears the read model, {} entries", store.size());
+        store.clear();
+        appliedEvents.set(0);
+        epoch = System.currentTimeMillis();
+    }
+
+    /**
+     * Tells if the read model survives a restart, see {@link ProductAggregateStore#isPersistent()}.
+     */
+    public boolean isPersistent() {
+        return store.isPersistent();
+    }
+
+    public Map<String, Object> getSummary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("entries", store.size());
+        summary.put("appliedEvents", appliedEvents.get());
+        summary.put("lastEventCreatedAt", lastEventCreatedAt);
+        summary.put("productLagMaxMs", productLag.max(TimeUnit.MILLISECONDS));
+        summary.put("recommendationLagMaxMs", recommendationLag.max(TimeUnit.MILLISECONDS));
+        summary.put("reviewLagMaxMs", reviewLag.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+
+    private void update(int productId, UnaryOperator<ReadModelEntry> update) {
+        store.update(productId, entry -> {
+            ReadModelEntry updated = update.apply(entry == null ? ReadModelEntry.empty(productId) : entry);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    private void applied(Event<Integer, ?> event, Timer lag) {
+        appliedEvents.incrementAndGet();
+        ZonedDateTime createdAt = event.getEventCreatedAt();
+        if (createdAt != null) {
+            lastEventCreatedAt = createdAt;
+            lag.record(Math.max(0, System.currentTimeMillis() - createdAt.toInstant().toEpochMilli()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Event.Type eventType(Event<Integer, ?> event) {
+        if (event.getEventType() == null) {
+            throw unexpectedEventType(event);
+        }
+        return event.getEventType();
+    }
+
+    private static EventProcessingException unexpectedEventType(Event<Integer, ?> event) {
+        String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+        LOG.warn(errorMessage);
+        return new EventProcessingException(errorMessage);
+    }
+
+    private static Timer lagTimer(String destination, MeterRegistry registry) {
+        return Timer.builder(LAG_TIMER)
+                .description("Time from an event was created until it was applied to the read model")
+                .tag("destination", destination)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(1))
+                .register(registry);
+    }
+}
@@ -0,0 +1,33 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Local storage of the read model, keyed by productId.
+ */
+public interface ProductAggregateStore {
+
+    /**
+     * Returns the entry of a product, or null if there is none.
+     */
+    ReadModelEntry get(int productId);
+
+    /**
+     * Atomically replaces the entry of a product with the result of the update function. The function is called with
+     * null if there is no entry, and the entry is removed if the function returns null. Nothing is written if the
+     * function returns the entry it was called with.
+     *
+     * @return the new entry, or null if removed
+     */
+    ReadModelEntry update(int productId, UnaryOperator<ReadModelEntry> update);
+
+    void clear();
+
+    int size();
+
+    /**
+     * Tells if the entries survive a restart, in which case the consumers continue from their committed offsets
+     * instead of replaying the topics from the start.
+     */
+    boolean isPersistent();
+}
@@ -0,0 +1,89 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.util.metrics.ServiceMetrics;
+
+/**
+ * The read model of the composite service, see {@link ProductAggregateReadModel}, enabled by the read_model profile.
+ *
+ * Each instance keeps its own copy of the read model, so the consumers must not share a consumer group with the other
+ * instances, each instance needs all events. The bindings are set up by the read_model profile in the config repo,
+ * with Kafka they replay the topics from the start when the instance starts or the read model is rebuilt.
+ *
+ * If app.read-model.store.directory is set, the read model is kept off-heap in memory-mapped files in that directory,
+ * see {@link MappedProductAggregateStore}, and survives restarts. The read_model_mapped profile sets it up with a
+ * consumer group per instance, so that a restarted instance only consumes the events it has not applied yet.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.read-model.enabled", havingValue = "true")
+public class ReadModelConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadModelConfig.class);
+
+    public static final List<String> BINDINGS = Arrays.asList(
+            "productReadModel-in-0", "recommendationReadModel-in-0", "reviewReadModel-in-0");
+
+    @Bean
+    @ConditionalOnProperty(name = "app.read-model.store.directory")
+    public ProductAggregateStore mappedProductAggregateStore(
+            @Value("${app.read-model.store.directory}") String directory,
+            @Value("${app.read-model.store.segment-size:256MB}") DataSize segmentSize,
+            @Value("${app.read-model.store.expected-entries:1000000}") int expectedEntries,
+            ObjectMapper mapper) throws IOException {
+
+        LOG.info("Keeps the read model in {}, segment size: {}", directory, segmentSize);
+        return new MappedProductAggregateStore(Paths.get(directory), Math.toIntExact(segmentSize.toBytes()), expectedEntries, mapper);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public ProductAggregateStore productAggregateStore() {
+        return new InMemoryProductAggregateStore();
+    }
+
+    @Bean
+    public ProductAggregateReadModel productAggregateReadModel(ProductAggregateStore store, MeterRegistry registry) {
+        LOG.info("Serves composite products from the read model, stored in a {}", store.getClass().getSimpleName());
+        return new ProductAggregateReadModel(store, registry);
+    }
+
+    @Bean
+    public Consumer<Event<Integer, Product>> productReadModel(ProductAggregateReadModel readModel, ServiceMetrics metrics) {
+        return event -> metrics.processEvent(event, () -> readModel.applyProductEvent(event));
+    }
+
+    @Bean
+    public Consumer<Event<Integer, Recommendation>> recommendationReadModel(ProductAggregateReadModel readModel, ServiceMetrics metrics) {
+        return event -> metrics.processEvent(event, () -> readModel.applyRecommendationEvent(event));
+    }
+
+    @Bean
+    public Consumer<Event<Integer, Review>> reviewReadModel(ProductAggregateReadModel readModel, ServiceMetrics metrics) {
+        return event -> metrics.processEvent(event, () -> readModel.applyReviewEvent(event));
+    }
+
+    @Bean
+    public ReadModelEndpoint readModelEndpoint(ProductAggregateReadModel readModel, ObjectProvider<BindingsLifecycleController> bindings) {
+        return new ReadModelEndpoint(readModel, bindings);
+    }
+}
@@ -0,0 +1,68 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exposes the state of the {@link ProductAggregateReadModel} on /actuator/readmodel. A POST to the endpoint rebuilds
+ * the read model from scratch: the consumers are stopped, the read model is cleared and the consumers are started
+ * again, which with Kafka replays the topics from the start.
+ *
+ * With RabbitMQ the events are not retained, so after a rebuild only products with new events are in the read model,
+ * the others are read from the core services.
+ *
+ * A rebuild is refused with 409 - Conflict for a persistent read model, i.e. the read_model_mapped profile, since its
+ * consumers continue from the offsets committed for their consumer group and would not replay anything. It is
+ * rebuilt by stopping the instance, deleting the directory of the store and resetting the offsets of the group.
+ */
+@Endpoint(id = "readmodel")
+public class ReadModelEndpoint {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadModelEndpoint.class);
+
+    private final ProductAggregateReadModel readModel;
+    private final ObjectProvider<BindingsLifecycleController> bindings;
+
+    public ReadModelEndpoint(ProductAggregateReadModel readModel, ObjectProvider<BindingsLifecycleController> bindings) {
+        this.readModel = readModel;
+        this.bindings = bindings;
+    }
+
+    @ReadOperation
+    public Map<String, Object> readModel() {
+        return readModel.getSummary();
+    }
+
+    @WriteOperation
+    public synchronized WebEndpointResponse<Map<String, Object>> rebuild() {
+        if (readModel.isPersistent()) {
+            LOG.warn("Refuses to rebuild a persistent read model, the consumers would not replay the events");
+            Map<String, Object> body = new LinkedHashMap<>(readModel.getSummary());
+            body.put("error", "A persistent read model can't be rebuilt while the instance is running");
+            return new WebEndpointResponse<>(body, HttpStatus.CONFLICT.value());
+        }
+
+        LOG.info("Rebuilds the read model");
+
+        BindingsLifecycleController controller = bindings.getIfAvailable();
+        if (controller != null) {
+            ReadModelConfig.BINDINGS.forEach(controller::stop);
+        }
+
+        readModel.clear();
+
+        if (controller != null) {
+            ReadModelConfig.BINDINGS.forEach(controller::start);
+        }
+        return new WebEndpointResponse<>(readModel.getSummary());
+    }
+}
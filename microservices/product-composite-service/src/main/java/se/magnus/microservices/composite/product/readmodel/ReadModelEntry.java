@@ -0,0 +1,123 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+/**
+ * The denormalised composite product kept in the read model, i.e. a ProductAggregate without service addresses.
+ *
+ * Entries are immutable, each event creates a new entry with the revision incremented. Recommendations and reviews
+ * may arrive before their product since they are sent to different destinations, such an entry is kept but is not
+ * complete until the product is created.
+ *
+ * As in the core services, a create of something that already exists is ignored, i.e. the with-methods return the
+ * entry itself for a redelivered or duplicate create event.
+ */
+public final class ReadModelEntry {
+
+    private final boolean productCreated;
+    private final ProductAggregate aggregate;
+    private final long revision;
+
+    private ReadModelEntry(boolean productCreated, ProductAggregate aggregate, long revision) {
+        this.productCreated = productCreated;
+        this.aggregate = aggregate;
+        this.revision = revision;
+    }
+
+    public static ReadModelEntry empty(int productId) {
+        return new ReadModelEntry(false, new ProductAggregate(productId, null, 0, Collections.emptyList(), Collections.emptyList(), null), 0);
+    }
+
+    static ReadModelEntry of(boolean productCreated, ProductAggregate aggregate, long revision) {
+        return new ReadModelEntry(productCreated, aggregate, revision);
+    }
+
+    public boolean isProductCreated() {
+        return productCreated;
+    }
+
+    public ProductAggregate getAggregate() {
+        return aggregate;
+    }
+
+    public long getRevision() {
+        return revision;
+    }
+
+    /**
+     * Tells if there is nothing left of the product, i.e. the entry can be removed.
+     */
+    public boolean isEmpty() {
+        return !productCreated && aggregate.getRecommendations().isEmpty() && aggregate.getReviews().isEmpty();
+    }
+
+    /**
+     * Creates the product, unless it is already created.
+     */
+    public ReadModelEntry withProduct(Product product) {
+        if (productCreated) {
+            return this;
+        }
+        return new ReadModelEntry(true, new ProductAggregate(product.getProductId(), product.getName(), product.getWeight(),
+                aggregate.getRecommendations(), aggregate.getReviews(), null), revision + 1);
+    }
+
+    public ReadModelEntry withoutProduct() {
+        return new ReadModelEntry(false, new ProductAggregate(aggregate.getProductId(), null, 0,
+                aggregate.getRecommendations(), aggregate.getReviews(), null), revision + 1);
+    }
+
+    /**
+     * Adds a recommendation, unless a recommendation with the same id already exists.
+     */
+    public ReadModelEntry withRecommendation(Recommendation recommendation) {
+        for (RecommendationSummary existing : aggregate.getRecommendations()) {
+            if (existing.getRecommendationId() == recommendation.getRecommendationId()) {
+                return this;
+            }
+        }
+        List<RecommendationSummary> recommendations = new ArrayList<>(aggregate.getRecommendations().size() + 1);
+        recommendations.addAll(aggregate.getRecommendations());
+        recommendations.add(new RecommendationSummary(recommendation.getRecommendationId(), recommendation.getAuthor(),
+                recommendation.getRate(), recommendation.getContent()));
+
+        return with(recommendations, aggregate.getReviews());
+    }
+
+    public ReadModelEntry withoutRecommendations() {
+        return with(Collections.emptyList(), aggregate.getReviews());
+    }
+
+    /**
+     * Adds a review, unless a review with the same id already exists.
+     */
+    public ReadModelEntry withReview(Review review) {
+        for (ReviewSummary existing : aggregate.getReviews()) {
+            if (existing.getReviewId() == review.getReviewId()) {
+                return this;
+            }
+        }
+        List<ReviewSummary> reviews = new ArrayList<>(aggregate.getReviews().size() + 1);
+        reviews.addAll(aggregate.getReviews());
+        reviews.add(new ReviewSummary(review.getReviewId(), review.getAuthor(), review.getSubject(), review.getContent()));
+
+        return with(aggregate.getRecommendations(), reviews);
+    }
+
+    public ReadModelEntry withoutReviews() {
+        return with(aggregate.getRecommendations(), Collections.emptyList());
+    }
+
+    private ReadModelEntry with(List<RecommendationSummary> recommendations, List<ReviewSummary> reviews) {
+        return new ReadModelEntry(productCreated, new ProductAggregate(aggregate.getProductId(), aggregate.getName(),
+                aggregate.getWeight(), Collections.unmodifiableList(recommendations), Collections.unmodifiableList(reviews), null), revision + 1);
+    }
+}
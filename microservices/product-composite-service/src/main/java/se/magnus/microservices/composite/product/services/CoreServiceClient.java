@@ -0,0 +1,216 @@
+package se.magnus.microservices.composite.product.services;
+
+import static se.magnus.util.metrics.ServiceMetrics.INTEGRATION_TIMER;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.util.http.ETagged;
+import se.magnus.util.http.HttpErrorInfo;
+import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.metrics.ServiceMetrics;
+import se.magnus.util.reactor.ReactiveDiagnostics;
+
+/**
+ * The GET calls to the core services that the composite product is created from, one per core service and the ETag
+ * probes used for conditional requests, each behind the resilience policy of its core service. The calls return the
+ * JSON body as is together with the ETag of the response, the typed views are derived from it by
+ * {@link ProductCompositeIntegration}.
+ *
+ * Kept in a bean of its own so that the calls from the integration go through the proxies of the resilience
+ * annotations. The callers are responsible for releasing the buffers.
+ */
+@Component
+public class CoreServiceClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoreServiceClient.class);
+    private static final String PRODUCT_SERVICE_URL = "http://product";
+    private static final String RECOMMENDATION_SERVICE_URL = "http://recommendation";
+    private static final String REVIEW_SERVICE_URL = "http://review";
+
+    private final WebClient webClient;
+    private final ObjectMapper mapper;
+
+    private final ServiceUtil serviceUtil;
+
+    private final ServiceMetrics metrics;
+
+    private final ReactiveDiagnostics diagnostics;
+
+    @Autowired
+    public CoreServiceClient(
+            WebClient.Builder webClient,
+            ObjectMapper mapper,
+            ServiceUtil serviceUtil,
+            ServiceMetrics metrics,
+            ReactiveDiagnostics diagnostics
+    ) {
+
+        this.webClient = webClient.build();
+        this.mapper = mapper;
+        this.serviceUtil = serviceUtil;
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
+    }
+
+    @Retry(name = "product")
+    @TimeLimiter(name = "product")
+    @CircuitBreaker(name = "product", fallbackMethod = "getProductFallbackValue")
+    public Mono<ETagged<DataBuffer>> getProduct(int productId, int delay, int faultPercent) {
+        URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL + "/product/{productId}?delay={delay}&faultPercent={faultPercent}")
+                .build(productId, delay, faultPercent);
+        LOG.debug("Will call the getProduct API on URL: {}", url);
+
+        return diagnostics.log("CoreServiceClient.getProduct",
+                        metrics.time(INTEGRATION_TIMER, "product", "getProduct", getJson(url)))
+                .onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+    }
+
+    /**
+     * This method will be called when circuit breaker is open. The fallback product has no ETag.
+     */
+    private Mono<ETagged<DataBuffer>> getProductFallbackValue(int productId, int delay, int faultPercent, CallNotPermittedException ex) {
+
+        LOG.warn("Creating a fail-fast fallback product for productId = {}, delay = {}, faultPercent = {} and exception = {}",
+                productId, delay, faultPercent, ex.toString());
+
+        if (productId == 13) {
+            String errMsg = "Product Id: " + productId + " not found in fallback cache!";
+            LOG.warn(errMsg);
+            throw new NotFoundException(errMsg);
+        }
+
+        Product product = new Product(productId, "Fallback product" + productId, productId, serviceUtil.isServiceAddressEnabled() ? serviceUtil.getServiceAddress() : null);
+        try {
+            return Mono.just(ETagged.of(DefaultDataBufferFactory.sharedInstance.wrap(mapper.writeValueAsBytes(product)), ""));
+        } catch (JsonProcessingException jpe) {
+            throw new IllegalStateException("Failed to serialize the fallback product", jpe);
+        }
+    }
+
+    /**
+     * Returns the current ETag of a product, without loading it, or empty if the product service has none.
+     */
+    @Retry(name = "product")
+    @TimeLimiter(name = "product")
+    @CircuitBreaker(name = "product")
+    public Mono<String> getProductETag(int productId) {
+        return getETag("product", PRODUCT_SERVICE_URL + "/product/" + productId);
+    }
+
+    @Retry(name = "recommendation")
+    @TimeLimiter(name = "recommendation")
+    @CircuitBreaker(name = "recommendation")
+    public Mono<ETagged<DataBuffer>> getRecommendations(int productId) {
+        URI url = URI.create(RECOMMENDATION_SERVICE_URL + "/recommendation?productId=" + productId);
+        LOG.debug("Will call the getRecommendations API on URL: {}", url);
+
+        return diagnostics.log("CoreServiceClient.getRecommendations",
+                metrics.time(INTEGRATION_TIMER, "recommendation", "getRecommendations", getJson(url)));
+    }
+
+    @Retry(name = "recommendation")
+    @TimeLimiter(name = "recommendation")
+    @CircuitBreaker(name = "recommendation")
+    public Mono<String> getRecommendationsETag(int productId) {
+        return getETag("recommendation", RECOMMENDATION_SERVICE_URL + "/recommendation?productId=" + productId);
+    }
+
+    @Retry(name = "review")
+    @TimeLimiter(name = "review")
+    @CircuitBreaker(name = "review")
+    public Mono<ETagged<DataBuffer>> getReviews(int productId) {
+        URI url = URI.create(REVIEW_SERVICE_URL + "/review?productId=" + productId);
+        LOG.debug("Will call the getReviews API on URL: {}", url);
+
+        return diagnostics.log("CoreServiceClient.getReviews",
+                metrics.time(INTEGRATION_TIMER, "review", "getReviews", getJson(url)));
+    }
+
+    @Retry(name = "review")
+    @TimeLimiter(name = "review")
+    @CircuitBreaker(name = "review")
+    public Mono<String> getReviewsETag(int productId) {
+        return getETag("review", REVIEW_SERVICE_URL + "/review?productId=" + productId);
+    }
+
+    /**
+     * Joins the buffers of the response body into one buffer, without copying them if the buffers are pooled.
+     */
+    private Mono<ETagged<DataBuffer>> getJson(URI url) {
+        return webClient.get().uri(url).retrieve().toEntityFlux(DataBuffer.class)
+                .flatMap(response -> DataBufferUtils.join(response.getBody())
+                        .map(json -> ETagged.of(json, response.getHeaders().getETag())));
+    }
+
+    /**
+     * Asks for the ETag using "If-None-Match: *", which makes the core services respond with 304 - Not Modified and
+     * the ETag header without loading or sending the body. Server errors are signalled, for the resilience policy to
+     * see them.
+     */
+    private Mono<String> getETag(String service, String url) {
+        LOG.debug("Will get the ETag on URL: {}", url);
+        return metrics.time(INTEGRATION_TIMER, service, "getETag", webClient.get().uri(url)
+                .header(HttpHeaders.IF_NONE_MATCH, "*")
+                .exchangeToMono(response -> response.statusCode().is5xxServerError()
+                        ? response.createException().flatMap(Mono::error)
+                        : Mono.justOrEmpty(response.headers().asHttpHeaders().getETag())));
+    }
+
+    /**
+     * Maps the 404 and 422 responses of the core services to the exceptions of the api, used for all calls to them.
+     */
+    public Throwable handleException(Throwable ex) {
+
+        if (!(ex instanceof WebClientResponseException)) {
+            LOG.warn("Got a unexpected error: {}, will rethrow it", ex.toString());
+            return ex;
+        }
+
+        WebClientResponseException wcre = (WebClientResponseException) ex;
+
+        switch (wcre.getStatusCode()) {
+
+            case NOT_FOUND:
+                return new NotFoundException(getErrorMessage(wcre));
+
+            case UNPROCESSABLE_ENTITY:
+                return new InvalidInputException(getErrorMessage(wcre));
+
+            default:
+                LOG.warn("Got an unexpected HTTP error: {}, will rethrow it", wcre.getStatusCode());
+                LOG.warn("Error body: {}", wcre.getResponseBodyAsString());
+                return ex;
+        }
+    }
+
+    private String getErrorMessage(WebClientResponseException ex) {
+        try {
+            return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
+        } catch (IOException ioex) {
+            return ex.getMessage();
+        }
+    }
+}
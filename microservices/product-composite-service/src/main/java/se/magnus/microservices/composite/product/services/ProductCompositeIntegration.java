@@ -1,19 +1,20 @@
 package se.magnus.microservices.composite.product.services;
 
-import static java.util.logging.Level.FINE;
-import static reactor.core.publisher.Flux.empty;
+import static java.util.Collections.emptyList;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
+import static se.magnus.util.metrics.ServiceMetrics.INTEGRATION_TIMER;
 
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
-import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import io.github.resilience4j.retry.annotation.Retry;
-import io.github.resilience4j.timelimiter.annotation.TimeLimiter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +22,8 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
@@ -32,15 +35,16 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
+import se.magnus.api.core.recommendation.RatingSummary;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
+import se.magnus.api.core.review.ReviewSummary;
 import se.magnus.api.event.Event;
-import se.magnus.api.exceptions.InvalidInputException;
-import se.magnus.api.exceptions.NotFoundException;
-import se.magnus.util.http.HttpErrorInfo;
-import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.http.ETagged;
+import se.magnus.util.metrics.ServiceMetrics;
+import se.magnus.util.reactor.ReactiveDiagnostics;
 
 @Component
 public class ProductCompositeIntegration implements ProductService, RecommendationService, ReviewService {
@@ -58,7 +62,11 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 
     private final Scheduler publishEventScheduler;
 
-    private final ServiceUtil serviceUtil;
+    private final CoreServiceClient client;
+
+    private final ServiceMetrics metrics;
+
+    private final ReactiveDiagnostics diagnostics;
 
     @Autowired
     public ProductCompositeIntegration(
@@ -67,14 +75,18 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
             WebClient.Builder webClient,
             ObjectMapper mapper,
             StreamBridge streamBridge,
-            ServiceUtil serviceUtil
+            CoreServiceClient client,
+            ServiceMetrics metrics,
+            ReactiveDiagnostics diagnostics
     ) {
 
         this.publishEventScheduler = publishEventScheduler;
         this.webClient = webClient.build();
         this.mapper = mapper;
         this.streamBridge = streamBridge;
-        this.serviceUtil = serviceUtil;
+        this.client = client;
+        this.metrics = metrics;
+        this.diagnostics = diagnostics;
 
     }
 
@@ -82,45 +94,60 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     public Mono<Product> createProduct(Product body) {
 
         return Mono.fromCallable(() -> {
-            sendMessage("products-out-0", new Event(CREATE, body.getProductId(), body));
+            sendMessage("product", "products-out-0", new Event(CREATE, body.getProductId(), body));
             return body;
         }).subscribeOn(publishEventScheduler);
     }
 
+    /**
+     * Publishes the create events of a batch of products, see {@link #sendMessages(String, String, List)}.
+     */
+    public Mono<Void> createProducts(List<Product> products) {
+        return sendMessages("product", "products-out-0", createEvents(products, Product::getProductId));
+    }
+
     @Override
-    @Retry(name = "product")
-    @TimeLimiter(name = "product")
-    @CircuitBreaker(name = "product", fallbackMethod = "getProductFallbackValue")
     public Mono<Product> getProduct(int productId, int delay, int faultPercent) {
-        URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL + "/product/{productId}?delay={delay}&faultPercent={faultPercent}")
-                .build(productId, delay, faultPercent);
-        LOG.debug("Will call the getProduct API on URL: {}", url);
+        return getProductWithETag(productId, delay, faultPercent).map(ETagged::getValue);
+    }
 
-        return webClient.get().uri(url).retrieve().bodyToMono(Product.class).log(LOG.getName(), FINE).onErrorMap(WebClientResponseException.class, ex -> handleException(ex));
+    /**
+     * Same as {@link #getProduct(int, int, int)} but also returns the ETag of the response, empty for the fallback
+     * product.
+     */
+    public Mono<ETagged<Product>> getProductWithETag(int productId, int delay, int faultPercent) {
+        return client.getProduct(productId, delay, faultPercent).map(json -> decode(json, mapper.constructType(Product.class)));
     }
 
+    /**
+     * Same as {@link #getProductWithETag(int, int, int)} but returns the JSON document of the product as is, used for
+     * the streaming assembly of the composite response. The caller is responsible for releasing the buffer.
+     */
+    public Mono<ETagged<DataBuffer>> getProductJson(int productId, int delay, int faultPercent) {
+        return client.getProduct(productId, delay, faultPercent);
+    }
 
     /**
-     * This method will be called when circuit breaker is open.
+     * A page of the products for the export. Errors are not replaced with empty results, an export must not silently
+     * leave out products.
      */
-    private Mono<Product> getProductFallbackValue(int productId, int delay, int faultPercent, CallNotPermittedException ex) {
+    @Override
+    public Flux<Product> getProducts(int afterProductId, int limit) {
 
-        LOG.warn("Creating a fail-fast fallback product for productId = {}, delay = {}, faultPercent = {} and exception = {}",
-                productId, delay, faultPercent, ex.toString());
+        URI url = UriComponentsBuilder.fromUriString(PRODUCT_SERVICE_URL + "/product/range?afterProductId={afterProductId}&limit={limit}")
+                .build(afterProductId, limit);
 
-        if (productId == 13) {
-            String errMsg = "Product Id: " + productId + " not found in fallback cache!";
-            LOG.warn(errMsg);
-            throw new NotFoundException(errMsg);
-        }
+        LOG.debug("Will call the getProducts API on URL: {}", url);
 
-        return Mono.just(new Product(productId, "Fallback product" + productId, productId, serviceUtil.getServiceAddress()));
+        return diagnostics.log("ProductCompositeIntegration.getProducts",
+                        metrics.time(INTEGRATION_TIMER, "product", "getProducts", getNdJson(url, Product.class)))
+                .onErrorMap(WebClientResponseException.class, client::handleException);
     }
 
     @Override
     public Mono<Void> deleteProduct(int productId) {
 
-        return Mono.fromRunnable(() -> sendMessage("products-out-0", new Event(DELETE, productId, null)))
+        return Mono.fromRunnable(() -> sendMessage("product", "products-out-0", new Event(DELETE, productId, null)))
                 .subscribeOn(publishEventScheduler).then();
     }
 
@@ -128,26 +155,69 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     public Mono<Recommendation> createRecommendation(Recommendation body) {
 
         return Mono.fromCallable(() -> {
-            sendMessage("recommendations-out-0", new Event(CREATE, body.getProductId(), body));
+            sendMessage("recommendation", "recommendations-out-0", new Event(CREATE, body.getProductId(), body));
             return body;
         }).subscribeOn(publishEventScheduler);
     }
 
+    public Mono<Void> createRecommendations(List<Recommendation> recommendations) {
+        return sendMessages("recommendation", "recommendations-out-0", createEvents(recommendations, Recommendation::getProductId));
+    }
+
+    // Return an empty result if something goes wrong to make it possible for the composite service to return partial responses
     @Override
     public Flux<Recommendation> getRecommendations(int productId) {
+        return getRecommendationsWithETag(productId).flatMapIterable(ETagged::getValue);
+    }
 
-        String url = RECOMMENDATION_SERVICE_URL + "/recommendation?productId=" + productId;
+    /**
+     * Same as {@link #getRecommendations(int)} but also returns the ETag of the response. An empty list without ETag
+     * if something goes wrong.
+     */
+    public Mono<ETagged<List<Recommendation>>> getRecommendationsWithETag(int productId) {
+        return client.getRecommendations(productId)
+                .map(json -> this.<List<Recommendation>>decode(json, mapper.getTypeFactory().constructCollectionType(List.class, Recommendation.class)))
+                .onErrorResume(error -> Mono.just(ETagged.of(emptyList(), "")));
+    }
+
+    @Override
+    public Mono<RatingSummary> getRatingSummary(int productId) {
 
-        LOG.debug("Will call the getRecommendations API on URL: {}", url);
+        String url = RECOMMENDATION_SERVICE_URL + "/recommendation/rating?productId=" + productId;
 
-        // Return an empty result if something goes wrong to make it possible for the composite service to return partial responses
-        return webClient.get().uri(url).retrieve().bodyToFlux(Recommendation.class).log(LOG.getName(), FINE).onErrorResume(error -> empty());
+        LOG.debug("Will call the getRatingSummary API on URL: {}", url);
+
+        // The ratings are left out of the composite response if something goes wrong
+        return diagnostics.log("ProductCompositeIntegration.getRatingSummary",
+                        metrics.time(INTEGRATION_TIMER, "recommendation", "getRatingSummary", webClient.get().uri(url).retrieve().bodyToMono(RatingSummary.class)))
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsInRange(int afterProductId, int lastProductId) {
+
+        URI url = UriComponentsBuilder.fromUriString(RECOMMENDATION_SERVICE_URL + "/recommendation/range?afterProductId={afterProductId}&lastProductId={lastProductId}")
+                .build(afterProductId, lastProductId);
+
+        LOG.debug("Will call the getRecommendationsInRange API on URL: {}", url);
+
+        return diagnostics.log("ProductCompositeIntegration.getRecommendationsInRange",
+                        metrics.time(INTEGRATION_TIMER, "recommendation", "getRecommendationsInRange", getNdJson(url, Recommendation.class)))
+                .onErrorMap(WebClientResponseException.class, client::handleException);
+    }
+
+    /**
+     * Returns the JSON array of the recommendations as is, or empty if something goes wrong. The caller is
+     * responsible for releasing the buffer.
+     */
+    public Mono<ETagged<DataBuffer>> getRecommendationsJson(int productId) {
+        return client.getRecommendations(productId).onErrorResume(error -> Mono.empty());
     }
 
     @Override
     public Mono<Void> deleteRecommendations(int productId) {
 
-        return Mono.fromRunnable(() -> sendMessage("recommendations-out-0", new Event(DELETE, productId, null)))
+        return Mono.fromRunnable(() -> sendMessage("recommendation", "recommendations-out-0", new Event(DELETE, productId, null)))
                 .subscribeOn(publishEventScheduler).then();
     }
 
@@ -155,87 +225,162 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
     public Mono<Review> createReview(Review body) {
 
         return Mono.fromCallable(() -> {
-            sendMessage("reviews-out-0", new Event(CREATE, body.getProductId(), body));
+            sendMessage("review", "reviews-out-0", new Event(CREATE, body.getProductId(), body));
             return body;
         }).subscribeOn(publishEventScheduler);
     }
 
+    public Mono<Void> createReviews(List<Review> reviews) {
+        return sendMessages("review", "reviews-out-0", createEvents(reviews, Review::getProductId));
+    }
+
+    // Return an empty result if something goes wrong to make it possible for the composite service to return partial responses
     @Override
     public Flux<Review> getReviews(int productId) {
+        return getReviewsWithETag(productId).flatMapIterable(ETagged::getValue);
+    }
+
+    @Override
+    public Flux<Review> getReviewsInRange(int afterProductId, int lastProductId) {
 
-        String url = REVIEW_SERVICE_URL + "/review?productId=" + productId;
+        URI url = UriComponentsBuilder.fromUriString(REVIEW_SERVICE_URL + "/review/range?afterProductId={afterProductId}&lastProductId={lastProductId}")
+                .build(afterProductId, lastProductId);
 
-        LOG.debug("Will call the getReviews API on URL: {}", url);
+        LOG.debug("Will call the getReviewsInRange API on URL: {}", url);
 
-        // Return an empty result if something goes wrong to make it possible for the composite service to return partial responses
-        return webClient.get().uri(url).retrieve().bodyToFlux(Review.class).log(LOG.getName(), FINE).onErrorResume(error -> empty());
+        return diagnostics.log("ProductCompositeIntegration.getReviewsInRange",
+                        metrics.time(INTEGRATION_TIMER, "review", "getReviewsInRange", getNdJson(url, Review.class)))
+                .onErrorMap(WebClientResponseException.class, client::handleException);
+    }
+
+    /**
+     * Same as {@link #getReviews(int)} but also returns the ETag of the response. An empty list without ETag if
+     * something goes wrong.
+     */
+    public Mono<ETagged<List<Review>>> getReviewsWithETag(int productId) {
+        return client.getReviews(productId)
+                .map(json -> this.<List<Review>>decode(json, mapper.getTypeFactory().constructCollectionType(List.class, Review.class)))
+                .onErrorResume(error -> Mono.just(ETagged.of(emptyList(), "")));
+    }
+
+    @Override
+    public Mono<ReviewSummary> getReviewSummary(int productId) {
+
+        String url = REVIEW_SERVICE_URL + "/review/summary?productId=" + productId;
+
+        LOG.debug("Will call the getReviewSummary API on URL: {}", url);
+
+        return diagnostics.log("ProductCompositeIntegration.getReviewSummary",
+                        metrics.time(INTEGRATION_TIMER, "review", "getReviewSummary", webClient.get().uri(url).retrieve().bodyToMono(ReviewSummary.class)))
+                .onErrorResume(error -> Mono.empty());
+    }
+
+    /**
+     * Returns the JSON array of the reviews as is, or empty if something goes wrong. The caller is responsible for
+     * releasing the buffer.
+     */
+    public Mono<ETagged<DataBuffer>> getReviewsJson(int productId) {
+        return client.getReviews(productId).onErrorResume(error -> Mono.empty());
     }
 
     @Override
     public Mono<Void> deleteReviews(int productId) {
 
-        return Mono.fromRunnable(() -> sendMessage("reviews-out-0", new Event(DELETE, productId, null)))
+        return Mono.fromRunnable(() -> sendMessage("review", "reviews-out-0", new Event(DELETE, productId, null)))
                 .subscribeOn(publishEventScheduler).then();
     }
 
+    /**
+     * Returns the current ETag of a product, without loading it, or empty if the product service has none or
+     * something goes wrong. Only used for conditional requests, the responses of the core services carry the ETag of
+     * their body.
+     */
+    public Mono<String> getProductETag(int productId) {
+        return client.getProductETag(productId).onErrorResume(error -> Mono.empty());
+    }
+
+    public Mono<String> getRecommendationsETag(int productId) {
+        return client.getRecommendationsETag(productId).onErrorResume(error -> Mono.empty());
+    }
+
+    public Mono<String> getReviewsETag(int productId) {
+        return client.getReviewsETag(productId).onErrorResume(error -> Mono.empty());
+    }
+
     public Mono<Health> getProductHealth() {
-        return getHealth(PRODUCT_SERVICE_URL);
+        return getHealth("product", PRODUCT_SERVICE_URL);
     }
 
     public Mono<Health> getRecommendationHealth() {
-        return getHealth(RECOMMENDATION_SERVICE_URL);
+        return getHealth("recommendation", RECOMMENDATION_SERVICE_URL);
     }
 
     public Mono<Health> getReviewHealth() {
-        return getHealth(REVIEW_SERVICE_URL);
+        return getHealth("review", REVIEW_SERVICE_URL);
     }
 
-    private Mono<Health> getHealth(String url) {
+    private Mono<Health> getHealth(String service, String url) {
         url += "/actuator/health";
         LOG.debug("Will call the Health API on URL: {}", url);
-        return webClient.get().uri(url).retrieve().bodyToMono(String.class)
-                .map(s -> new Health.Builder().up().build())
-                .onErrorResume(ex -> Mono.just(new Health.Builder().down(ex).build()))
-                .log(LOG.getName(), FINE);
-    }
-
-    private void sendMessage(String bindingName, Event event) {
-        LOG.debug("Sending a {} message to {}", event.getEventType(), bindingName);
-        Message message = MessageBuilder.withPayload(event)
-                .setHeader("partitionKey", event.getKey())
-                .build();
-        streamBridge.send(bindingName, message);
+        return diagnostics.log("ProductCompositeIntegration.getHealth",
+                metrics.time(INTEGRATION_TIMER, service, "getHealth", webClient.get().uri(url).retrieve().bodyToMono(String.class))
+                        .map(s -> new Health.Builder().up().build())
+                        .onErrorResume(ex -> Mono.just(new Health.Builder().down(ex).build())));
     }
 
-    private Throwable handleException(Throwable ex) {
-
-        if (!(ex instanceof WebClientResponseException)) {
-            LOG.warn("Got a unexpected error: {}, will rethrow it", ex.toString());
-            return ex;
+    /**
+     * Decodes the JSON body of a response of a core service and releases its buffer.
+     */
+    private <T> ETagged<T> decode(ETagged<DataBuffer> json, JavaType type) {
+        try (InputStream body = json.getValue().asInputStream(true)) {
+            return ETagged.of(mapper.readValue(body, type), json.getETag());
+        } catch (IOException ioex) {
+            throw new IllegalStateException("Failed to decode the response of a core service", ioex);
         }
+    }
 
-        WebClientResponseException wcre = (WebClientResponseException) ex;
-
-        switch (wcre.getStatusCode()) {
-
-            case NOT_FOUND:
-                return new NotFoundException(getErrorMessage(wcre));
+    /**
+     * Decodes the newline delimited JSON of a range endpoint one document at a time, as it arrives.
+     */
+    private <T> Flux<T> getNdJson(URI url, Class<T> type) {
+        return webClient.get().uri(url).accept(MediaType.APPLICATION_NDJSON).retrieve().bodyToFlux(type);
+    }
 
-            case UNPROCESSABLE_ENTITY:
-                return new InvalidInputException(getErrorMessage(wcre));
+    private void sendMessage(String service, String bindingName, Event event) {
+        LOG.debug("Sending a {} message to {}", event.getEventType(), bindingName);
+        Message message = toMessage(event);
+        metrics.time(INTEGRATION_TIMER, service, "publish", () -> streamBridge.send(bindingName, message));
+    }
 
-            default:
-                LOG.warn("Got an unexpected HTTP error: {}, will rethrow it", wcre.getStatusCode());
-                LOG.warn("Error body: {}", wcre.getResponseBodyAsString());
-                return ex;
+    /**
+     * Publishes the events in order, in one task on the publish scheduler instead of one task per event. Stops at the
+     * first event that can't be published, i.e. the events before it are published.
+     *
+     * Each send is still traced on its own by the Sleuth instrumentation of StreamBridge, which makes up most of the
+     * cost of a send, i.e. a batch publishes in the order of a few thousand events per second.
+     */
+    private Mono<Void> sendMessages(String service, String bindingName, List<Event> events) {
+        if (events.isEmpty()) {
+            return Mono.empty();
         }
+        return Mono.fromRunnable(() -> {
+            LOG.debug("Sending a batch of {} messages to {}", events.size(), bindingName);
+            metrics.time(INTEGRATION_TIMER, service, "publishBatch", () -> {
+                events.forEach(event -> streamBridge.send(bindingName, toMessage(event)));
+                return events.size();
+            });
+        }).subscribeOn(publishEventScheduler).then();
     }
 
-    private String getErrorMessage(WebClientResponseException ex) {
-        try {
-            return mapper.readValue(ex.getResponseBodyAsString(), HttpErrorInfo.class).getMessage();
-        } catch (IOException ioex) {
-            return ex.getMessage();
-        }
+    private static <T> List<Event> createEvents(List<T> bodies, Function<T, Integer> key) {
+        return bodies.stream()
+                .map(body -> new Event(CREATE, key.apply(body), body))
+                .collect(Collectors.toList());
+    }
+
+    private static Message toMessage(Event event) {
+        return MessageBuilder.withPayload(event)
+                .setHeader("partitionKey", event.getKey())
+                .build();
     }
-}
\ No newline at end of file
+}
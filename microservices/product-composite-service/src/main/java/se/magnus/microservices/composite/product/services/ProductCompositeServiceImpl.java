@@ -1,76 +1,86 @@
 package se.magnus.microservices.composite.product.services;
 
-import static java.util.logging.Level.FINE;
+import static java.util.Collections.emptyList;
 
-import java.net.URL;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.ReactiveSecurityContextHolder;
-import org.springframework.security.core.context.SecurityContext;
-import org.springframework.security.core.context.SecurityContextImpl;
-import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import se.magnus.api.composite.product.*;
 import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.RatingSummary;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
+import se.magnus.microservices.composite.product.readmodel.ProductAggregateReadModel;
+import se.magnus.microservices.composite.product.readmodel.ReadModelEntry;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
 import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
 
 @RestController
 public class ProductCompositeServiceImpl implements ProductCompositeService {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProductCompositeServiceImpl.class);
 
-    private final SecurityContext nullSecCtx = new SecurityContextImpl();
-
     private final ServiceUtil serviceUtil;
     private final ProductCompositeIntegration integration;
+    private final ReactiveDiagnostics diagnostics;
+    private final ProductAggregateReadModel readModel;
+    private final boolean includeRatings;
+    private final int publishBatchSize;
+    private final int publishConcurrency;
 
     @Autowired
-    public ProductCompositeServiceImpl(ServiceUtil serviceUtil, ProductCompositeIntegration integration) {
+    public ProductCompositeServiceImpl(
+            ServiceUtil serviceUtil,
+            ProductCompositeIntegration integration,
+            ReactiveDiagnostics diagnostics,
+            ObjectProvider<ProductAggregateReadModel> readModel,
+            @Value("${app.composite.include-ratings:false}") boolean includeRatings,
+            @Value("${app.composite.publish.batch-size:100}") int publishBatchSize,
+            @Value("${app.composite.publish.concurrency:3}") int publishConcurrency) {
+
         this.serviceUtil = serviceUtil;
         this.integration = integration;
+        this.diagnostics = diagnostics;
+        this.readModel = readModel.getIfAvailable();
+        this.includeRatings = includeRatings;
+        this.publishBatchSize = publishBatchSize;
+        this.publishConcurrency = publishConcurrency;
     }
 
+    /**
+     * Publishes the recommendations and reviews in batches of app.composite.publish.batch-size, one batch at a time per
+     * binding to keep their order, and publishes to at most app.composite.publish.concurrency bindings at a time. A
+     * product with thousands of reviews takes a few tasks of the publish scheduler, instead of one task per review
+     * that overflows its task queue.
+     */
     @Override
     public Mono<Void> createProduct(ProductAggregate body) {
 
         try {
 
-            List<Mono> monoList = new ArrayList<>();
-
-            monoList.add(getLogAuthorizationInfoMono());
-
-            LOG.debug("createCompositeProduct: creates a new composite entity for productId: {}", body.getProductId());
-
-            Product product = new Product(body.getProductId(), body.getName(), body.getWeight(), null);
-            monoList.add(integration.createProduct(product));
-
-            if (body.getRecommendations() != null) {
-                body.getRecommendations().forEach(r -> {
-                    Recommendation recommendation = new Recommendation(body.getProductId(), r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null);
-                    monoList.add(integration.createRecommendation(recommendation));
-                });
-            }
+            int productId = body.getProductId();
+            LOG.debug("createCompositeProduct: creates a new composite entity for productId: {}", productId);
 
-            if (body.getReviews() != null) {
-                body.getReviews().forEach(r -> {
-                    Review review = new Review(body.getProductId(), r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent(), null);
-                    monoList.add(integration.createReview(review));
-                });
-            }
-
-            LOG.debug("createCompositeProduct: composite entities created for productId: {}", body.getProductId());
-
-            return Mono.zip(r -> "", monoList.toArray(new Mono[0]))
-                    .doOnError(ex -> LOG.warn("createCompositeProduct failed: {}", ex.toString()))
-                    .then();
+            return Flux.just(
+                            integration.createProduct(toProduct(body)).then(),
+                            publishInBatches(toRecommendations(body), integration::createRecommendations),
+                            publishInBatches(toReviews(body), integration::createReviews))
+                    .flatMap(publish -> publish, publishConcurrency)
+                    .then()
+                    .doOnSuccess(v -> LOG.debug("createCompositeProduct: composite entities created for productId: {}", productId))
+                    .doOnError(ex -> LOG.warn("createCompositeProduct failed: {}", ex.toString()));
 
         } catch (RuntimeException re) {
             LOG.warn("createCompositeProduct failed: {}", re.toString());
@@ -78,19 +88,73 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         }
     }
 
+    private <T> Mono<Void> publishInBatches(List<T> bodies, Function<List<T>, Mono<Void>> publish) {
+        return Flux.fromIterable(bodies)
+                .buffer(publishBatchSize)
+                .concatMap(publish)
+                .then();
+    }
+
     @Override
     public Mono<ProductAggregate> getProduct(int productId, int delay, int faultPercent) {
 
         LOG.info("Will get composite product info for product.id={}", productId);
-        return Mono.zip(
-                        values -> createProductAggregate(
-                                (SecurityContext) values[0], (Product) values[1], (List<Recommendation>) values[2], (List<Review>) values[3], serviceUtil.getServiceAddress()),
-                        getSecurityContextMono(),
-                        integration.getProduct(productId, delay, faultPercent),
-                        integration.getRecommendations(productId).collectList(),
-                        integration.getReviews(productId).collectList())
-                .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString()))
-                .log(LOG.getName(), FINE);
+
+        // Requests with a delay or fault are used to test the resilience of the calls to the core services
+        if (readModel == null || delay != 0 || faultPercent != 0) {
+            return getProductFromCoreServices(productId, delay, faultPercent);
+        }
+
+        // The lookup may wait for the lock of the read model or read its memory-mapped segments, so it is kept off the event loop
+        return Mono.fromCallable(() -> Optional.ofNullable(readModel.get(productId)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(entry -> entry.isPresent()
+                        ? getProductFromReadModel(productId, entry.get())
+                        : getProductFromCoreServices(productId, delay, faultPercent));
+    }
+
+    private Mono<ProductAggregate> getProductFromReadModel(int productId, ReadModelEntry entry) {
+        String eTag = readModel.getETag(entry);
+        return ETagUtil.ifNoneMatch(Mono.just(eTag), () -> getRatings(productId)
+                .map(ratings -> ETagged.of(withRatings(fromReadModel(entry.getAggregate()), ratings), eTag)));
+    }
+
+    private Mono<ProductAggregate> getProductFromCoreServices(int productId, int delay, int faultPercent) {
+
+        // The ETag is combined from the ETags of the responses of the core services that the aggregate is created from
+        return diagnostics.log("ProductCompositeService.getProduct", ETagUtil.ifNoneMatch(getProductAggregateETag(productId), () -> Mono.zip(
+                        integration.getProductWithETag(productId, delay, faultPercent),
+                        integration.getRecommendationsWithETag(productId),
+                        integration.getReviewsWithETag(productId),
+                        getRatings(productId))
+                .map(values -> ETagged.of(
+                        withRatings(createProductAggregate(
+                                values.getT1().getValue(), values.getT2().getValue(), values.getT3().getValue(), getServiceAddress()), values.getT4()),
+                        combineETags(values.getT1().getETag(), values.getT2().getETag(), values.getT3().getETag()))))
+                .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString())));
+    }
+
+    /**
+     * Combines the ETags of the product, its recommendations and its reviews, all derived from the version fields
+     * of the underlying entities. Empty if the product does not exist. Only used for conditional requests.
+     */
+    public Mono<String> getProductAggregateETag(int productId) {
+        return Mono.defer(() -> Mono.zip(
+                        integration.getProductETag(productId),
+                        integration.getRecommendationsETag(productId),
+                        integration.getReviewsETag(productId)))
+                .map(eTags -> combineETags(eTags.getT1(), eTags.getT2(), eTags.getT3()));
+    }
+
+    /**
+     * Combines the ETags of the responses of the core services into the ETag of the aggregate, empty if any of them
+     * is missing, e.g. for the fallback product or if the recommendations or reviews could not be fetched.
+     */
+    public static String combineETags(String productETag, String recommendationsETag, String reviewsETag) {
+        if (productETag.isEmpty() || recommendationsETag.isEmpty() || reviewsETag.isEmpty()) {
+            return "";
+        }
+        return ETagUtil.strongETag(productETag, recommendationsETag, reviewsETag);
     }
 
     @Override
@@ -99,13 +163,12 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
 
             LOG.debug("deleteCompositeProduct 4: Deletes a product aggregate for productId: {}", productId);
 
-            return Mono.zip(r -> "",
-                            getLogAuthorizationInfoMono(),
+            return diagnostics.log("ProductCompositeService.deleteProduct", Mono.zip(r -> "",
                             integration.deleteProduct(productId),
                             integration.deleteRecommendations(productId),
                             integration.deleteReviews(productId))
-                    .doOnError(ex -> LOG.warn("delete failed: {}", ex.toString()))
-                    .log(LOG.getName(), FINE).then();
+                    .doOnError(ex -> LOG.warn("delete failed: {}", ex.toString())))
+                    .then();
 
         } catch (RuntimeException re) {
             LOG.warn("deleteCompositeProduct failed: {}", re.toString());
@@ -113,10 +176,42 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         }
     }
 
-    private ProductAggregate createProductAggregate(
-            SecurityContext sc, Product product, List<Recommendation> recommendations, List<Review> reviews, String serviceAddress) {
+    /**
+     * The precomputed rating summary of the recommendation service if app.composite.include-ratings is set. Empty if
+     * not, or if the summary can't be fetched, in which case the aggregate is returned without ratings. Fetched
+     * together with the product, its recommendations and its reviews, also by the streaming assembly.
+     */
+    public Mono<Optional<RatingSummary>> getRatings(int productId) {
+        if (!includeRatings) {
+            return Mono.just(Optional.empty());
+        }
+        return integration.getRatingSummary(productId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private static ProductAggregate withRatings(ProductAggregate aggregate, Optional<RatingSummary> ratings) {
+        return ratings
+                .map(summary -> new ProductAggregate(aggregate.getProductId(), aggregate.getName(), aggregate.getWeight(),
+                        aggregate.getRecommendations(), aggregate.getReviews(), aggregate.getServiceAddresses(), summary))
+                .orElse(aggregate);
+    }
+
+    private ProductAggregate fromReadModel(ProductAggregate aggregate) {
+        String serviceAddress = getServiceAddress();
+        if (serviceAddress == null) {
+            return aggregate;
+        }
+        return new ProductAggregate(aggregate.getProductId(), aggregate.getName(), aggregate.getWeight(),
+                aggregate.getRecommendations(), aggregate.getReviews(), new ServiceAddresses(serviceAddress, "", "", ""));
+    }
+
+    private String getServiceAddress() {
+        return serviceUtil.isServiceAddressEnabled() ? serviceUtil.getServiceAddress() : null;
+    }
 
-        logAuthorizationInfo(sc);
+    public ProductAggregate createProductAggregate(
+            Product product, List<Recommendation> recommendations, List<Review> reviews, String serviceAddress) {
 
         // 1. Setup product info
         int productId = product.getProductId();
@@ -135,7 +230,10 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
                         .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
                         .collect(Collectors.toList());
 
-        // 4. Create info regarding the involved microservices addresses
+        // 4. Create info regarding the involved microservices addresses, if enabled
+        if (serviceAddress == null) {
+            return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, null);
+        }
         String productAddress = product.getServiceAddress();
         String reviewAddress = (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
         String recommendationAddress = (recommendations != null && recommendations.size() > 0) ? recommendations.get(0).getServiceAddress() : "";
@@ -144,36 +242,32 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         return new ProductAggregate(productId, name, weight, recommendationSummaries, reviewSummaries, serviceAddresses);
     }
 
-    private Mono<SecurityContext> getLogAuthorizationInfoMono() {
-        return getSecurityContextMono().doOnNext(sc -> logAuthorizationInfo(sc));
-    }
-
-    private Mono<SecurityContext> getSecurityContextMono() {
-        return ReactiveSecurityContextHolder.getContext().defaultIfEmpty(nullSecCtx);
+    /**
+     * The product of a composite product, as it is created in the product service. Also used by the bulk import.
+     */
+    public static Product toProduct(ProductAggregate body) {
+        return new Product(body.getProductId(), body.getName(), body.getWeight(), null);
     }
 
-    private void logAuthorizationInfo(SecurityContext sc) {
-        if (sc != null && sc.getAuthentication() != null && sc.getAuthentication() instanceof JwtAuthenticationToken) {
-            Jwt jwtToken = ((JwtAuthenticationToken)sc.getAuthentication()).getToken();
-            logAuthorizationInfo(jwtToken);
-        } else {
-            LOG.warn("No JWT based Authentication supplied, running tests are we?");
-        }
+    /**
+     * The recommendations of a composite product, as they are created in the recommendation service.
+     */
+    public static List<Recommendation> toRecommendations(ProductAggregate body) {
+        int productId = body.getProductId();
+        return (body.getRecommendations() == null) ? emptyList() :
+                body.getRecommendations().stream()
+                        .map(r -> new Recommendation(productId, r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null))
+                        .collect(Collectors.toList());
     }
 
-    private void logAuthorizationInfo(Jwt jwt) {
-        if (jwt == null) {
-            LOG.warn("No JWT supplied, running tests are we?");
-        } else {
-            if (LOG.isDebugEnabled()) {
-                URL issuer = jwt.getIssuer();
-                List<String> audience = jwt.getAudience();
-                Object subject = jwt.getClaims().get("sub");
-                Object scopes = jwt.getClaims().get("scope");
-                Object expires = jwt.getClaims().get("exp");
-
-                LOG.debug("Authorization info: Subject: {}, scopes: {}, expires {}: issuer: {}, audience: {}", subject, scopes, expires, issuer, audience);
-            }
-        }
+    /**
+     * The reviews of a composite product, as they are created in the review service.
+     */
+    public static List<Review> toReviews(ProductAggregate body) {
+        int productId = body.getProductId();
+        return (body.getReviews() == null) ? emptyList() :
+                body.getReviews().stream()
+                        .map(r -> new Review(productId, r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent(), null))
+                        .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
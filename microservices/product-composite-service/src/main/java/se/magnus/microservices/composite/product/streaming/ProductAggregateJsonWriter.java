@@ -0,0 +1,159 @@
+package se.magnus.microservices.composite.product.streaming;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import se.magnus.api.core.recommendation.RatingSummary;
+
+/**
+ * Writes the JSON document of a ProductAggregate directly from the JSON documents returned by the core services, i.e.
+ * without creating any Product, Recommendation, Review or summary objects on the way.
+ *
+ * The tokens of each document are copied to the output as they are parsed, fields that are not part of the aggregate
+ * are skipped. The result is the same document as a serialized ProductAggregate, except that the fields of the
+ * product, recommendations and reviews come in the order the core services wrote them.
+ */
+public class ProductAggregateJsonWriter {
+
+    private static final Set<String> PRODUCT_FIELDS = new HashSet<>(Arrays.asList("productId", "name", "weight"));
+    private static final Set<String> RECOMMENDATION_FIELDS = new HashSet<>(Arrays.asList("recommendationId", "author", "rate", "content"));
+    private static final Set<String> REVIEW_FIELDS = new HashSet<>(Arrays.asList("reviewId", "author", "subject", "content"));
+
+    private static final String SERVICE_ADDRESS_FIELD = "serviceAddress";
+
+    private final JsonFactory jsonFactory;
+
+    public ProductAggregateJsonWriter(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Writes the aggregate to a new buffer, allocated from the supplied factory. The input buffers are not released.
+     *
+     * @param product the JSON object of the product
+     * @param recommendations the JSON array of the recommendations, written as an empty array if null or empty
+     * @param reviews the JSON array of the reviews, written as an empty array if null or empty
+     * @param ratings the rating summary, or null to leave out the ratings
+     * @param serviceAddress the address of this service, or null to leave out the service addresses
+     */
+    public DataBuffer write(DataBuffer product, DataBuffer recommendations, DataBuffer reviews, RatingSummary ratings,
+                            String serviceAddress, DataBufferFactory bufferFactory) {
+
+        DataBuffer out = bufferFactory.allocateBuffer(product.readableByteCount() + size(recommendations) + size(reviews));
+        try {
+            try (JsonGenerator generator = jsonFactory.createGenerator(out.asOutputStream())) {
+
+                generator.writeStartObject();
+                String productAddress = copyObject(product, PRODUCT_FIELDS, generator);
+
+                generator.writeFieldName("recommendations");
+                String recommendationAddress = copyArray(recommendations, RECOMMENDATION_FIELDS, generator);
+
+                generator.writeFieldName("reviews");
+                String reviewAddress = copyArray(reviews, REVIEW_FIELDS, generator);
+
+                if (serviceAddress != null) {
+                    generator.writeObjectFieldStart("serviceAddresses");
+                    generator.writeStringField("cmp", serviceAddress);
+                    generator.writeStringField("pro", productAddress);
+                    generator.writeStringField("rev", reviewAddress);
+                    generator.writeStringField("rec", recommendationAddress);
+                    generator.writeEndObject();
+                }
+
+                if (ratings != null) {
+                    generator.writeObjectField("ratings", ratings);
+                }
+                generator.writeEndObject();
+            }
+            return out;
+
+        } catch (IOException ioe) {
+            DataBufferUtils.release(out);
+            throw new UncheckedIOException("Failed to write the product aggregate", ioe);
+        } catch (RuntimeException re) {
+            DataBufferUtils.release(out);
+            throw re;
+        }
+    }
+
+    /**
+     * Copies the fields of a JSON object to the object currently written, returns its service address.
+     */
+    private String copyObject(DataBuffer buffer, Set<String> fields, JsonGenerator generator) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(buffer.asInputStream())) {
+            expect(parser, JsonToken.START_OBJECT);
+            return copyFields(parser, fields, generator);
+        }
+    }
+
+    /**
+     * Copies a JSON array of objects, returns the service address of the first object, or an empty string if there is
+     * none, same as when the aggregate is created from objects.
+     */
+    private String copyArray(DataBuffer buffer, Set<String> fields, JsonGenerator generator) throws IOException {
+        String firstAddress = "";
+
+        generator.writeStartArray();
+        if (size(buffer) > 0) {
+            try (JsonParser parser = jsonFactory.createParser(buffer.asInputStream())) {
+                expect(parser, JsonToken.START_ARRAY);
+
+                boolean first = true;
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    generator.writeStartObject();
+                    String address = copyFields(parser, fields, generator);
+                    generator.writeEndObject();
+
+                    if (first) {
+                        firstAddress = address;
+                        first = false;
+                    }
+                }
+            }
+        }
+        generator.writeEndArray();
+
+        return firstAddress;
+    }
+
+    private String copyFields(JsonParser parser, Set<String> fields, JsonGenerator generator) throws IOException {
+        String serviceAddress = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if (fields.contains(name)) {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            } else if (SERVICE_ADDRESS_FIELD.equals(name) && value == JsonToken.VALUE_STRING) {
+                serviceAddress = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return serviceAddress;
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but got " + token);
+        }
+    }
+
+    private static int size(DataBuffer buffer) {
+        return buffer == null ? 0 : buffer.readableByteCount();
+    }
+}
@@ -0,0 +1,150 @@
+package se.magnus.microservices.composite.product.streaming;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
+import se.magnus.util.http.HttpErrorInfo;
+import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
+
+/**
+ * Serves GET /product-composite/{productId} by splicing the JSON documents of the core services into the response,
+ * see {@link ProductAggregateJsonWriter}, instead of going through the ProductAggregate object graph.
+ *
+ * The response buffers of the core services are joined, without copying if they are pooled, and the aggregate is
+ * written to a buffer allocated from the response's buffer factory. Resilience, ratings, ETags and error responses
+ * work the same as for {@link ProductCompositeServiceImpl#getProduct(int, int, int)}, i.e. the ETag is combined from
+ * the responses of the core services, and the ETags are only probed for conditional requests.
+ */
+public class ProductAggregateStreamingHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProductAggregateStreamingHandler.class);
+
+    private final ProductCompositeIntegration integration;
+    private final ProductCompositeServiceImpl service;
+    private final ProductAggregateJsonWriter writer;
+    private final ServiceUtil serviceUtil;
+    private final ReactiveDiagnostics diagnostics;
+
+    public ProductAggregateStreamingHandler(
+            ProductCompositeIntegration integration,
+            ProductCompositeServiceImpl service,
+            ProductAggregateJsonWriter writer,
+            ServiceUtil serviceUtil,
+            ReactiveDiagnostics diagnostics) {
+
+        this.integration = integration;
+        this.service = service;
+        this.writer = writer;
+        this.serviceUtil = serviceUtil;
+        this.diagnostics = diagnostics;
+    }
+
+    public Mono<ServerResponse> getProduct(ServerRequest request) {
+        int productId = intParameter("productId", request.pathVariable("productId"));
+        int delay = intParameter("delay", request.queryParam("delay").orElse("0"));
+        int faultPercent = intParameter("faultPercent", request.queryParam("faultPercent").orElse("0"));
+
+        LOG.info("Will get composite product info for product.id={}", productId);
+
+        DataBufferFactory bufferFactory = request.exchange().getResponse().bufferFactory();
+        List<String> ifNoneMatch = request.headers().asHttpHeaders().getIfNoneMatch();
+
+        Mono<ServerResponse> response;
+        if (ifNoneMatch.isEmpty()) {
+            response = assemble(productId, delay, faultPercent, bufferFactory).flatMap(ProductAggregateStreamingHandler::ok);
+        } else {
+            response = service.getProductAggregateETag(productId).defaultIfEmpty("")
+                    .flatMap(tag -> ETagUtil.matches(ifNoneMatch, tag)
+                            ? ServerResponse.status(NOT_MODIFIED).eTag(tag).build()
+                            : assemble(productId, delay, faultPercent, bufferFactory).flatMap(ProductAggregateStreamingHandler::ok));
+        }
+
+        return diagnostics.log("ProductAggregateStreamingHandler.getProduct", response
+                .doOnError(ex -> LOG.warn("getCompositeProduct failed: {}", ex.toString()))
+                .onErrorResume(NotFoundException.class, ex -> error(NOT_FOUND, request, ex))
+                .onErrorResume(InvalidInputException.class, ex -> error(UNPROCESSABLE_ENTITY, request, ex)));
+    }
+
+    private Mono<ETagged<DataBuffer>> assemble(int productId, int delay, int faultPercent, DataBufferFactory bufferFactory) {
+        return Mono.defer(() -> Mono.zip(
+                        integration.getProductJson(productId, delay, faultPercent),
+                        integration.getRecommendationsJson(productId).switchIfEmpty(emptyBuffer()),
+                        integration.getReviewsJson(productId).switchIfEmpty(emptyBuffer()),
+                        service.getRatings(productId)))
+                .map(json -> {
+                    try {
+                        DataBuffer aggregate = writer.write(json.getT1().getValue(), json.getT2().getValue(), json.getT3().getValue(),
+                                json.getT4().orElse(null), getServiceAddress(), bufferFactory);
+                        return ETagged.of(aggregate,
+                                ProductCompositeServiceImpl.combineETags(json.getT1().getETag(), json.getT2().getETag(), json.getT3().getETag()));
+                    } finally {
+                        DataBufferUtils.release(json.getT1().getValue());
+                        DataBufferUtils.release(json.getT2().getValue());
+                        DataBufferUtils.release(json.getT3().getValue());
+                    }
+                })
+                .doOnDiscard(ETagged.class, ProductAggregateStreamingHandler::release);
+    }
+
+    private static void release(ETagged<?> tagged) {
+        if (tagged.getValue() instanceof DataBuffer) {
+            DataBufferUtils.release((DataBuffer) tagged.getValue());
+        }
+    }
+
+    private String getServiceAddress() {
+        return serviceUtil.isServiceAddressEnabled() ? serviceUtil.getServiceAddress() : null;
+    }
+
+    // Without ETag, like the empty list returned by the service implementation if the call fails
+    private static Mono<ETagged<DataBuffer>> emptyBuffer() {
+        return Mono.fromSupplier(() -> ETagged.of(DefaultDataBufferFactory.sharedInstance.allocateBuffer(0), ""));
+    }
+
+    // The Content-Length lets the response cache of the edge server tell the aggregate from a streamed response
+    private static Mono<ServerResponse> ok(ETagged<DataBuffer> json) {
+        ServerResponse.BodyBuilder builder = ServerResponse.ok()
+                .contentType(APPLICATION_JSON)
+                .contentLength(json.getValue().readableByteCount());
+        if (!json.getETag().isEmpty()) {
+            builder.eTag(json.getETag());
+        }
+        return builder.body(BodyInserters.fromDataBuffers(Mono.just(json.getValue())));
+    }
+
+    private static Mono<ServerResponse> error(HttpStatus status, ServerRequest request, Exception ex) {
+        return ServerResponse.status(status)
+                .contentType(APPLICATION_JSON)
+                .bodyValue(new HttpErrorInfo(status, request.path(), ex.getMessage()));
+    }
+
+    private static int intParameter(String name, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            throw new ServerWebInputException("Type mismatch for parameter: " + name);
+        }
+    }
+}
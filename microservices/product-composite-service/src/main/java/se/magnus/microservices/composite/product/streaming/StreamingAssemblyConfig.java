@@ -0,0 +1,51 @@
+package se.magnus.microservices.composite.product.streaming;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.path;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.microservices.composite.product.services.ProductCompositeServiceImpl;
+import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
+
+/**
+ * Streaming assembly of the composite product, see {@link ProductAggregateStreamingHandler}.
+ *
+ * Router functions are mapped before annotated controllers, so when enabled the route below takes over
+ * GET /product-composite/{productId} from ProductCompositeServiceImpl. The OpenAPI documentation is unchanged since
+ * the response is the same.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.streaming-assembly.enabled", havingValue = "true")
+public class StreamingAssemblyConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingAssemblyConfig.class);
+
+    @Bean
+    public ProductAggregateStreamingHandler productAggregateStreamingHandler(
+            ProductCompositeIntegration integration,
+            ProductCompositeServiceImpl service,
+            ObjectMapper mapper,
+            ServiceUtil serviceUtil,
+            ReactiveDiagnostics diagnostics) {
+
+        LOG.info("Assembles composite products by streaming the JSON of the core services");
+        return new ProductAggregateStreamingHandler(
+                integration, service, new ProductAggregateJsonWriter(mapper.getFactory()), serviceUtil, diagnostics);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> productAggregateStreamingRoute(ProductAggregateStreamingHandler handler) {
+        // The export has its own controller, see ProductCatalogueExporter
+        return route(GET("/product-composite/{productId}").and(path("/product-composite/export").negate()), handler::getProduct);
+    }
+}
@@ -0,0 +1,124 @@
+package se.magnus.microservices.composite.product.tracing;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides whether to report the spans of a request that was not sampled up front when the request is completed, i.e.
+ * when its local root span ends. The spans are reported if any of them failed or if the request took longer than the
+ * latency threshold, otherwise they are dropped.
+ *
+ * Requires that spans are recorded even if they are not sampled, see Tracing.Builder#alwaysSampleLocal(). Spans of
+ * sampled requests are passed on as is, to be reported by the ordinary Zipkin span handler. Spans of requests that are
+ * not completed are buffered, up to a limited number of requests and spans per request, dropping the least recently
+ * used request when full.
+ */
+public class TailSamplingSpanHandler extends SpanHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TailSamplingSpanHandler.class);
+
+    static final String DECISION_COUNTER = "app.tracing.tail-sampling";
+
+    private final SpanHandler reporter;
+    private final long latencyThresholdMicros;
+    private final int maxSpansPerTrace;
+    private final MeterRegistry registry;
+
+    private final Map<Long, List<BufferedSpan>> buffer;
+
+    public TailSamplingSpanHandler(SpanHandler reporter, Duration latencyThreshold, int maxBufferedTraces, int maxSpansPerTrace, MeterRegistry registry) {
+        this.reporter = reporter;
+        this.latencyThresholdMicros = latencyThreshold.toNanos() / 1000;
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.registry = registry;
+        this.buffer = new LinkedHashMap<Long, List<BufferedSpan>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<BufferedSpan>> eldest) {
+                if (size() > maxBufferedTraces) {
+                    count("evicted");
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (Boolean.TRUE.equals(context.sampled()) || cause != Cause.FINISHED) {
+            return true;
+        }
+
+        if (!context.isLocalRoot()) {
+            synchronized (buffer) {
+                List<BufferedSpan> spans = buffer.computeIfAbsent(context.localRootId(), id -> new ArrayList<>());
+                if (spans.size() < maxSpansPerTrace) {
+                    spans.add(new BufferedSpan(context, span));
+                }
+            }
+            return false;
+        }
+
+        List<BufferedSpan> spans;
+        synchronized (buffer) {
+            spans = buffer.remove(context.localRootId());
+        }
+
+        String decision = decide(span, spans);
+        count(decision);
+        if (!decision.equals("dropped")) {
+            LOG.debug("Reports the trace {}, decision: {}", context.traceIdString(), decision);
+            if (spans != null) {
+                spans.forEach(s -> reporter.end(s.context, s.span, Cause.FINISHED));
+            }
+            reporter.end(context, span, cause);
+        }
+        return false;
+    }
+
+    private String decide(MutableSpan root, List<BufferedSpan> spans) {
+        if (isError(root)) {
+            return "kept-error";
+        }
+        if (spans != null && spans.stream().anyMatch(s -> isError(s.span))) {
+            return "kept-error";
+        }
+        if (root.finishTimestamp() - root.startTimestamp() > latencyThresholdMicros) {
+            return "kept-slow";
+        }
+        return "dropped";
+    }
+
+    private static boolean isError(MutableSpan span) {
+        return span.error() != null || span.tag("error") != null;
+    }
+
+    private void count(String decision) {
+        registry.counter(DECISION_COUNTER, "decision", decision).increment();
+    }
+
+    int bufferedTraces() {
+        synchronized (buffer) {
+            return buffer.size();
+        }
+    }
+
+    private static class BufferedSpan {
+        private final TraceContext context;
+        private final MutableSpan span;
+
+        BufferedSpan(TraceContext context, MutableSpan span) {
+            this.context = context;
+            this.span = span;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package se.magnus.microservices.composite.product.tracing;
+
+import brave.Tag;
+import brave.TracingCustomizer;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
+
+/**
+ * Tail-based sampling, on top of the rate-limited head sampling configured by spring.sleuth.sampler.rate: requests
+ * that were not sampled up front are still reported if they fail or are slow, see {@link TailSamplingSpanHandler}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.tracing.tail-sampling.enabled", havingValue = "true")
+public class TracingConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TracingConfig.class);
+
+    /**
+     * Records spans of requests that are not sampled, so that the decision can be made when the request is completed.
+     */
+    @Bean
+    public TracingCustomizer alwaysSampleLocal() {
+        return builder -> builder.alwaysSampleLocal();
+    }
+
+    @Bean
+    public SpanHandler tailSamplingSpanHandler(
+            ObjectProvider<Reporter<Span>> reporters,
+            ObjectProvider<Tag<Throwable>> errorTag,
+            MeterRegistry registry,
+            @Value("${app.tracing.tail-sampling.latency-threshold:500ms}") Duration latencyThreshold,
+            @Value("${app.tracing.tail-sampling.max-buffered-traces:10000}") int maxBufferedTraces,
+            @Value("${app.tracing.tail-sampling.max-spans-per-trace:256}") int maxSpansPerTrace) {
+
+        LOG.info("Reports failed requests and requests slower than {} also if not sampled, buffers up to {} traces", latencyThreshold, maxBufferedTraces);
+
+        List<SpanHandler> zipkinHandlers = reporters.orderedStream()
+                .map(reporter -> {
+                    ZipkinSpanHandler.Builder builder = ZipkinSpanHandler.newBuilder(reporter).alwaysReportSpans(true);
+                    errorTag.ifAvailable(builder::errorTag);
+                    return builder.build();
+                })
+                .collect(Collectors.toList());
+
+        SpanHandler reporter = new SpanHandler() {
+            @Override
+            public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                zipkinHandlers.forEach(handler -> handler.end(context, span, cause));
+                return true;
+            }
+        };
+
+        return new TailSamplingSpanHandler(reporter, latencyThreshold, maxBufferedTraces, maxSpansPerTrace, registry);
+    }
+}
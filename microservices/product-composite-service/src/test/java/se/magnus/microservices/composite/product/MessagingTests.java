@@ -1,16 +1,21 @@
 package se.magnus.microservices.composite.product;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.ACCEPTED;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static reactor.core.publisher.Mono.just;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 import static se.magnus.microservices.composite.product.IsSameEvent.sameEventExceptCreatedAt;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +30,9 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import se.magnus.api.composite.product.BulkItemStatus;
+import se.magnus.api.composite.product.BulkItemStatus.Status;
 import se.magnus.api.composite.product.ProductAggregate;
 import se.magnus.api.composite.product.RecommendationSummary;
 import se.magnus.api.composite.product.ReviewSummary;
@@ -41,7 +49,9 @@ import se.magnus.api.event.Event;
                 "spring.main.allow-bean-definition-overriding=true",
                 "eureka.client.enabled=false",
                 "spring.cloud.stream.defaultBinder=rabbit",
-                "spring.cloud.config.enabled=false"})
+                "spring.cloud.config.enabled=false",
+                "app.composite.bulk.batch-size=2",
+                "spring.codec.max-in-memory-size=10MB"})
 @Import({TestChannelBinderConfiguration.class})
 class MessagingTests {
 
@@ -53,6 +63,9 @@ class MessagingTests {
     @Autowired
     private OutputDestination target;
 
+    @Autowired
+    private ObjectMapper mapper;
+
     @BeforeEach
     void setUp() {
         purgeMessages("products");
@@ -119,6 +132,78 @@ class MessagingTests {
         assertThat(reviewMessages.get(0), is(sameEventExceptCreatedAt(expectedReviewEvent)));
     }
 
+    @Test
+    void createCompositeProductWithManyChildren() throws IOException {
+
+        int childCount = 1_000;
+        List<RecommendationSummary> recommendations = new ArrayList<>();
+        List<ReviewSummary> reviews = new ArrayList<>();
+        for (int i = 1; i <= childCount; i++) {
+            recommendations.add(new RecommendationSummary(i, "a", 1, "c"));
+            reviews.add(new ReviewSummary(i, "a", "s", "c"));
+        }
+
+        // 2,000 child events, far more than the tasks the publish scheduler can queue. Publishing is expected at more
+        // than 2,000 events per second, each send is traced which makes up most of its cost, so the request completes
+        // well within the default timeout of the client
+        postAndVerifyProduct(new ProductAggregate(1, "name", 1, recommendations, reviews, null), ACCEPTED);
+
+        assertEquals(1, getMessages("products").size());
+
+        // Assert all child events queued up, in the order of the composite product
+        List<String> recommendationMessages = getMessages("recommendations");
+        List<String> reviewMessages = getMessages("reviews");
+        assertEquals(childCount, recommendationMessages.size());
+        assertEquals(childCount, reviewMessages.size());
+        for (int i = 0; i < childCount; i++) {
+            assertEquals(i + 1, mapper.readTree(recommendationMessages.get(i)).get("data").get("recommendationId").asInt());
+            assertEquals(i + 1, mapper.readTree(reviewMessages.get(i)).get("data").get("reviewId").asInt());
+        }
+    }
+
+    @Test
+    void createCompositeProducts() {
+
+        List<ProductAggregate> composites = asList(
+                new ProductAggregate(1, "name", 1,
+                        singletonList(new RecommendationSummary(1, "a", 1, "c")),
+                        singletonList(new ReviewSummary(1, "a", "s", "c")), null),
+                new ProductAggregate(0, "name", 1, null, null, null),
+                new ProductAggregate(1, "name", 1, null, null, null),
+                new ProductAggregate(2, "name", 2, null, null, null),
+                new ProductAggregate(3, "name", 3, null, singletonList(new ReviewSummary(2, "a", "s", "c")), null));
+
+        List<BulkItemStatus> statuses = client.post()
+                .uri("/product-composite/bulk")
+                .contentType(APPLICATION_NDJSON)
+                .accept(APPLICATION_NDJSON)
+                .body(Flux.fromIterable(composites), ProductAggregate.class)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BulkItemStatus.class)
+                .getResponseBody().collectList().block();
+
+        // One status per composite product, in the order of the request, spanning three batches
+        assertEquals(asList(1, 0, 1, 2, 3), statuses.stream().map(BulkItemStatus::getProductId).collect(toList()));
+        assertEquals(asList(Status.ACCEPTED, Status.REJECTED, Status.REJECTED, Status.ACCEPTED, Status.ACCEPTED),
+                statuses.stream().map(BulkItemStatus::getStatus).collect(toList()));
+
+        final List<String> productMessages = getMessages("products");
+        final List<String> recommendationMessages = getMessages("recommendations");
+        final List<String> reviewMessages = getMessages("reviews");
+
+        // Assert one create product event per accepted composite product, in the order of the request
+        assertEquals(3, productMessages.size());
+        Event<Integer, Product> expectedProductEvent = new Event(CREATE, 3, new Product(3, "name", 3, null));
+        assertThat(productMessages.get(2), is(sameEventExceptCreatedAt(expectedProductEvent)));
+
+        assertEquals(1, recommendationMessages.size());
+
+        assertEquals(2, reviewMessages.size());
+        Event<Integer, Review> expectedReviewEvent = new Event(CREATE, 3, new Review(3, 2, "a", "s", "c", null));
+        assertThat(reviewMessages.get(1), is(sameEventExceptCreatedAt(expectedReviewEvent)));
+    }
+
     @Test
     void deleteCompositeProduct() {
         deleteAndVerifyProduct(1, ACCEPTED);
@@ -1,28 +1,42 @@
 package se.magnus.microservices.composite.product;
 
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.ProductAggregate;
 import se.magnus.api.core.product.Product;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
 
 @SpringBootTest(
         webEnvironment = RANDOM_PORT,
@@ -31,13 +45,18 @@ import se.magnus.microservices.composite.product.services.ProductCompositeIntegr
                 "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
                 "spring.main.allow-bean-definition-overriding=true",
                 "eureka.client.enabled=false",
-                "spring.cloud.config.enabled=false"})
+                "spring.cloud.config.enabled=false",
+                "app.composite.export.page-size=2"})
 class ProductCompositeServiceApplicationTests {
 
     private static final int PRODUCT_ID_OK = 1;
     private static final int PRODUCT_ID_NOT_FOUND = 2;
     private static final int PRODUCT_ID_INVALID = 3;
 
+    private static final String PRODUCT_ETAG = "\"p1\"";
+    private static final String RECOMMENDATIONS_ETAG = "\"rec1\"";
+    private static final String REVIEWS_ETAG = "\"rev1\"";
+
     @Autowired
     private WebTestClient client;
 
@@ -47,24 +66,89 @@ class ProductCompositeServiceApplicationTests {
     @BeforeEach
     void setUp() {
 
-        when(compositeIntegration.getProduct(eq(PRODUCT_ID_OK), anyInt(), anyInt()))
-                .thenReturn(Mono.just(new Product(PRODUCT_ID_OK, "name", 1, "mock-address")));
+        when(compositeIntegration.getRecommendationsWithETag(anyInt())).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+        when(compositeIntegration.getReviewsWithETag(anyInt())).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+
+        when(compositeIntegration.getProductWithETag(eq(PRODUCT_ID_OK), anyInt(), anyInt()))
+                .thenReturn(Mono.just(ETagged.of(new Product(PRODUCT_ID_OK, "name", 1, "mock-address"), PRODUCT_ETAG)));
+
+        when(compositeIntegration.getRecommendationsWithETag(PRODUCT_ID_OK))
+                .thenReturn(Mono.just(ETagged.of(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address")), RECOMMENDATIONS_ETAG)));
 
-        when(compositeIntegration.getRecommendations(PRODUCT_ID_OK))
-                .thenReturn(Flux.fromIterable(singletonList(new Recommendation(PRODUCT_ID_OK, 1, "author", 1, "content", "mock address"))));
+        when(compositeIntegration.getReviewsWithETag(PRODUCT_ID_OK))
+                .thenReturn(Mono.just(ETagged.of(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address")), REVIEWS_ETAG)));
 
-        when(compositeIntegration.getReviews(PRODUCT_ID_OK))
-                .thenReturn(Flux.fromIterable(singletonList(new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"))));
+        when(compositeIntegration.getProductETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getRecommendationsETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getReviewsETag(anyInt())).thenReturn(Mono.empty());
 
-        when(compositeIntegration.getProduct(eq(PRODUCT_ID_NOT_FOUND), anyInt(), anyInt())).thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
+        when(compositeIntegration.getProductETag(PRODUCT_ID_OK)).thenReturn(Mono.just(PRODUCT_ETAG));
+        when(compositeIntegration.getRecommendationsETag(PRODUCT_ID_OK)).thenReturn(Mono.just(RECOMMENDATIONS_ETAG));
+        when(compositeIntegration.getReviewsETag(PRODUCT_ID_OK)).thenReturn(Mono.just(REVIEWS_ETAG));
 
-        when(compositeIntegration.getProduct(eq(PRODUCT_ID_INVALID), anyInt(), anyInt())).thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
+        when(compositeIntegration.getProductWithETag(eq(PRODUCT_ID_NOT_FOUND), anyInt(), anyInt())).thenThrow(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND));
+
+        when(compositeIntegration.getProductWithETag(eq(PRODUCT_ID_INVALID), anyInt(), anyInt())).thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
     }
 
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void exportProducts() {
+
+        when(compositeIntegration.getProducts(0, 2)).thenReturn(Flux.just(product(1), product(2)));
+        when(compositeIntegration.getRecommendationsInRange(0, 2)).thenReturn(Flux.just(
+                new Recommendation(1, 1, "author", 1, "content", null),
+                new Recommendation(1, 2, "author", 1, "content", null)));
+        when(compositeIntegration.getReviewsInRange(0, 2)).thenReturn(Flux.just(
+                new Review(2, 1, "author", "subject", "content", null)));
+
+        // The last page is shorter than the page size
+        when(compositeIntegration.getProducts(2, 2)).thenReturn(Flux.just(product(3)));
+        when(compositeIntegration.getRecommendationsInRange(2, 3)).thenReturn(Flux.empty());
+        when(compositeIntegration.getReviewsInRange(2, 3)).thenReturn(Flux.just(
+                new Review(3, 1, "author", "subject", "content", null),
+                new Review(3, 2, "author", "subject", "content", null)));
+
+        List<ProductAggregate> aggregates = exportProducts(0);
+        assertEquals(3, aggregates.size());
+        assertEquals(asList(1, 2, 3), asList(
+                aggregates.get(0).getProductId(), aggregates.get(1).getProductId(), aggregates.get(2).getProductId()));
+        assertEquals(2, aggregates.get(0).getRecommendations().size());
+        assertEquals(0, aggregates.get(0).getReviews().size());
+        assertEquals(0, aggregates.get(1).getRecommendations().size());
+        assertEquals(1, aggregates.get(1).getReviews().size());
+        assertEquals(2, aggregates.get(2).getReviews().size());
+
+        // Resumes after the last product received
+        aggregates = exportProducts(2);
+        assertEquals(1, aggregates.size());
+        assertEquals(3, aggregates.get(0).getProductId());
+    }
+
+    @Test
+    void exportProductsOfEmptyCatalogue() {
+
+        when(compositeIntegration.getProducts(0, 2)).thenReturn(Flux.empty());
+
+        assertEquals(0, exportProducts(0).size());
+    }
+
+    @Test
+    void exportIsNotStoredBySharedCaches() {
+
+        when(compositeIntegration.getProducts(0, 2)).thenReturn(Flux.empty());
+
+        client.get()
+                .uri("/product-composite/export?afterProductId=0")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectHeader().cacheControl(CacheControl.noStore());
+    }
+
     @Test
     void getProductById() {
 
@@ -74,6 +158,56 @@ class ProductCompositeServiceApplicationTests {
                 .jsonPath("$.reviews.length()").isEqualTo(1);
     }
 
+    @Test
+    void getProductWithETag() {
+
+        String expectedETag = ETagUtil.strongETag(PRODUCT_ETAG, RECOMMENDATIONS_ETAG, REVIEWS_ETAG);
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_OK)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, expectedETag);
+
+        // The ETag of a plain request comes with the responses of the core services, it is never probed
+        verify(compositeIntegration, never()).getProductETag(anyInt());
+        verify(compositeIntegration, never()).getRecommendationsETag(anyInt());
+        verify(compositeIntegration, never()).getReviewsETag(anyInt());
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_OK)
+                .accept(APPLICATION_JSON)
+                .ifNoneMatch(expectedETag)
+                .exchange()
+                .expectStatus().isEqualTo(NOT_MODIFIED)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, expectedETag)
+                .expectBody().isEmpty();
+
+        // The conditional request must not load the product
+        verify(compositeIntegration, times(1)).getProductWithETag(eq(PRODUCT_ID_OK), anyInt(), anyInt());
+    }
+
+    @Test
+    void getProductIsCacheableBySharedCaches() {
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_OK)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectHeader().cacheControl(CacheControl.empty().sMaxAge(30, SECONDS))
+                // The response cache of the edge server only caches responses with a Content-Length
+                .expectHeader().exists(HttpHeaders.CONTENT_LENGTH);
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_NOT_FOUND)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(NOT_FOUND)
+                .expectHeader().valueMatches(HttpHeaders.CACHE_CONTROL, ".*no-store.*");
+    }
+
     @Test
     void getProductNotFound() {
 
@@ -90,6 +224,20 @@ class ProductCompositeServiceApplicationTests {
                 .jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
     }
 
+    private List<ProductAggregate> exportProducts(int afterProductId) {
+        return client.get()
+                .uri("/product-composite/export?afterProductId=" + afterProductId)
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .returnResult(ProductAggregate.class)
+                .getResponseBody().collectList().block();
+    }
+
+    private static Product product(int productId) {
+        return new Product(productId, "name " + productId, 1, null);
+    }
+
     private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
         return client.get()
                 .uri("/product-composite/" + productId)
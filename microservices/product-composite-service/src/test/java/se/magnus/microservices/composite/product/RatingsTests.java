@@ -0,0 +1,117 @@
+package se.magnus.microservices.composite.product;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptyList;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import java.time.Duration;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.RatingSummary;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.util.http.ETagged;
+
+/**
+ * The composite product with app.composite.include-ratings, assembled from objects, see StreamingRatingsTests for the
+ * streaming assembly.
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        classes = {TestSecurityConfig.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "eureka.client.enabled=false",
+                "spring.cloud.config.enabled=false",
+                "app.composite.include-ratings=true"})
+class RatingsTests {
+
+    private static final int PRODUCT_ID_OK = 1;
+    private static final int PRODUCT_ID_NO_RATINGS = 2;
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private ProductCompositeIntegration compositeIntegration;
+
+    private final AtomicBoolean productReturned = new AtomicBoolean();
+    private final AtomicBoolean ratingsRequestedBeforeProductReturned = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+
+        productReturned.set(false);
+        ratingsRequestedBeforeProductReturned.set(false);
+
+        // The product is returned after a delay, to see if the ratings are requested at the same time
+        when(compositeIntegration.getProductWithETag(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> delayed(
+                Mono.just(ETagged.of(new Product(invocation.getArgument(0), "name", 1, "mock address"), "\"p\"")), productReturned));
+        when(compositeIntegration.getRecommendationsWithETag(anyInt())).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+        when(compositeIntegration.getReviewsWithETag(anyInt())).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+
+        when(compositeIntegration.getProductJson(anyInt(), anyInt(), anyInt())).thenAnswer(invocation -> delayed(
+                Mono.fromSupplier(() -> ETagged.of(DefaultDataBufferFactory.sharedInstance.wrap(
+                        ("{\"productId\":" + invocation.getArgument(0) + ",\"name\":\"name\",\"weight\":1}").getBytes(UTF_8)), "\"p\"")),
+                productReturned));
+        when(compositeIntegration.getRecommendationsJson(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getReviewsJson(anyInt())).thenReturn(Mono.empty());
+
+        when(compositeIntegration.getRatingSummary(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getRatingSummary(PRODUCT_ID_OK)).thenReturn(Mono.fromSupplier(() -> {
+            ratingsRequestedBeforeProductReturned.set(!productReturned.get());
+            TreeMap<Integer, Integer> histogram = new TreeMap<>();
+            histogram.put(2, 1);
+            histogram.put(4, 1);
+            return new RatingSummary(PRODUCT_ID_OK, 2, 6, 2, 4, histogram);
+        }));
+    }
+
+    @Test
+    void getProductWithRatings() {
+
+        getProduct(PRODUCT_ID_OK)
+                .jsonPath("$.productId").isEqualTo(PRODUCT_ID_OK)
+                .jsonPath("$.ratings.count").isEqualTo(2)
+                .jsonPath("$.ratings.average").isEqualTo(3.0)
+                .jsonPath("$.ratings.histogram.4").isEqualTo(1);
+
+        assertTrue(ratingsRequestedBeforeProductReturned.get(), "The ratings are requested after the product was returned");
+    }
+
+    @Test
+    void getProductWithoutRatings() {
+
+        getProduct(PRODUCT_ID_NO_RATINGS)
+                .jsonPath("$.productId").isEqualTo(PRODUCT_ID_NO_RATINGS)
+                .jsonPath("$.ratings").doesNotExist();
+    }
+
+    private WebTestClient.BodyContentSpec getProduct(int productId) {
+        return client.get()
+                .uri("/product-composite/" + productId)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody();
+    }
+
+    private static <T> Mono<T> delayed(Mono<T> mono, AtomicBoolean returned) {
+        return Mono.delay(Duration.ofMillis(100)).then(mono).doOnSuccess(value -> returned.set(true));
+    }
+}
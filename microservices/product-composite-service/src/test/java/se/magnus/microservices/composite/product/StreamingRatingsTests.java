@@ -0,0 +1,21 @@
+package se.magnus.microservices.composite.product;
+
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the tests of {@link RatingsTests} against the streaming assembly of the composite product.
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        classes = {TestSecurityConfig.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "eureka.client.enabled=false",
+                "spring.cloud.config.enabled=false",
+                "app.composite.include-ratings=true",
+                "app.streaming-assembly.enabled=true"})
+class StreamingRatingsTests extends RatingsTests {
+}
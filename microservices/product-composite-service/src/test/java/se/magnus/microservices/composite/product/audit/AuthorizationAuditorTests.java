@@ -0,0 +1,105 @@
+package se.magnus.microservices.composite.product.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+class AuthorizationAuditorTests {
+
+    private AuthorizationAuditor auditor;
+
+    @AfterEach
+    void tearDown() {
+        auditor.stop();
+    }
+
+    @Test
+    void recordsInBatches() {
+        auditor = new AuthorizationAuditor(1.0, 100, 2, Duration.ofHours(1), 3, 10);
+
+        for (int i = 0; i < 5; i++) {
+            auditor.record(jwtAuthentication("writer-" + i));
+        }
+        assertEquals(5, auditor.getSummary().get("queued"));
+
+        auditor.drain();
+
+        Map<String, Object> summary = auditor.getSummary();
+        assertEquals(5L, summary.get("recorded"));
+        assertEquals(0, summary.get("queued"));
+
+        // Only the most recent records are kept, newest first
+        List<AuthorizationAuditor.AuthorizationRecord> recent = (List<AuthorizationAuditor.AuthorizationRecord>) summary.get("recent");
+        assertEquals(3, recent.size());
+        assertEquals("writer-4", recent.get(0).getSubject());
+    }
+
+    @Test
+    void keepsRecordsOfMostRecentlySeenSubjects() {
+        auditor = new AuthorizationAuditor(1.0, 100, 10, Duration.ofHours(1), 10, 2);
+
+        auditor.record(jwtAuthentication("writer-1"));
+        auditor.record(jwtAuthentication("writer-2"));
+        auditor.record(jwtAuthentication("writer-1"));
+        auditor.record(jwtAuthentication("writer-3"));
+        auditor.drain();
+
+        // writer-2 is the least recently seen subject
+        Map<String, Object> summary = auditor.getSummary();
+        Map<String, Long> subjects = (Map<String, Long>) summary.get("subjects");
+        assertEquals(2, subjects.size());
+        assertEquals(2L, subjects.get("writer-1"));
+        assertEquals(1L, subjects.get("writer-3"));
+        assertEquals(1L, summary.get("evictedSubjects"));
+    }
+
+    @Test
+    void dropsWhenQueueIsFull() {
+        auditor = new AuthorizationAuditor(1.0, 2, 10, Duration.ofHours(1), 10, 10);
+
+        for (int i = 0; i < 5; i++) {
+            auditor.record(jwtAuthentication("writer"));
+        }
+
+        Map<String, Object> summary = auditor.getSummary();
+        assertEquals(5L, summary.get("sampled"));
+        assertEquals(3L, summary.get("dropped"));
+    }
+
+    @Test
+    void samples() {
+        auditor = new AuthorizationAuditor(0.0, 100, 10, Duration.ofHours(1), 10, 10);
+
+        auditor.record(jwtAuthentication("writer"));
+
+        Map<String, Object> summary = auditor.getSummary();
+        assertEquals(1L, summary.get("authentications"));
+        assertEquals(0L, summary.get("sampled"));
+    }
+
+    @Test
+    void ignoresOtherAuthentications() {
+        auditor = new AuthorizationAuditor(1.0, 100, 10, Duration.ofHours(1), 10, 10);
+
+        auditor.record(new TestingAuthenticationToken("user", "password"));
+
+        assertEquals(0L, auditor.getSummary().get("sampled"));
+    }
+
+    private JwtAuthenticationToken jwtAuthentication(String subject) {
+        Jwt jwt = Jwt.withTokenValue("token").header("alg", "RS256")
+                .subject(subject)
+                .claim("scope", "product:read product:write")
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+        return new JwtAuthenticationToken(jwt);
+    }
+}
@@ -0,0 +1,79 @@
+package se.magnus.microservices.composite.product.bulk;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.composite.product.BulkItemStatus.Status.ACCEPTED;
+import static se.magnus.api.composite.product.BulkItemStatus.Status.FAILED;
+import static se.magnus.api.composite.product.BulkItemStatus.Status.REJECTED;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageDeliveryException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.composite.product.BulkItemStatus;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+
+class ProductBulkImporterTests {
+
+    private final ProductCompositeIntegration integration = mock(ProductCompositeIntegration.class);
+
+    private final ProductBulkImporter importer = new ProductBulkImporter(integration, 2);
+
+    @BeforeEach
+    void setUp() {
+        when(integration.createProducts(anyList())).thenReturn(Mono.empty());
+        when(integration.createRecommendations(anyList())).thenReturn(Mono.empty());
+        when(integration.createReviews(anyList())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void failsBatchIfBindingFails() {
+
+        // The reviews binding fails for the first batch, the only one with reviews
+        when(integration.createReviews(anyList()))
+                .thenReturn(Mono.error(new MessageDeliveryException("reviews-out-0 is down")))
+                .thenReturn(Mono.empty());
+
+        List<BulkItemStatus> statuses = importer.createProducts(Flux.just(
+                        aggregate(1, singletonList(new ReviewSummary(1, "a", "s", "c"))),
+                        aggregate(0, null),
+                        aggregate(2, null)))
+                .collectList().block();
+
+        // The accepted products of the failed batch are FAILED, the rejected ones stay REJECTED, the next batch is
+        // still published
+        assertThat(statuses).extracting(BulkItemStatus::getProductId).containsExactly(1, 0, 2);
+        assertThat(statuses).extracting(BulkItemStatus::getStatus).containsExactly(FAILED, REJECTED, ACCEPTED);
+        assertThat(statuses.get(0).getMessage()).isEqualTo("reviews-out-0 is down");
+    }
+
+    @Test
+    void readsOneBatchAheadOfThePublishedOne() {
+
+        // The first batch is never published
+        when(integration.createProducts(anyList())).thenReturn(Mono.never());
+
+        AtomicInteger read = new AtomicInteger();
+        Flux<ProductAggregate> body = Flux.range(1, 10).map(productId -> aggregate(productId, null)).doOnNext(a -> read.incrementAndGet());
+
+        Disposable subscription = importer.createProducts(body).subscribe();
+        try {
+            assertThat(read.get()).isEqualTo(4);
+        } finally {
+            subscription.dispose();
+        }
+    }
+
+    private static ProductAggregate aggregate(int productId, List<ReviewSummary> reviews) {
+        return new ProductAggregate(productId, "name", 1, null, reviews, null);
+    }
+}
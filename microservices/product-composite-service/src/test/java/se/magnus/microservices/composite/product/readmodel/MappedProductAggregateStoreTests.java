@@ -0,0 +1,209 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+
+class MappedProductAggregateStoreTests {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    private MappedProductAggregateStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void updateGetAndRemove() throws IOException {
+        store = open();
+
+        store.update(1, entry -> ReadModelEntry.empty(1).withProduct(new Product(1, "name", 2, null)));
+        store.update(1, entry -> entry.withRecommendation(new Recommendation(1, 1, "a", 3, "c", null)));
+        store.update(1, entry -> entry.withReview(new Review(1, 1, "a", "s", "c", null)));
+
+        ReadModelEntry entry = store.get(1);
+        assertThat(entry.isProductCreated()).isTrue();
+        assertThat(entry.getRevision()).isEqualTo(3);
+        assertThat(entry.getAggregate().getName()).isEqualTo("name");
+        assertThat(entry.getAggregate().getRecommendations()).hasSize(1);
+        assertThat(entry.getAggregate().getRecommendations().get(0).getRate()).isEqualTo(3);
+        assertThat(entry.getAggregate().getReviews()).hasSize(1);
+        assertThat(store.size()).isEqualTo(1);
+
+        store.update(1, e -> null);
+        assertThat(store.get(1)).isNull();
+        assertThat(store.size()).isZero();
+
+        // Removing an absent entry appends nothing
+        assertThat(store.update(2, e -> null)).isNull();
+    }
+
+    @Test
+    void survivesRestart() throws IOException {
+        store = open();
+        for (int productId = 1; productId <= 100; productId++) {
+            int id = productId;
+            store.update(id, entry -> ReadModelEntry.empty(id).withProduct(new Product(id, "name-" + id, id, null)));
+        }
+        store.update(50, entry -> null);
+        store.update(51, entry -> entry.withoutProduct().withReview(new Review(51, 1, "a", "s", "c", null)));
+        store.close();
+
+        store = open();
+        assertThat(store.size()).isEqualTo(99);
+        assertThat(store.get(50)).isNull();
+        assertThat(store.get(51).isProductCreated()).isFalse();
+        assertThat(store.get(51).getAggregate().getReviews()).hasSize(1);
+        assertThat(store.get(100).getAggregate().getName()).isEqualTo("name-100");
+
+        // Appends continue after the loaded records
+        store.update(101, entry -> ReadModelEntry.empty(101).withProduct(new Product(101, "name-101", 1, null)));
+        store.close();
+
+        store = open();
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(store.get(101).getAggregate().getName()).isEqualTo("name-101");
+    }
+
+    @Test
+    void cleansSegments() throws IOException {
+        store = open();
+
+        // Overwrite a few entries many times, most records become stale
+        for (int i = 0; i < 2000; i++) {
+            int productId = i % 10 + 1;
+            store.update(productId, entry -> entry == null
+                    ? ReadModelEntry.empty(productId).withProduct(new Product(productId, "name", productId, null))
+                    : entry.withoutReviews());
+        }
+        store.update(10, entry -> null);
+
+        assertThat(store.size()).isEqualTo(9);
+        assertThat(segmentFiles()).isLessThan(5).isEqualTo(store.segmentCount());
+        for (int productId = 1; productId < 10; productId++) {
+            assertThat(store.get(productId).getRevision()).isEqualTo(200);
+        }
+
+        store.close();
+        store = open();
+        assertThat(store.size()).isEqualTo(9);
+        assertThat(store.get(10)).isNull();
+        assertThat(store.get(9).getRevision()).isEqualTo(200);
+    }
+
+    @Test
+    void deletesInterruptedCleaning() throws IOException {
+        store = open();
+        store.update(1, entry -> ReadModelEntry.empty(1).withProduct(new Product(1, "name", 1, null)));
+        store.close();
+
+        Files.write(directory.resolve("segment-0000000001.log.cleaned"), new byte[] {1, 2, 3});
+
+        store = open();
+        assertThat(segmentFiles()).isEqualTo(1);
+        assertThat(store.get(1).getAggregate().getName()).isEqualTo("name");
+    }
+
+    @Test
+    void ignoresTornRecord() throws IOException {
+        store = open();
+        store.update(1, entry -> ReadModelEntry.empty(1).withProduct(new Product(1, "first", 1, null)));
+        store.update(2, entry -> ReadModelEntry.empty(2).withProduct(new Product(2, "second", 1, null)));
+        store.close();
+
+        // Corrupt the payload of the last record, as if the instance stopped while it was written
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().get();
+        }
+        int lastRecord = lastRecordPosition(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'x'}), lastRecord + 20);
+        }
+
+        store = open();
+        assertThat(store.size()).isEqualTo(1);
+        assertThat(store.get(1).getAggregate().getName()).isEqualTo("first");
+        assertThat(store.get(2)).isNull();
+
+        // The torn record is overwritten by the next one
+        store.update(3, entry -> ReadModelEntry.empty(3).withProduct(new Product(3, "third", 1, null)));
+        store.close();
+        store = open();
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get(3).getAggregate().getName()).isEqualTo("third");
+    }
+
+    @Test
+    void clearDeletesSegments() throws IOException {
+        store = open();
+        store.update(1, entry -> ReadModelEntry.empty(1).withProduct(new Product(1, "name", 1, null)));
+
+        store.clear();
+        assertThat(store.size()).isZero();
+        assertThat(segmentFiles()).isZero();
+
+        store.update(2, entry -> ReadModelEntry.empty(2).withProduct(new Product(2, "name", 1, null)));
+        assertThat(store.get(2)).isNotNull();
+    }
+
+    @Test
+    void indexResizesAndRemoves() {
+        OffHeapIntLongIndex index = new OffHeapIntLongIndex(4);
+        for (int key = -5000; key <= 5000; key++) {
+            assertThat(index.put(key, key * 10L)).isEqualTo(OffHeapIntLongIndex.NO_VALUE);
+        }
+        assertThat(index.size()).isEqualTo(10001);
+
+        for (int key = -5000; key <= 5000; key += 2) {
+            assertThat(index.remove(key)).isEqualTo(key * 10L);
+        }
+        for (int key = -5000; key <= 5000; key++) {
+            assertThat(index.get(key)).isEqualTo(key % 2 == 0 ? OffHeapIntLongIndex.NO_VALUE : key * 10L);
+        }
+        assertThat(index.size()).isEqualTo(5000);
+    }
+
+    private MappedProductAggregateStore open() throws IOException {
+        return new MappedProductAggregateStore(directory, SEGMENT_SIZE, 16, mapper);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static int lastRecordPosition(Path segment) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        int last = 0;
+        while (buffer.getInt(position) != 0) {
+            last = position;
+            position += 12 + Math.max(buffer.getInt(position + 4), 0);
+        }
+        return last;
+    }
+}
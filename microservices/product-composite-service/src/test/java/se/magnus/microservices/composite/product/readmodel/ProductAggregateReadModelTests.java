@@ -0,0 +1,121 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.api.event.Event.Type.DELETE;
+import static se.magnus.microservices.composite.product.readmodel.ProductAggregateReadModel.ENTRIES_GAUGE;
+import static se.magnus.microservices.composite.product.readmodel.ProductAggregateReadModel.LAG_TIMER;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.api.exceptions.EventProcessingException;
+
+class ProductAggregateReadModelTests {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private ProductAggregateReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        readModel = new ProductAggregateReadModel(new InMemoryProductAggregateStore(), registry);
+    }
+
+    @Test
+    void createAndDeleteProduct() {
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 2, null)));
+        readModel.applyRecommendationEvent(new Event<>(CREATE, 1, new Recommendation(1, 1, "a", 1, "c", null)));
+        readModel.applyReviewEvent(new Event<>(CREATE, 1, new Review(1, 1, "a", "s", "c", null)));
+
+        ProductAggregate aggregate = readModel.get(1).getAggregate();
+        assertThat(aggregate.getName()).isEqualTo("name");
+        assertThat(aggregate.getWeight()).isEqualTo(2);
+        assertThat(aggregate.getRecommendations()).hasSize(1);
+        assertThat(aggregate.getReviews()).hasSize(1);
+        assertThat(registry.get(ENTRIES_GAUGE).gauge().value()).isEqualTo(1.0);
+        assertThat(registry.get(LAG_TIMER).tag("destination", "reviews").timer().count()).isEqualTo(1);
+
+        readModel.applyProductEvent(new Event<>(DELETE, 1, null));
+        assertThat(readModel.get(1)).isNull();
+
+        readModel.applyRecommendationEvent(new Event<>(DELETE, 1, null));
+        readModel.applyReviewEvent(new Event<>(DELETE, 1, null));
+        assertThat(registry.get(ENTRIES_GAUGE).gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    void recommendationsBeforeProduct() {
+
+        readModel.applyRecommendationEvent(new Event<>(CREATE, 1, new Recommendation(1, 1, "a", 1, "c", null)));
+        readModel.applyRecommendationEvent(new Event<>(CREATE, 1, new Recommendation(1, 2, "a", 1, "c", null)));
+
+        // Not complete until the product is created
+        assertThat(readModel.get(1)).isNull();
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 2, null)));
+        assertThat(readModel.get(1).getAggregate().getRecommendations()).hasSize(2);
+    }
+
+    @Test
+    void duplicateCreatesAreIgnored() {
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 2, null)));
+        readModel.applyRecommendationEvent(new Event<>(CREATE, 1, new Recommendation(1, 1, "a", 1, "c", null)));
+        readModel.applyReviewEvent(new Event<>(CREATE, 1, new Review(1, 1, "a", "s", "c", null)));
+        String eTag = readModel.getETag(readModel.get(1));
+
+        // The core services reject these as duplicates, so the read model must not apply them either
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name2", 3, null)));
+        readModel.applyRecommendationEvent(new Event<>(CREATE, 1, new Recommendation(1, 1, "a", 5, "c2", null)));
+        readModel.applyReviewEvent(new Event<>(CREATE, 1, new Review(1, 1, "a", "s", "c2", null)));
+
+        ProductAggregate aggregate = readModel.get(1).getAggregate();
+        assertThat(aggregate.getName()).isEqualTo("name");
+        assertThat(aggregate.getWeight()).isEqualTo(2);
+        assertThat(aggregate.getRecommendations()).hasSize(1);
+        assertThat(aggregate.getRecommendations().get(0).getContent()).isEqualTo("c");
+        assertThat(aggregate.getReviews()).hasSize(1);
+        assertThat(aggregate.getReviews().get(0).getContent()).isEqualTo("c");
+        assertThat(readModel.getETag(readModel.get(1))).isEqualTo(eTag);
+    }
+
+    @Test
+    void recreatedAfterDelete() {
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 2, null)));
+        readModel.applyReviewEvent(new Event<>(CREATE, 1, new Review(1, 1, "a", "s", "c", null)));
+        readModel.applyProductEvent(new Event<>(DELETE, 1, null));
+        readModel.applyReviewEvent(new Event<>(DELETE, 1, null));
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name2", 3, null)));
+        readModel.applyReviewEvent(new Event<>(CREATE, 1, new Review(1, 1, "a", "s", "c2", null)));
+
+        ProductAggregate aggregate = readModel.get(1).getAggregate();
+        assertThat(aggregate.getName()).isEqualTo("name2");
+        assertThat(aggregate.getReviews().get(0).getContent()).isEqualTo("c2");
+    }
+
+    @Test
+    void clear() {
+
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 2, null)));
+        readModel.clear();
+
+        assertThat(readModel.get(1)).isNull();
+        assertThat(readModel.getSummary()).containsEntry("entries", 0).containsEntry("appliedEvents", 0L);
+    }
+
+    @Test
+    void unexpectedEventType() {
+        assertThrows(EventProcessingException.class, () -> readModel.applyProductEvent(new Event<>()));
+    }
+}
@@ -0,0 +1,82 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static se.magnus.api.event.Event.Type.CREATE;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.cloud.stream.binding.BindingsLifecycleController;
+import org.springframework.http.HttpStatus;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.event.Event;
+
+class ReadModelEndpointTests {
+
+    @TempDir
+    Path directory;
+
+    private final BindingsLifecycleController controller = mock(BindingsLifecycleController.class);
+
+    private ObjectProvider<BindingsLifecycleController> bindings;
+    private MappedProductAggregateStore mappedStore;
+
+    @BeforeEach
+    void setUp() {
+        bindings = mock(ObjectProvider.class);
+        when(bindings.getIfAvailable()).thenReturn(controller);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (mappedStore != null) {
+            mappedStore.close();
+        }
+    }
+
+    @Test
+    void rebuildInMemoryReadModel() {
+        ProductAggregateReadModel readModel = readModel(new InMemoryProductAggregateStore());
+
+        WebEndpointResponse<Map<String, Object>> response = new ReadModelEndpoint(readModel, bindings).rebuild();
+
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.OK.value());
+        assertThat(response.getBody().get("entries")).isEqualTo(0);
+        verify(controller, times(3)).stop(anyString());
+        verify(controller, times(3)).start(anyString());
+    }
+
+    @Test
+    void refuseToRebuildMappedReadModel() throws IOException {
+        mappedStore = new MappedProductAggregateStore(directory, 4096, 16, new ObjectMapper());
+        ProductAggregateReadModel readModel = readModel(mappedStore);
+
+        WebEndpointResponse<Map<String, Object>> response = new ReadModelEndpoint(readModel, bindings).rebuild();
+
+        // The consumers continue from their committed offsets, the read model is kept as is
+        assertThat(response.getStatus()).isEqualTo(HttpStatus.CONFLICT.value());
+        assertThat(response.getBody().get("entries")).isEqualTo(1);
+        assertThat(readModel.get(1)).isNotNull();
+        verify(controller, never()).stop(anyString());
+    }
+
+    private static ProductAggregateReadModel readModel(ProductAggregateStore store) {
+        ProductAggregateReadModel readModel = new ProductAggregateReadModel(store, new SimpleMeterRegistry());
+        readModel.applyProductEvent(new Event<>(CREATE, 1, new Product(1, "name", 1, null)));
+        return readModel;
+    }
+}
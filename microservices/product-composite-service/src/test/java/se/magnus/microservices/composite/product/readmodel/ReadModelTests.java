@@ -0,0 +1,125 @@
+package se.magnus.microservices.composite.product.readmodel;
+
+import static java.util.Collections.emptyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static se.magnus.api.event.Event.Type.CREATE;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.api.core.review.Review;
+import se.magnus.api.event.Event;
+import se.magnus.microservices.composite.product.TestSecurityConfig;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.util.http.ETagged;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        classes = {TestSecurityConfig.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "eureka.client.enabled=false",
+                "spring.cloud.stream.defaultBinder=rabbit",
+                "spring.cloud.config.enabled=false",
+                "app.read-model.enabled=true",
+                "spring.cloud.function.definition=productReadModel;recommendationReadModel;reviewReadModel",
+                "spring.cloud.stream.bindings.productReadModel-in-0.destination=products",
+                "spring.cloud.stream.bindings.recommendationReadModel-in-0.destination=recommendations",
+                "spring.cloud.stream.bindings.reviewReadModel-in-0.destination=reviews"})
+@Import({TestChannelBinderConfiguration.class})
+class ReadModelTests {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private ReadModelEndpoint endpoint;
+
+    @MockBean
+    private ProductCompositeIntegration compositeIntegration;
+
+    @BeforeEach
+    void setUp() {
+        endpoint.rebuild();
+
+        when(compositeIntegration.getProductETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getRecommendationsETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getReviewsETag(anyInt())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void getProductFromReadModel() {
+
+        send("products", new Event<>(CREATE, 1, new Product(1, "name", 1, null)));
+        send("recommendations", new Event<>(CREATE, 1, new Recommendation(1, 1, "author", 1, "content", null)));
+        send("reviews", new Event<>(CREATE, 1, new Review(1, 1, "author", "subject", "content", null)));
+        send("reviews", new Event<>(CREATE, 1, new Review(1, 2, "author", "subject", "content", null)));
+
+        String eTag = client.get()
+                .uri("/product-composite/1")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectBody()
+                .jsonPath("$.productId").isEqualTo(1)
+                .jsonPath("$.name").isEqualTo("name")
+                .jsonPath("$.recommendations.length()").isEqualTo(1)
+                .jsonPath("$.reviews.length()").isEqualTo(2)
+                .returnResult().getResponseHeaders().getETag();
+
+        client.get()
+                .uri("/product-composite/1")
+                .accept(APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isEqualTo(NOT_MODIFIED);
+
+        // Served from the read model, without calling the core services
+        verify(compositeIntegration, never()).getProductWithETag(anyInt(), anyInt(), anyInt());
+        verify(compositeIntegration, never()).getReviewsWithETag(anyInt());
+    }
+
+    @Test
+    void getProductNotInReadModel() {
+
+        when(compositeIntegration.getProductWithETag(2, 0, 0)).thenReturn(Mono.just(ETagged.of(new Product(2, "live", 1, null), "")));
+        when(compositeIntegration.getRecommendationsWithETag(2)).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+        when(compositeIntegration.getReviewsWithETag(2)).thenReturn(Mono.just(ETagged.of(emptyList(), "")));
+
+        // Only a review, the product event is not applied yet
+        send("reviews", new Event<>(CREATE, 2, new Review(2, 1, "author", "subject", "content", null)));
+
+        client.get()
+                .uri("/product-composite/2")
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("live");
+    }
+
+    private void send(String destination, Event<Integer, ?> event) {
+        input.send(MessageBuilder.withPayload(event).build(), destination);
+    }
+}
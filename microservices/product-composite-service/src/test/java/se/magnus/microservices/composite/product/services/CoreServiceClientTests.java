@@ -0,0 +1,118 @@
+package se.magnus.microservices.composite.product.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import se.magnus.api.core.product.Product;
+import se.magnus.api.core.recommendation.Recommendation;
+import se.magnus.microservices.composite.product.TestSecurityConfig;
+import se.magnus.util.http.ETagged;
+
+/**
+ * The views of {@link ProductCompositeIntegration} on the calls of {@link CoreServiceClient}, with the core services
+ * stubbed in the WebClient, so that the calls go through the resilience policies.
+ */
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        classes = {TestSecurityConfig.class, CoreServiceClientTests.StubbedCoreServices.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "eureka.client.enabled=false",
+                "spring.cloud.config.enabled=false",
+                "resilience4j.retry.configs.default.maxAttempts=3",
+                "resilience4j.retry.configs.default.waitDuration=10",
+                "resilience4j.retry.configs.default.retryExceptions=org.springframework.web.reactive.function.client.WebClientResponseException$InternalServerError"})
+class CoreServiceClientTests {
+
+    private static final Map<String, AtomicInteger> CALLS = new ConcurrentHashMap<>();
+    private static final ConcurrentLinkedQueue<HttpStatus> PROBE_STATUSES = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Replaces the load balanced WebClient.Builder with one that answers the calls to the core services.
+     */
+    @TestConfiguration
+    static class StubbedCoreServices {
+
+        @Bean
+        WebClient.Builder loadBalancedWebClientBuilder() {
+            return WebClient.builder().exchangeFunction(request -> {
+                String path = request.url().getPath();
+                boolean probe = request.headers().containsKey(HttpHeaders.IF_NONE_MATCH);
+                CALLS.computeIfAbsent((probe ? "probe " : "") + path, key -> new AtomicInteger()).incrementAndGet();
+
+                if (probe) {
+                    HttpStatus status = PROBE_STATUSES.poll();
+                    return Mono.just(ClientResponse.create(status == null ? HttpStatus.NOT_MODIFIED : status)
+                            .header(HttpHeaders.ETAG, "\"p1\"")
+                            .build());
+                }
+                if (path.equals("/product/1")) {
+                    return Mono.just(json("{\"productId\":1,\"name\":\"name\",\"weight\":1}", "\"p1\""));
+                }
+                return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+            });
+        }
+
+        private static ClientResponse json(String body, String eTag) {
+            return ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ETAG, eTag)
+                    .body(body)
+                    .build();
+        }
+    }
+
+    @Autowired
+    private ProductCompositeIntegration integration;
+
+    @BeforeEach
+    void setUp() {
+        CALLS.clear();
+        PROBE_STATUSES.clear();
+    }
+
+    @Test
+    void productIsDecodedFromOneCall() {
+        ETagged<Product> product = integration.getProductWithETag(1, 0, 0).block();
+
+        assertEquals("name", product.getValue().getName());
+        assertEquals("\"p1\"", product.getETag());
+        assertEquals(1, CALLS.get("/product/1").get());
+    }
+
+    @Test
+    void eTagProbeIsRetried() {
+        PROBE_STATUSES.add(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        assertEquals("\"p1\"", integration.getProductETag(1).block());
+        assertEquals(2, CALLS.get("probe /product/1").get());
+    }
+
+    @Test
+    void failedRecommendationsAreRetriedThenEmpty() {
+        ETagged<List<Recommendation>> recommendations = integration.getRecommendationsWithETag(1).block();
+
+        assertTrue(recommendations.getValue().isEmpty());
+        assertEquals("", recommendations.getETag());
+        assertEquals(3, CALLS.get("/recommendation").get());
+    }
+}
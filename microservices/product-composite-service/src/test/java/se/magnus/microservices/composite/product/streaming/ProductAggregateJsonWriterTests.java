@@ -0,0 +1,119 @@
+package se.magnus.microservices.composite.product.streaming;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import se.magnus.api.composite.product.ProductAggregate;
+import se.magnus.api.composite.product.RecommendationSummary;
+import se.magnus.api.composite.product.ReviewSummary;
+import se.magnus.api.composite.product.ServiceAddresses;
+import se.magnus.api.core.recommendation.RatingSummary;
+
+class ProductAggregateJsonWriterTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+    private final ProductAggregateJsonWriter writer = new ProductAggregateJsonWriter(mapper.getFactory());
+
+    @Test
+    void writesSameDocumentAsProductAggregate() throws IOException {
+
+        DataBuffer product = json("{'productId':1,'name':'name','weight':2,'serviceAddress':'pro-address'}");
+        DataBuffer recommendations = json("[" +
+                "{'productId':1,'recommendationId':1,'author':'a1','rate':1,'content':'c1','serviceAddress':'rec-address'}," +
+                "{'productId':1,'recommendationId':2,'author':'a2','rate':2,'content':null,'serviceAddress':'rec-address'}]");
+        DataBuffer reviews = json("[" +
+                "{'productId':1,'reviewId':1,'author':'a1','subject':'s1','content':'c1','serviceAddress':'rev-address','extra':{'nested':[1,2]}}]");
+
+        ProductAggregate expected = new ProductAggregate(1, "name", 2,
+                asList(new RecommendationSummary(1, "a1", 1, "c1"), new RecommendationSummary(2, "a2", 2, null)),
+                Collections.singletonList(new ReviewSummary(1, "a1", "s1", "c1")),
+                new ServiceAddresses("cmp-address", "pro-address", "rev-address", "rec-address"));
+
+        DataBuffer aggregate = writer.write(product, recommendations, reviews, null, "cmp-address", bufferFactory);
+
+        assertThat(read(aggregate)).isEqualTo(tree(expected));
+    }
+
+    @Test
+    void writesEmptyListsForMissingRecommendationsAndReviews() throws IOException {
+
+        DataBuffer product = json("{'productId':1,'name':'name','weight':2,'serviceAddress':'pro-address'}");
+
+        ProductAggregate expected = new ProductAggregate(1, "name", 2, emptyList(), emptyList(),
+                new ServiceAddresses("cmp-address", "pro-address", "", ""));
+
+        DataBuffer aggregate = writer.write(product, null, bufferFactory.allocateBuffer(0), null, "cmp-address", bufferFactory);
+
+        assertThat(read(aggregate)).isEqualTo(tree(expected));
+    }
+
+    @Test
+    void leavesOutServiceAddressesIfDisabled() throws IOException {
+
+        DataBuffer product = json("{'productId':1,'name':'name','weight':2,'serviceAddress':'pro-address'}");
+
+        JsonNode aggregate = read(writer.write(product, json("[]"), json("[]"), null, null, bufferFactory));
+
+        assertThat(aggregate.has("serviceAddresses")).isFalse();
+        assertThat(aggregate.get("productId").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void writesRatings() throws IOException {
+
+        DataBuffer product = json("{'productId':1,'name':'name','weight':2}");
+        RatingSummary ratings = new RatingSummary(1, 1, 3, 3, 3, Collections.singletonMap(3, 1));
+
+        ProductAggregate expected = new ProductAggregate(1, "name", 2, emptyList(), emptyList(), null, ratings);
+
+        DataBuffer aggregate = writer.write(product, null, null, ratings, null, bufferFactory);
+
+        assertThat(read(aggregate)).isEqualTo(tree(expected));
+    }
+
+    @Test
+    void failsOnUnexpectedDocument() {
+
+        DataBuffer product = json("{'productId':1,'name':'name','weight':2}");
+
+        assertThrows(UncheckedIOException.class, () -> writer.write(product, json("{}"), null, null, null, bufferFactory));
+    }
+
+    private DataBuffer json(String json) {
+        return bufferFactory.wrap(json.replace('\'', '"').getBytes(UTF_8));
+    }
+
+    /**
+     * The aggregate as serialized by the service, i.e. with spring.jackson.default-property-inclusion set to non_null,
+     * so the missing ratings or service addresses are left out.
+     */
+    private JsonNode tree(ProductAggregate aggregate) throws IOException {
+        ObjectNode tree = (ObjectNode) mapper.readTree(mapper.writeValueAsBytes(aggregate));
+        List<String> nullFields = new ArrayList<>();
+        tree.fieldNames().forEachRemaining(name -> {
+            if (tree.get(name).isNull()) {
+                nullFields.add(name);
+            }
+        });
+        return tree.without(nullFields);
+    }
+
+    private JsonNode read(DataBuffer buffer) throws IOException {
+        return mapper.readTree(buffer.asInputStream());
+    }
+}
@@ -0,0 +1,166 @@
+package se.magnus.microservices.composite.product.streaming;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.api.exceptions.NotFoundException;
+import se.magnus.microservices.composite.product.TestSecurityConfig;
+import se.magnus.microservices.composite.product.services.ProductCompositeIntegration;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
+
+@SpringBootTest(
+        webEnvironment = RANDOM_PORT,
+        classes = {TestSecurityConfig.class},
+        properties = {
+                "spring.security.oauth2.resourceserver.jwt.issuer-uri=",
+                "spring.main.allow-bean-definition-overriding=true",
+                "eureka.client.enabled=false",
+                "spring.cloud.config.enabled=false",
+                "app.streaming-assembly.enabled=true"})
+class ProductAggregateStreamingTests {
+
+    private static final int PRODUCT_ID_OK = 1;
+    private static final int PRODUCT_ID_NOT_FOUND = 2;
+    private static final int PRODUCT_ID_INVALID = 3;
+
+    private static final String PRODUCT_ETAG = "\"p1\"";
+    private static final String RECOMMENDATIONS_ETAG = "\"rec1\"";
+    private static final String REVIEWS_ETAG = "\"rev1\"";
+
+    @Autowired
+    private WebTestClient client;
+
+    @MockBean
+    private ProductCompositeIntegration compositeIntegration;
+
+    @BeforeEach
+    void setUp() {
+
+        when(compositeIntegration.getRecommendationsJson(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getReviewsJson(anyInt())).thenReturn(Mono.empty());
+
+        when(compositeIntegration.getProductJson(eq(PRODUCT_ID_OK), anyInt(), anyInt()))
+                .thenReturn(json("{'productId':1,'name':'name','weight':1,'serviceAddress':'mock address'}", PRODUCT_ETAG));
+
+        when(compositeIntegration.getRecommendationsJson(PRODUCT_ID_OK))
+                .thenReturn(json("[{'productId':1,'recommendationId':1,'author':'author','rate':1,'content':'content','serviceAddress':'mock address'}]",
+                        RECOMMENDATIONS_ETAG));
+
+        when(compositeIntegration.getProductETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getRecommendationsETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getReviewsETag(anyInt())).thenReturn(Mono.empty());
+        when(compositeIntegration.getProductETag(PRODUCT_ID_OK)).thenReturn(Mono.just(PRODUCT_ETAG));
+        when(compositeIntegration.getRecommendationsETag(PRODUCT_ID_OK)).thenReturn(Mono.just(RECOMMENDATIONS_ETAG));
+        when(compositeIntegration.getReviewsETag(PRODUCT_ID_OK)).thenReturn(Mono.just(REVIEWS_ETAG));
+
+        when(compositeIntegration.getProductJson(eq(PRODUCT_ID_NOT_FOUND), anyInt(), anyInt()))
+                .thenReturn(Mono.error(new NotFoundException("NOT FOUND: " + PRODUCT_ID_NOT_FOUND)));
+
+        when(compositeIntegration.getProductJson(eq(PRODUCT_ID_INVALID), anyInt(), anyInt()))
+                .thenThrow(new InvalidInputException("INVALID: " + PRODUCT_ID_INVALID));
+    }
+
+    @Test
+    void getProductById() {
+
+        getAndVerifyProduct(PRODUCT_ID_OK, OK)
+                .jsonPath("$.productId").isEqualTo(PRODUCT_ID_OK)
+                .jsonPath("$.recommendations.length()").isEqualTo(1)
+                .jsonPath("$.recommendations[0].rate").isEqualTo(1)
+                .jsonPath("$.recommendations[0].productId").doesNotExist()
+                // No reviews, e.g. the review service failed, gives a partial response
+                .jsonPath("$.reviews.length()").isEqualTo(0)
+                .jsonPath("$.serviceAddresses.pro").isEqualTo("mock address")
+                .jsonPath("$.serviceAddresses.rev").isEqualTo("")
+                .consumeWith(result -> assertNull(result.getResponseHeaders().getETag(), "No ETag for a partial response"));
+
+        // The object mapped path is not used
+        verify(compositeIntegration, never()).getProduct(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getProductWithETag() {
+
+        String expectedETag = ETagUtil.strongETag(PRODUCT_ETAG, RECOMMENDATIONS_ETAG, REVIEWS_ETAG);
+
+        when(compositeIntegration.getReviewsJson(PRODUCT_ID_OK)).thenReturn(json("[]", REVIEWS_ETAG));
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_OK)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, expectedETag);
+
+        // The ETag of a plain request comes with the responses of the core services, it is never probed
+        verify(compositeIntegration, never()).getProductETag(anyInt());
+        verify(compositeIntegration, never()).getRecommendationsETag(anyInt());
+        verify(compositeIntegration, never()).getReviewsETag(anyInt());
+
+        client.get()
+                .uri("/product-composite/" + PRODUCT_ID_OK)
+                .accept(APPLICATION_JSON)
+                .ifNoneMatch(expectedETag)
+                .exchange()
+                .expectStatus().isEqualTo(NOT_MODIFIED)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, expectedETag)
+                .expectBody().isEmpty();
+
+        verify(compositeIntegration, times(1)).getProductJson(eq(PRODUCT_ID_OK), anyInt(), anyInt());
+    }
+
+    @Test
+    void getProductNotFound() {
+
+        getAndVerifyProduct(PRODUCT_ID_NOT_FOUND, NOT_FOUND)
+                .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_NOT_FOUND)
+                .jsonPath("$.message").isEqualTo("NOT FOUND: " + PRODUCT_ID_NOT_FOUND);
+    }
+
+    @Test
+    void getProductInvalidInput() {
+
+        getAndVerifyProduct(PRODUCT_ID_INVALID, UNPROCESSABLE_ENTITY)
+                .jsonPath("$.path").isEqualTo("/product-composite/" + PRODUCT_ID_INVALID)
+                .jsonPath("$.message").isEqualTo("INVALID: " + PRODUCT_ID_INVALID);
+    }
+
+    private WebTestClient.BodyContentSpec getAndVerifyProduct(int productId, HttpStatus expectedStatus) {
+        return client.get()
+                .uri("/product-composite/" + productId)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(expectedStatus)
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody();
+    }
+
+    private static Mono<ETagged<DataBuffer>> json(String json, String eTag) {
+        return Mono.fromSupplier(() -> ETagged.of(DefaultDataBufferFactory.sharedInstance.wrap(json.replace('\'', '"').getBytes(UTF_8)), eTag));
+    }
+}
@@ -0,0 +1,118 @@
+package se.magnus.microservices.composite.product.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.magnus.microservices.composite.product.tracing.TailSamplingSpanHandler.DECISION_COUNTER;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TailSamplingSpanHandlerTests {
+
+    private final List<MutableSpan> reported = new CopyOnWriteArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private TailSamplingSpanHandler handler;
+    private Tracing tracing;
+    private Tracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        SpanHandler reporter = new SpanHandler() {
+            @Override
+            public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                reported.add(span);
+                return true;
+            }
+        };
+        handler = new TailSamplingSpanHandler(reporter, Duration.ofMillis(500), 2, 10, registry);
+        tracing = Tracing.newBuilder()
+                .sampler(Sampler.NEVER_SAMPLE)
+                .alwaysSampleLocal()
+                .addSpanHandler(handler)
+                .build();
+        tracer = tracing.tracer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracing.close();
+    }
+
+    @Test
+    void dropsFastSuccessfulRequests() {
+        request(100, false);
+
+        assertThat(reported).isEmpty();
+        assertThat(decisions("dropped")).isEqualTo(1.0);
+        assertThat(handler.bufferedTraces()).isZero();
+    }
+
+    @Test
+    void reportsAllSpansOfFailedRequests() {
+        request(100, true);
+
+        assertThat(reported).extracting(MutableSpan::name).containsExactly("child", "root");
+        assertThat(decisions("kept-error")).isEqualTo(1.0);
+    }
+
+    @Test
+    void reportsAllSpansOfSlowRequests() {
+        request(600, false);
+
+        assertThat(reported).extracting(MutableSpan::name).containsExactly("child", "root");
+        assertThat(decisions("kept-slow")).isEqualTo(1.0);
+    }
+
+    @Test
+    void passesOnSampledRequests() {
+        Tracing sampledTracing = Tracing.newBuilder().sampler(Sampler.ALWAYS_SAMPLE).addSpanHandler(handler).build();
+        try {
+            sampledTracing.tracer().newTrace().name("root").start().finish();
+        } finally {
+            sampledTracing.close();
+        }
+
+        assertThat(reported).isEmpty();
+        assertThat(handler.bufferedTraces()).isZero();
+        assertThat(registry.find(DECISION_COUNTER).counter()).isNull();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedIncompleteRequests() {
+        for (int i = 0; i < 3; i++) {
+            Span root = tracer.newTrace().name("root").start();
+            tracer.newChild(root.context()).name("child").start().finish();
+        }
+
+        assertThat(handler.bufferedTraces()).isEqualTo(2);
+        assertThat(decisions("evicted")).isEqualTo(1.0);
+    }
+
+    private void request(long durationMillis, boolean failChild) {
+        long start = 1_000_000L;
+        Span root = tracer.newTrace().name("root").start(start);
+        Span child = tracer.newChild(root.context()).name("child").start(start);
+        if (failChild) {
+            child.error(new IllegalStateException("failed"));
+        }
+        child.finish(start + 10_000);
+        root.finish(start + durationMillis * 1000);
+    }
+
+    private double decisions(String decision) {
+        return registry.get(DECISION_COUNTER).tag("decision", decision).counter().count();
+    }
+}
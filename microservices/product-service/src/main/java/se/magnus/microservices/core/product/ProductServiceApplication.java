@@ -5,8 +5,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.mapping.context.MappingContext;
@@ -23,7 +25,8 @@ import se.magnus.microservices.core.product.persistence.ProductEntity;
 // gradle clean build
 // java -jar build/libs/*.jar
 @SpringBootApplication
-@ComponentScan("se.magnus")
+// Registers the TypeExcludeFilter like @SpringBootApplication does, so that the test slices only get their own beans
+@ComponentScan(value = "se.magnus", excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class))
 public class ProductServiceApplication {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProductServiceApplication.class);
@@ -0,0 +1,25 @@
+package se.magnus.microservices.core.product.persistence;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The queries of the GET endpoint, read with the read preference of app.mongodb.read-preference, i.e. they may be
+ * served by a secondary member of the replica set. Writes, and the reads they depend on, use the other repository
+ * methods that always read from the primary.
+ */
+public interface ProductQueries {
+
+    Mono<ProductEntity> queryByProductId(int productId);
+
+    /**
+     * Only reads the id and version fields, used to compute the ETag of a product without loading the document.
+     */
+    Mono<ProductEntity> queryVersionByProductId(int productId);
+
+    /**
+     * The products with a higher productId than afterProductId in productId order, read from the unique productId
+     * index, i.e. a page of the products is read without skipping the preceding ones.
+     */
+    Flux<ProductEntity> queryRange(int afterProductId, int limit);
+}
@@ -0,0 +1,45 @@
+package se.magnus.microservices.core.product.persistence;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.util.mongo.MongoReadOperations;
+
+/**
+ * Implements the {@link ProductQueries} fragment of the {@link ProductRepository}.
+ */
+class ProductQueriesImpl implements ProductQueries {
+
+    private final MongoReadOperations reads;
+
+    ProductQueriesImpl(MongoReadOperations reads) {
+        this.reads = reads;
+    }
+
+    @Override
+    public Mono<ProductEntity> queryByProductId(int productId) {
+        return reads.getOperations().findOne(byProductId(productId), ProductEntity.class);
+    }
+
+    @Override
+    public Mono<ProductEntity> queryVersionByProductId(int productId) {
+        Query query = byProductId(productId);
+        query.fields().include("_id").include("version");
+        return reads.getOperations().findOne(query, ProductEntity.class);
+    }
+
+    @Override
+    public Flux<ProductEntity> queryRange(int afterProductId, int limit) {
+        Query query = Query.query(where("productId").gt(afterProductId))
+                .with(Sort.by("productId"))
+                .limit(limit);
+        return reads.getOperations().find(query, ProductEntity.class);
+    }
+
+    private static Query byProductId(int productId) {
+        return Query.query(where("productId").is(productId));
+    }
+}
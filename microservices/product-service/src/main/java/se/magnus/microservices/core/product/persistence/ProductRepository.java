@@ -3,7 +3,7 @@ package se.magnus.microservices.core.product.persistence;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
-public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
+public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String>, ProductQueries {
 
     Mono<ProductEntity> findByProductId(int productId);
 }
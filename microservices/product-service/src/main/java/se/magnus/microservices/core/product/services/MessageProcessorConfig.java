@@ -9,6 +9,7 @@ import se.magnus.api.core.product.Product;
 import se.magnus.api.core.product.ProductService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.util.metrics.ServiceMetrics;
 
 import java.util.function.Consumer;
 
@@ -19,15 +20,18 @@ public class MessageProcessorConfig {
 
     private final ProductService productService;
 
+    private final ServiceMetrics metrics;
+
     @Autowired
-    public MessageProcessorConfig(ProductService productService) {
+    public MessageProcessorConfig(ProductService productService, ServiceMetrics metrics) {
         this.productService = productService;
+        this.metrics = metrics;
     }
 
 
     @Bean
     public Consumer<Event<Integer, Product>> messageProcessor() {
-        return event -> {
+        return event -> metrics.processEvent(event, () -> {
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
 
             switch (event.getEventType()) {
@@ -51,6 +55,6 @@ public class MessageProcessorConfig {
             }
 
             LOG.info("Message processing done!");
-        };
+        });
     }
 }
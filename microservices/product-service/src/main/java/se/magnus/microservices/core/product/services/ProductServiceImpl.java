@@ -14,26 +14,31 @@ import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.api.exceptions.NotFoundException;
 import se.magnus.microservices.core.product.persistence.ProductEntity;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
 import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
 
 import java.time.Duration;
 import java.util.Random;
-import java.util.logging.Level;
 
 
 @RestController
 public class ProductServiceImpl implements ProductService {
 
     private final static Logger LOG = LoggerFactory.getLogger(ProductServiceImpl.class);
+    private static final int MAX_RANGE_LIMIT = 1000;
     private final ServiceUtil serviceUtil;
     private final ProductRepository repository;
     private final ProductMapper mapper;
+    private final ReactiveDiagnostics diagnostics;
 
     @Autowired
-    public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
+    public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil, ReactiveDiagnostics diagnostics) {
         this.repository = repository;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
+        this.diagnostics = diagnostics;
     }
 
 
@@ -45,8 +50,7 @@ public class ProductServiceImpl implements ProductService {
 
         ProductEntity entity = mapper.apiToEntity(body);
 
-        return repository.save(entity)
-                .log(LOG.getName(), Level.FINE)
+        return diagnostics.log("ProductService.createProduct", repository.save(entity))
                 .onErrorMap(
                         DuplicateKeyException.class,
                         ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId())
@@ -62,13 +66,45 @@ public class ProductServiceImpl implements ProductService {
 
         LOG.info("Will get product info for id={}", productId);
 
-        return repository.findByProductId(productId)
-                .map(e -> throwErrorIfBadLuck(e, faultPercent))
-                .delayElement(Duration.ofSeconds(delay))
-                .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId)))
-                .log(LOG.getName(), Level.FINE)
-                .map(mapper::entityToApi)
-                .map(this::setServiceAdress);
+        return ETagUtil.ifNoneMatch(getProductETag(productId), () ->
+                diagnostics.log("ProductService.getProduct", repository.queryByProductId(productId)
+                        .map(e -> throwErrorIfBadLuck(e, faultPercent))
+                        .delayElement(Duration.ofSeconds(delay))
+                        .switchIfEmpty(Mono.error(new NotFoundException("No product found for productId: " + productId))))
+                        .map(e -> ETagged.of(toApi(e), eTagOf(e))));
+    }
+
+    /**
+     * Only reads the version of the product, used for conditional requests.
+     */
+    private Mono<String> getProductETag(int productId) {
+        return repository.queryVersionByProductId(productId).map(ProductServiceImpl::eTagOf);
+    }
+
+    private static String eTagOf(ProductEntity entity) {
+        return ETagUtil.strongETag(entity.getId(), entity.getVersion());
+    }
+
+    private Product toApi(ProductEntity entity) {
+        Product product = mapper.entityToApi(entity);
+        return serviceUtil.isServiceAddressEnabled() ? setServiceAdress(product) : product;
+    }
+
+    @Override
+    public Flux<Product> getProducts(int afterProductId, int limit) {
+
+        if (afterProductId < 0) {
+            throw new InvalidInputException("Invalid afterProductId: " + afterProductId);
+        }
+        if (limit < 1 || limit > MAX_RANGE_LIMIT) {
+            throw new InvalidInputException("Invalid limit: " + limit + ", must be between 1 and " + MAX_RANGE_LIMIT);
+        }
+
+        LOG.debug("Will get at most {} products after id={}", limit, afterProductId);
+
+        Flux<Product> products = diagnostics.log("ProductService.getProducts", repository.queryRange(afterProductId, limit))
+                .map(mapper::entityToApi);
+        return serviceUtil.isServiceAddressEnabled() ? products.map(this::setServiceAdress) : products;
     }
 
     @Override
@@ -78,8 +114,7 @@ public class ProductServiceImpl implements ProductService {
         }
 
         LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-        return repository.findByProductId(productId)
-                .log(LOG.getName(), Level.FINE)
+        return diagnostics.log("ProductService.deleteProduct", repository.findByProductId(productId))
                 .map(repository::delete)
                 .flatMap(e -> e );
     }
@@ -14,6 +14,7 @@ import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.product.persistence.ProductEntity;
 import se.magnus.microservices.core.product.persistence.ProductRepository;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -61,6 +62,54 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
                 .jsonPath("$.productId").isEqualTo(productId);
     }
 
+    @Test
+    void getProductWithETag() {
+        int productId = 1;
+
+        sendCreateProductEvent(productId);
+
+        String eTag = getAndVerifyProduct(productId, HttpStatus.OK)
+                .returnResult().getResponseHeaders().getETag();
+        assertNotNull(eTag);
+
+        client.get()
+                .uri("/product/" + productId)
+                .accept(MediaType.APPLICATION_JSON)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void getProductsInRange() {
+
+        sendCreateProductEvent(3);
+        sendCreateProductEvent(1);
+        sendCreateProductEvent(2);
+        sendCreateProductEvent(4);
+
+        List<Product> products = client.get()
+                .uri("/product/range?afterProductId=1&limit=2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Product.class)
+                .getResponseBody().collectList().block();
+
+        assertEquals(2, products.size());
+        assertEquals(2, products.get(0).getProductId());
+        assertEquals(3, products.get(1).getProductId());
+
+        client.get()
+                .uri("/product/range?afterProductId=0&limit=1001")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY)
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Invalid limit: 1001, must be between 1 and 1000");
+    }
+
     @Test
     void duplicateError() {
         int productId = 1;
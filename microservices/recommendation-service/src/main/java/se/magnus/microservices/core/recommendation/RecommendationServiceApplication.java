@@ -3,10 +3,13 @@ package se.magnus.microservices.core.recommendation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.TypeExcludeFilter;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.mapping.context.MappingContext;
@@ -17,11 +20,14 @@ import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexRes
 import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
 import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
 import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import se.magnus.microservices.core.recommendation.persistence.CountedRatingEntity;
+import se.magnus.microservices.core.recommendation.persistence.RatingAggregateEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 
 
 @SpringBootApplication
-@ComponentScan("se.magnus")
+// Registers the TypeExcludeFilter like @SpringBootApplication does, so that the test slices only get their own beans
+@ComponentScan(value = "se.magnus", excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class))
 public class RecommendationServiceApplication {
 
     private static final Logger LOG = LoggerFactory.getLogger(RecommendationServiceApplication.class);
@@ -37,6 +43,9 @@ public class RecommendationServiceApplication {
     @Autowired
     ReactiveMongoOperations mongoTemplate;
 
+    @Value("${app.recommendation.covered-reads.enabled:false}")
+    boolean coveredReads;
+
 
     @EventListener(ContextRefreshedEvent.class)
     public void initIndicesAfterStartup() {
@@ -45,6 +54,15 @@ public class RecommendationServiceApplication {
 
         ReactiveIndexOperations indexOps = mongoTemplate.indexOps(RecommendationEntity.class);
         resolver.resolveIndexFor(RecommendationEntity.class).forEach(e -> indexOps.ensureIndex(e).block());
+        if (coveredReads) {
+            indexOps.ensureIndex(RecommendationEntity.summaryIndex()).block();
+        }
+
+        ReactiveIndexOperations ratingIndexOps = mongoTemplate.indexOps(RatingAggregateEntity.class);
+        resolver.resolveIndexFor(RatingAggregateEntity.class).forEach(e -> ratingIndexOps.ensureIndex(e).block());
+
+        ReactiveIndexOperations countedIndexOps = mongoTemplate.indexOps(CountedRatingEntity.class);
+        resolver.resolveIndexFor(CountedRatingEntity.class).forEach(e -> countedIndexOps.ensureIndex(e).block());
     }
 
 }
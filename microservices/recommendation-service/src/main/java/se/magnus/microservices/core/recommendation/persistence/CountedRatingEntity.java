@@ -0,0 +1,54 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Marks the rating of a recommendation as counted in the {@link RatingAggregateEntity rating aggregate} of its product,
+ * so that a recommendation is counted once also if its event is processed more than once. Kept apart from the
+ * aggregate, so that the aggregate stays small and the check is a lookup in a unique index.
+ */
+@Document(collection = "counted-ratings")
+@CompoundIndex(name = "prod-rec-id", unique = true, def = "{'productId': 1, 'recommendationId' : 1}")
+public class CountedRatingEntity {
+
+    @Id
+    private String id;
+
+    private int productId;
+
+    private int recommendationId;
+
+    public CountedRatingEntity() {
+    }
+
+    public CountedRatingEntity(int productId, int recommendationId) {
+        this.productId = productId;
+        this.recommendationId = recommendationId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getRecommendationId() {
+        return recommendationId;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setRecommendationId(int recommendationId) {
+        this.recommendationId = recommendationId;
+    }
+}
@@ -0,0 +1,93 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import java.util.Map;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The running aggregate of the ratings of the recommendations of a product, updated in place by
+ * {@link RatingAggregateUpdates} when a recommendation is created and removed with the recommendations of the product.
+ *
+ * The recommendations that are counted are kept as {@link CountedRatingEntity} documents, so the size of the aggregate
+ * does not grow with the number of recommendations.
+ */
+@Document(collection = "rating-aggregates")
+public class RatingAggregateEntity {
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private int productId;
+
+    private int count;
+
+    private long sum;
+
+    private int min;
+
+    private int max;
+
+    // Keyed by the rating, Mongo only supports string keys
+    private Map<String, Integer> histogram;
+
+    public RatingAggregateEntity() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public Map<String, Integer> getHistogram() {
+        return histogram;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public void setSum(long sum) {
+        this.sum = sum;
+    }
+
+    public void setMin(int min) {
+        this.min = min;
+    }
+
+    public void setMax(int max) {
+        this.max = max;
+    }
+
+    public void setHistogram(Map<String, Integer> histogram) {
+        this.histogram = histogram;
+    }
+}
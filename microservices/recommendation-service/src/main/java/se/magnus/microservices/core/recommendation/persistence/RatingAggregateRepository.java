@@ -0,0 +1,9 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+public interface RatingAggregateRepository extends ReactiveCrudRepository<RatingAggregateEntity, String>, RatingAggregateUpdates {
+
+    Mono<RatingAggregateEntity> findByProductId(int productId);
+}
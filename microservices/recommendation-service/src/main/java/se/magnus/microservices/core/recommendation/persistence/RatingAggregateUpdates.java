@@ -0,0 +1,20 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Incremental updates of the {@link RatingAggregateEntity rating aggregates}, applied atomically by the database.
+ */
+public interface RatingAggregateUpdates {
+
+    /**
+     * Adds the rating of a recommendation to the aggregate of its product, creating the aggregate if the product has
+     * none. Does nothing if the recommendation already is counted.
+     */
+    Mono<Void> addRating(int productId, int recommendationId, int rating);
+
+    /**
+     * Removes the aggregate of a product together with the marks of its counted recommendations.
+     */
+    Mono<Void> deleteRatings(int productId);
+}
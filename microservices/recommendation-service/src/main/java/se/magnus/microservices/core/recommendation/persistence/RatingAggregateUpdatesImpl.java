@@ -0,0 +1,60 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+/**
+ * Implements the {@link RatingAggregateUpdates} fragment of the {@link RatingAggregateRepository}.
+ */
+class RatingAggregateUpdatesImpl implements RatingAggregateUpdates {
+
+    private final ReactiveMongoOperations mongoTemplate;
+
+    RatingAggregateUpdatesImpl(ReactiveMongoOperations mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * The recommendation is first marked as counted, the insert fails on the unique index if it already is. If the
+     * rating then can't be added, the mark is removed again so that a redelivery of the event adds it. Only if the
+     * instance stops in between is a rating lost, which is preferred over counting it twice.
+     */
+    @Override
+    public Mono<Void> addRating(int productId, int recommendationId, int rating) {
+        CountedRatingEntity counted = new CountedRatingEntity(productId, recommendationId);
+        return mongoTemplate.insert(counted)
+                .flatMap(c -> updateAggregate(productId, rating)
+                        .onErrorResume(e -> mongoTemplate.remove(c).then(Mono.error(e))))
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+
+    @Override
+    public Mono<Void> deleteRatings(int productId) {
+        Query product = Query.query(where("productId").is(productId));
+        return mongoTemplate.remove(product, RatingAggregateEntity.class)
+                .then(mongoTemplate.remove(product, CountedRatingEntity.class))
+                .then();
+    }
+
+    private Mono<Void> updateAggregate(int productId, int rating) {
+        Query aggregate = Query.query(where("productId").is(productId));
+        Update update = new Update()
+                .inc("count", 1)
+                .inc("sum", rating)
+                .min("min", rating)
+                .max("max", rating)
+                .inc("histogram." + rating, 1);
+
+        // If no aggregate exists, the upsert inserts one, which fails on the unique productId if one was inserted
+        // concurrently. The rating still needs to be added, so the update is made again without the upsert.
+        return mongoTemplate.upsert(aggregate, update, RatingAggregateEntity.class)
+                .onErrorResume(DuplicateKeyException.class, e -> mongoTemplate.updateFirst(aggregate, update, RatingAggregateEntity.class))
+                .then();
+    }
+}
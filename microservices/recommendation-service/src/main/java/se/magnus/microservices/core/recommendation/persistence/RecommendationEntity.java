@@ -3,13 +3,37 @@ package se.magnus.microservices.core.recommendation.persistence;
 
 import org.springframework.data.annotation.Id;
 import org.springframework.data.annotation.Version;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "recommendations")
-@CompoundIndex(name = "prod-rec-id", unique = true, def = "{'productId': 1, 'recommendationId' : 1}") // unique compound index
+@CompoundIndex(name = RecommendationEntity.PRODUCT_RECOMMENDATION_INDEX, unique = true, def = "{'productId': 1, 'recommendationId' : 1}") // unique compound index
 public class RecommendationEntity {
 
+    public static final String PRODUCT_RECOMMENDATION_INDEX = "prod-rec-id";
+    // Renamed when the version was added, an index can't be redefined under the same name
+    public static final String SUMMARY_INDEX = "prod-rec-summary-v2";
+
+    /**
+     * Holds all fields of a recommendation that are returned by the API, and the version that their ETag is derived
+     * from, so that the recommendations of a product can be read from the index alone, without reading the documents.
+     * Only created if app.recommendation.covered-reads is enabled, since it adds to the size of the indexes and to the
+     * cost of every write.
+     */
+    public static IndexDefinition summaryIndex() {
+        return new Index()
+                .on("productId", Sort.Direction.ASC)
+                .on("recommendationId", Sort.Direction.ASC)
+                .on("author", Sort.Direction.ASC)
+                .on("rating", Sort.Direction.ASC)
+                .on("content", Sort.Direction.ASC)
+                .on("version", Sort.Direction.ASC)
+                .named(SUMMARY_INDEX);
+    }
+
     @Id
     private String id;
 
@@ -0,0 +1,30 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * The queries of the GET endpoint, read with the read preference of app.mongodb.read-preference, i.e. they may be
+ * served by a secondary member of the replica set. Writes, and the reads they depend on, use the other repository
+ * methods that always read from the primary.
+ */
+public interface RecommendationQueries {
+
+    /**
+     * The recommendations of a product in recommendationId order. In the covered reads mode, only the fields returned
+     * by the API and the version are set, i.e. not the id.
+     */
+    Flux<RecommendationEntity> queryByProductId(int productId);
+
+    /**
+     * Only reads the recommendationId and version fields, used to compute the ETag of the recommendations of a product
+     * without loading the documents.
+     */
+    Flux<RecommendationEntity> queryVersionsByProductId(int productId);
+
+    /**
+     * The recommendations of the products with a productId in (afterProductId, lastProductId], in productId and
+     * recommendationId order, as read from the index. Only the fields returned by the API are set in the covered reads
+     * mode.
+     */
+    Flux<RecommendationEntity> queryByProductIdRange(int afterProductId, int lastProductId);
+}
@@ -0,0 +1,65 @@
+package se.magnus.microservices.core.recommendation.persistence;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import se.magnus.util.mongo.MongoReadOperations;
+
+/**
+ * Implements the {@link RecommendationQueries} fragment of the {@link RecommendationRepository}.
+ *
+ * The recommendations are returned in recommendationId order, as they are stored in the productId, recommendationId
+ * index, i.e. without sorting them in memory. With app.recommendation.covered-reads enabled only the fields returned by
+ * the API are read, all from the {@link RecommendationEntity#summaryIndex() summary index}, i.e. the query is covered by
+ * the index and no documents are read.
+ */
+class RecommendationQueriesImpl implements RecommendationQueries {
+
+    private static final Sort BY_RECOMMENDATION_ID = Sort.by("recommendationId");
+    private static final Sort BY_PRODUCT_AND_RECOMMENDATION_ID = Sort.by("productId", "recommendationId");
+
+    private final MongoReadOperations reads;
+    private final boolean coveredReads;
+
+    RecommendationQueriesImpl(MongoReadOperations reads, @Value("${app.recommendation.covered-reads.enabled:false}") boolean coveredReads) {
+        this.reads = reads;
+        this.coveredReads = coveredReads;
+    }
+
+    @Override
+    public Flux<RecommendationEntity> queryByProductId(int productId) {
+        return find(byProductId(productId).with(BY_RECOMMENDATION_ID));
+    }
+
+    @Override
+    public Flux<RecommendationEntity> queryByProductIdRange(int afterProductId, int lastProductId) {
+        Query query = Query.query(where("productId").gt(afterProductId).lte(lastProductId))
+                .with(BY_PRODUCT_AND_RECOMMENDATION_ID);
+        return find(query);
+    }
+
+    private Flux<RecommendationEntity> find(Query query) {
+        if (coveredReads) {
+            query.fields().include("productId", "recommendationId", "author", "rating", "content", "version").exclude("_id");
+            query.withHint(RecommendationEntity.SUMMARY_INDEX);
+        }
+        return reads.getOperations().find(query, RecommendationEntity.class);
+    }
+
+    @Override
+    public Flux<RecommendationEntity> queryVersionsByProductId(int productId) {
+        Query query = byProductId(productId).with(BY_RECOMMENDATION_ID);
+        query.fields().include("recommendationId", "version").exclude("_id");
+        if (coveredReads) {
+            query.withHint(RecommendationEntity.SUMMARY_INDEX);
+        }
+        return reads.getOperations().find(query, RecommendationEntity.class);
+    }
+
+    private static Query byProductId(int productId) {
+        return Query.query(where("productId").is(productId));
+    }
+}
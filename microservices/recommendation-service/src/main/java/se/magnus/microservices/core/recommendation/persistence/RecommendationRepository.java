@@ -1,13 +1,10 @@
 package se.magnus.microservices.core.recommendation.persistence;
 
-import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 
-import java.util.List;
-
 public interface RecommendationRepository extends
-        ReactiveCrudRepository<RecommendationEntity, String> {
+        ReactiveCrudRepository<RecommendationEntity, String>, RecommendationQueries {
 
     Flux<RecommendationEntity> findByProductId(int productId);
 
@@ -9,8 +9,12 @@ import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.core.recommendation.persistence.RatingAggregateRepository;
+import se.magnus.util.metrics.ServiceMetrics;
 
 import java.util.function.Consumer;
+import reactor.core.publisher.Mono;
 
 @Configuration
 public class MessageProcessorConfig {
@@ -19,27 +23,42 @@ public class MessageProcessorConfig {
 
     private final RecommendationService recommendationService;
 
+    private final RatingAggregateRepository ratingRepository;
+
+    private final ServiceMetrics metrics;
+
     @Autowired
-    public MessageProcessorConfig(RecommendationService recommendationService) {
+    public MessageProcessorConfig(RecommendationService recommendationService, RatingAggregateRepository ratingRepository, ServiceMetrics metrics) {
         this.recommendationService = recommendationService;
+        this.ratingRepository = ratingRepository;
+        this.metrics = metrics;
     }
 
     @Bean
     public Consumer<Event<Integer, Recommendation>> messageProcessor() {
-        return event -> {
+        return event -> metrics.processEvent(event, () -> {
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
 
             switch (event.getEventType()) {
                 case CREATE:
                     Recommendation recommendation = event.getData();
                     LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(), recommendation.getRecommendationId());
-                    recommendationService.createRecommendation(recommendation).block();
+                    Mono<Void> addRating = ratingRepository.addRating(
+                            recommendation.getProductId(), recommendation.getRecommendationId(), recommendation.getRate());
+
+                    // A duplicate may be a redelivered event whose rating was not added, adding a counted rating does nothing
+                    recommendationService.createRecommendation(recommendation)
+                            .then(addRating)
+                            .onErrorResume(InvalidInputException.class, e -> addRating.then(Mono.error(e)))
+                            .block();
                     break;
 
                 case DELETE:
                     int productId = event.getKey();
                     LOG.info("Delete recommendations with ProductID: {}", productId);
-                    recommendationService.deleteRecommendations(productId).block();
+                    recommendationService.deleteRecommendations(productId)
+                            .then(ratingRepository.deleteRatings(productId))
+                            .block();
                     break;
 
                 default:
@@ -49,6 +68,6 @@ public class MessageProcessorConfig {
             }
 
             LOG.info("Message processing done!");
-        };
+        });
     }
 }
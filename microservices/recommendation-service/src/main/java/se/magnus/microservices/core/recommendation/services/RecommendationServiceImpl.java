@@ -7,15 +7,24 @@ import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import se.magnus.api.core.recommendation.RatingSummary;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.core.recommendation.RecommendationService;
 import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.core.recommendation.persistence.RatingAggregateEntity;
+import se.magnus.microservices.core.recommendation.persistence.RatingAggregateRepository;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
 import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.Level;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 @RestController
 public class RecommendationServiceImpl implements RecommendationService {
@@ -28,14 +37,22 @@ public class RecommendationServiceImpl implements RecommendationService {
 
     private final RecommendationRepository repository;
 
+    private final RatingAggregateRepository ratingRepository;
+
+    private final ReactiveDiagnostics diagnostics;
+
     @Autowired
     public RecommendationServiceImpl(ServiceUtil serviceUtil,
                                      RecommendationMapper mapper,
-                                     RecommendationRepository repository
+                                     RecommendationRepository repository,
+                                     RatingAggregateRepository ratingRepository,
+                                     ReactiveDiagnostics diagnostics
     ) {
         this.serviceUtil = serviceUtil;
         this.mapper = mapper;
         this.repository = repository;
+        this.ratingRepository = ratingRepository;
+        this.diagnostics = diagnostics;
     }
 
     @Override
@@ -46,8 +63,7 @@ public class RecommendationServiceImpl implements RecommendationService {
 
         RecommendationEntity recommendationEntity = mapper.apiToEntity(body);
 
-        return repository.save(recommendationEntity)
-                .log(LOG.getName(), Level.FINE)
+        return diagnostics.log("RecommendationService.createRecommendation", repository.save(recommendationEntity))
                 .onErrorMap(
                         DuplicateKeyException.class,
                         ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id:" + body.getRecommendationId()))
@@ -63,10 +79,70 @@ public class RecommendationServiceImpl implements RecommendationService {
 
         LOG.info("Will get recommendations for product with id={}", productId);
 
-        return repository.findByProductId(productId)
-                .log(LOG.getName(), Level.FINE)
-                .map(mapper::entityToApi)
-                .map(this::setServiceAddress);
+        return ETagUtil.ifNoneMatchMany(getRecommendationsETag(productId), () ->
+                diagnostics.log("RecommendationService.getRecommendations", repository.queryByProductId(productId))
+                        .collectList()
+                        .map(entities -> ETagged.of(toApi(entities), eTagOf(entities))));
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsInRange(int afterProductId, int lastProductId) {
+
+        if (afterProductId < 0 || lastProductId < afterProductId) {
+            throw new InvalidInputException("Invalid product id range: (" + afterProductId + ", " + lastProductId + "]");
+        }
+
+        LOG.debug("Will get recommendations for products with ids in ({}, {}]", afterProductId, lastProductId);
+
+        Flux<Recommendation> recommendations = diagnostics.log("RecommendationService.getRecommendationsInRange",
+                        repository.queryByProductIdRange(afterProductId, lastProductId))
+                .map(mapper::entityToApi);
+        return serviceUtil.isServiceAddressEnabled() ? recommendations.map(this::setServiceAddress) : recommendations;
+    }
+
+    /**
+     * Only reads the versions of the recommendations, used for conditional requests.
+     */
+    private Mono<String> getRecommendationsETag(int productId) {
+        return repository.queryVersionsByProductId(productId)
+                .collectList()
+                .map(RecommendationServiceImpl::eTagOf);
+    }
+
+    // The recommendationId identifies a recommendation of a product, the id is not read by the covered reads
+    private static String eTagOf(List<RecommendationEntity> entities) {
+        return ETagUtil.strongETag(entities.stream()
+                .map(e -> e.getRecommendationId() + ":" + e.getVersion())
+                .collect(Collectors.toList()));
+    }
+
+    private List<Recommendation> toApi(List<RecommendationEntity> entities) {
+        List<Recommendation> recommendations = new ArrayList<>(entities.size());
+        for (RecommendationEntity entity : entities) {
+            Recommendation recommendation = mapper.entityToApi(entity);
+            recommendations.add(serviceUtil.isServiceAddressEnabled() ? setServiceAddress(recommendation) : recommendation);
+        }
+        return recommendations;
+    }
+
+    @Override
+    public Mono<RatingSummary> getRatingSummary(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        return diagnostics.log("RecommendationService.getRatingSummary", ratingRepository.findByProductId(productId))
+                .map(RecommendationServiceImpl::toRatingSummary)
+                .defaultIfEmpty(RatingSummary.empty(productId));
+    }
+
+    private static RatingSummary toRatingSummary(RatingAggregateEntity entity) {
+        Map<Integer, Integer> histogram = new TreeMap<>();
+        if (entity.getHistogram() != null) {
+            entity.getHistogram().forEach((rating, count) -> histogram.put(Integer.valueOf(rating), count));
+        }
+        return new RatingSummary(entity.getProductId(), entity.getCount(), entity.getSum(), entity.getMin(), entity.getMax(), histogram);
     }
 
     @Override
@@ -0,0 +1,38 @@
+package se.magnus.microservices.core.recommendation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.util.mongo.MongoClientConfig;
+
+/**
+ * The query plans with app.recommendation.covered-reads.enabled, where the summary query is answered from the summary
+ * index alone.
+ */
+@DataMongoTest(
+        excludeAutoConfiguration = EmbeddedMongoAutoConfiguration.class,
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = MongoClientConfig.class),
+        properties = {"spring.cloud.config.enabled=false", "app.recommendation.covered-reads.enabled=true"})
+@Import(QueryPlanTestBase.FindCommandRecorder.class)
+class CoveredReadsQueryPlanTests extends QueryPlanTestBase {
+
+    @Test
+    void summaryQueryIsCovered() {
+        List<RecommendationEntity> entities = repository.queryByProductId(1).collectList().block();
+        assertEquals(1, FIND_COMMANDS.size());
+
+        // Covered reads only return the fields of the API, and read no documents
+        assertNull(entities.get(0).getId());
+        List<String> stages = winningPlanStages(FIND_COMMANDS.get(0));
+        assertFalse(stages.contains("FETCH"), "The summary query is not covered by the index: " + stages);
+    }
+}
@@ -10,13 +10,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+import se.magnus.util.mongo.MongoClientConfig;
 
 @DataMongoTest(
         excludeAutoConfiguration = EmbeddedMongoAutoConfiguration.class,
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = MongoClientConfig.class),
         properties = {"spring.cloud.config.enabled=false"})
 class PersistenceTests extends MongoDbTestBase {
 
@@ -104,6 +108,23 @@ class PersistenceTests extends MongoDbTestBase {
         assertEquals("a1", updatedEntity.getAuthor());
     }
 
+    @Test
+    void queryByProductIdInRecommendationIdOrder() {
+        repository.save(new RecommendationEntity(1, 5, "a", 1, "c")).block();
+        repository.save(new RecommendationEntity(1, 1, "a", 2, "c")).block();
+        repository.save(new RecommendationEntity(2, 3, "a", 3, "c")).block();
+
+        List<RecommendationEntity> entities = repository.queryByProductId(1).collectList().block();
+        assertEquals(3, entities.size());
+        assertEquals(1, entities.get(0).getRecommendationId());
+        assertEquals(2, entities.get(1).getRecommendationId());
+        assertEquals(5, entities.get(2).getRecommendationId());
+        assertEquals(3, entities.get(1).getRating());
+
+        List<Integer> versions = repository.queryVersionsByProductId(1).map(RecommendationEntity::getVersion).collectList().block();
+        assertEquals(3, versions.size());
+    }
+
     private void assertEqualsRecommendation(RecommendationEntity expectedEntity, RecommendationEntity actualEntity) {
         assertEquals(expectedEntity.getId(),               actualEntity.getId());
         assertEquals(expectedEntity.getVersion(),          actualEntity.getVersion());
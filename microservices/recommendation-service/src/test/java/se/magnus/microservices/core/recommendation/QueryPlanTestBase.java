@@ -0,0 +1,110 @@
+package se.magnus.microservices.core.recommendation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
+
+/**
+ * Explains the find commands that the GET endpoint sends to the recommendations collection, and fails if a query is
+ * not served by an index, or needs to sort the recommendations in memory. Run with and without covered reads by the
+ * subclasses.
+ */
+abstract class QueryPlanTestBase extends MongoDbTestBase {
+
+    static final List<BsonDocument> FIND_COMMANDS = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records the find commands sent to the recommendations collection, to check their query plans.
+     */
+    @TestConfiguration
+    static class FindCommandRecorder {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer findCommandRecorder() {
+            return builder -> builder.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    BsonDocument command = event.getCommand();
+                    if (event.getCommandName().equals("find") && command.getString("find").getValue().equals("recommendations")) {
+                        FIND_COMMANDS.add(command.clone());
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    RecommendationRepository repository;
+
+    @Autowired
+    private ReactiveMongoOperations mongoTemplate;
+
+    @BeforeEach
+    void setupDb() {
+        repository.deleteAll().block();
+        repository.save(new RecommendationEntity(1, 2, "a", 3, "c")).block();
+        repository.save(new RecommendationEntity(1, 3, "a", 3, "c")).block();
+        repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+        FIND_COMMANDS.clear();
+    }
+
+    @Test
+    void queriesUseIndexes() {
+        repository.queryByProductId(1).collectList().block();
+        repository.queryVersionsByProductId(1).collectList().block();
+        assertEquals(2, FIND_COMMANDS.size());
+
+        for (BsonDocument find : FIND_COMMANDS) {
+            List<String> stages = winningPlanStages(find);
+            assertFalse(stages.contains("COLLSCAN"), "Collection scan in the plan of " + find.toJson() + ": " + stages);
+            assertFalse(stages.contains("SORT"), "In-memory sort in the plan of " + find.toJson() + ": " + stages);
+            assertTrue(stages.contains("IXSCAN"), "No index scan in the plan of " + find.toJson() + ": " + stages);
+        }
+    }
+
+    List<String> winningPlanStages(BsonDocument find) {
+        Document command = new Document("find", find.getString("find").getValue());
+        for (String field : new String[] {"filter", "sort", "projection", "hint"}) {
+            if (find.containsKey(field)) {
+                command.append(field, find.get(field));
+            }
+        }
+
+        Document explain = mongoTemplate.executeCommand(new Document("explain", command).append("verbosity", "queryPlanner")).block();
+        Document winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan, stages);
+        return stages;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void collectStages(Document plan, List<String> stages) {
+        stages.add(plan.getString("stage"));
+        if (plan.containsKey("inputStage")) {
+            collectStages(plan.get("inputStage", Document.class), stages);
+        }
+        if (plan.containsKey("inputStages")) {
+            for (Document input : (List<Document>) plan.get("inputStages")) {
+                collectStages(input, stages);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package se.magnus.microservices.core.recommendation;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.mongo.embedded.EmbeddedMongoAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
+import se.magnus.microservices.core.recommendation.persistence.RecommendationEntity;
+import se.magnus.util.mongo.MongoClientConfig;
+
+/**
+ * The query plans with the default configuration, i.e. without covered reads.
+ */
+@DataMongoTest(
+        excludeAutoConfiguration = EmbeddedMongoAutoConfiguration.class,
+        includeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE, classes = MongoClientConfig.class),
+        properties = {"spring.cloud.config.enabled=false"})
+@Import(QueryPlanTestBase.FindCommandRecorder.class)
+class QueryPlanTests extends QueryPlanTestBase {
+
+    @Test
+    void queryByProductIdReadsDocuments() {
+        List<RecommendationEntity> entities = repository.queryByProductId(1).collectList().block();
+        assertNotNull(entities.get(0).getId());
+    }
+}
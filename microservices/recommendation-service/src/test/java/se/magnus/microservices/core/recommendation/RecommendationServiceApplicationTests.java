@@ -4,20 +4,26 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 
+import java.util.List;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import se.magnus.api.core.recommendation.Recommendation;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.InvalidInputException;
+import se.magnus.microservices.core.recommendation.persistence.CountedRatingEntity;
+import se.magnus.microservices.core.recommendation.persistence.RatingAggregateRepository;
 import se.magnus.microservices.core.recommendation.persistence.RecommendationRepository;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
@@ -31,6 +37,12 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
     @Autowired
     private RecommendationRepository repository;
 
+    @Autowired
+    private RatingAggregateRepository ratingRepository;
+
+    @Autowired
+    private ReactiveMongoOperations mongoTemplate;
+
     @Autowired
     @Qualifier("messageProcessor")
     private Consumer<Event<Integer, Recommendation>> messageProcessor;
@@ -38,6 +50,8 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
     @BeforeEach
     void setupDb() {
         repository.deleteAll().block();
+        ratingRepository.deleteAll().block();
+        mongoTemplate.remove(new Query(), CountedRatingEntity.class).block();
     }
 
     @Test
@@ -91,6 +105,77 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
         sendDeleteRecommendationEvent(productId);
     }
 
+    @Test
+    void getRatingSummary() {
+
+        int productId = 1;
+
+        getAndVerifyRatingSummary(productId)
+                .jsonPath("$.productId").isEqualTo(productId)
+                .jsonPath("$.count").isEqualTo(0);
+
+        sendCreateRecommendationEvent(productId, 1);
+        sendCreateRecommendationEvent(productId, 3);
+        sendCreateRecommendationEvent(productId, 5);
+        sendCreateRecommendationEvent(productId + 1, 2);
+
+        // A redelivered event must not be counted twice
+        assertThrows(InvalidInputException.class, () -> sendCreateRecommendationEvent(productId, 3));
+
+        getAndVerifyRatingSummary(productId)
+                .jsonPath("$.count").isEqualTo(3)
+                .jsonPath("$.sum").isEqualTo(9)
+                .jsonPath("$.min").isEqualTo(1)
+                .jsonPath("$.max").isEqualTo(5)
+                .jsonPath("$.average").isEqualTo(3.0)
+                .jsonPath("$.histogram.3").isEqualTo(1);
+
+        sendDeleteRecommendationEvent(productId);
+
+        getAndVerifyRatingSummary(productId)
+                .jsonPath("$.count").isEqualTo(0);
+        getAndVerifyRatingSummary(productId + 1)
+                .jsonPath("$.count").isEqualTo(1);
+
+        // The counted recommendations are removed with the aggregate, so a recreated recommendation is counted again
+        sendCreateRecommendationEvent(productId, 3);
+        getAndVerifyRatingSummary(productId)
+                .jsonPath("$.count").isEqualTo(1);
+    }
+
+    @Test
+    void getRecommendationsInRange() {
+
+        sendCreateRecommendationEvent(2, 2);
+        sendCreateRecommendationEvent(1, 1);
+        sendCreateRecommendationEvent(2, 1);
+        sendCreateRecommendationEvent(3, 1);
+
+        List<Recommendation> recommendations = client.get()
+                .uri("/recommendation/range?afterProductId=1&lastProductId=3")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .returnResult(Recommendation.class)
+                .getResponseBody().collectList().block();
+
+        assertEquals(3, recommendations.size());
+        assertEquals(2, recommendations.get(0).getProductId());
+        assertEquals(1, recommendations.get(0).getRecommendationId());
+        assertEquals(2, recommendations.get(1).getRecommendationId());
+        assertEquals(3, recommendations.get(2).getProductId());
+    }
+
+    @Test
+    void getRecommendationsInInvalidRange() {
+
+        client.get()
+                .uri("/recommendation/range?afterProductId=3&lastProductId=1")
+                .accept(APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(UNPROCESSABLE_ENTITY);
+    }
+
     @Test
     void getRecommendationsMissingParameter() {
 
@@ -138,6 +223,16 @@ class RecommendationServiceApplicationTests extends MongoDbTestBase {
                 .expectBody();
     }
 
+    private WebTestClient.BodyContentSpec getAndVerifyRatingSummary(int productId) {
+        return client.get()
+                .uri("/recommendation/rating?productId=" + productId)
+                .accept(APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(OK)
+                .expectHeader().contentType(APPLICATION_JSON)
+                .expectBody();
+    }
+
     private void sendCreateRecommendationEvent(int productId, int recommendationId) {
         Recommendation recommendation = new Recommendation(productId, recommendationId, "Author " + recommendationId, recommendationId, "Content " + recommendationId, "SA");
         Event<Integer, Recommendation> event = new Event(CREATE, productId, recommendation);
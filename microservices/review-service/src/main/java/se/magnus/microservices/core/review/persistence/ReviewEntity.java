@@ -1,12 +1,31 @@
 package se.magnus.microservices.core.review.persistence;
 
+import java.time.Instant;
 import javax.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @Entity
 @Table(name = "reviews", indexes = { @Index(name = "reviews_unique_idx", unique = true, columnList = "productId,reviewId") })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = ReviewEntity.CACHE_REGION)
 public class ReviewEntity {
 
-    @Id @GeneratedValue
+    public static final String CACHE_REGION = "reviews";
+
+    /**
+     * Ids are allocated in blocks from the hibernate_sequence table, the table of the previous default generator, so
+     * that inserts are not preceded by a round trip to the table each and can be batched.
+     */
+    @Id
+    @GeneratedValue(generator = "review_ids")
+    @GenericGenerator(name = "review_ids", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "hibernate_sequence"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private int id;
 
     @Version
@@ -17,6 +36,7 @@ public class ReviewEntity {
     private String author;
     private String subject;
     private String content;
+    private Instant createdAt;
 
     public ReviewEntity() {
     }
@@ -29,6 +49,13 @@ public class ReviewEntity {
         this.content = content;
     }
 
+    @PrePersist
+    void onCreate() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+
     public int getId() {
         return id;
     }
@@ -84,4 +111,12 @@ public class ReviewEntity {
     public void setContent(String content) {
         this.content = content;
     }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
 }
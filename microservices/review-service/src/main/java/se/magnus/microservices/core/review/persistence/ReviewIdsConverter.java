@@ -0,0 +1,40 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a short list of review ids as a comma separated column, so that a review summary is a single row.
+ */
+@Converter
+public class ReviewIdsConverter implements AttributeConverter<List<Integer>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return "";
+        }
+        StringBuilder column = new StringBuilder();
+        for (Integer id : ids) {
+            if (column.length() > 0) {
+                column.append(',');
+            }
+            column.append(id);
+        }
+        return column.toString();
+    }
+
+    @Override
+    public List<Integer> convertToEntityAttribute(String column) {
+        List<Integer> ids = new ArrayList<>();
+        if (column == null || column.isEmpty()) {
+            return ids;
+        }
+        for (String id : column.split(",")) {
+            ids.add(Integer.valueOf(id));
+        }
+        return ids;
+    }
+}
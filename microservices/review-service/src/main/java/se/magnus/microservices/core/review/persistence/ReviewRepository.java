@@ -1,6 +1,11 @@
 package se.magnus.microservices.core.review.persistence;
 
+import javax.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -8,6 +13,32 @@ import java.util.List;
 
 public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer> {
 
+    String PRODUCT_CACHE_REGION = "reviews-by-product";
+
+    /**
+     * The result is kept in the query cache if it is enabled, Hibernate invalidates it whenever the reviews table is
+     * written to.
+     */
     @Transactional(readOnly = true)
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.cacheable", value = "true"),
+            @QueryHint(name = "org.hibernate.cacheRegion", value = PRODUCT_CACHE_REGION)
+    })
     List<ReviewEntity> findByProductId(int productId);
+
+    /**
+     * The reviews of the products with a productId in (afterProductId, lastProductId], in productId and reviewId
+     * order as read from the reviews_unique_idx index, starting after the review (afterProductId, afterReviewId). The
+     * range is read a page at a time by passing the last review of the previous page, with Integer.MAX_VALUE as the
+     * afterReviewId of the first page.
+     */
+    @Transactional(readOnly = true)
+    @Query("select r from ReviewEntity r where (r.productId > :afterProductId or (r.productId = :afterProductId and r.reviewId > :afterReviewId))"
+            + " and r.productId <= :lastProductId order by r.productId, r.reviewId")
+    List<ReviewEntity> findByProductIdRange(@Param("afterProductId") int afterProductId, @Param("afterReviewId") int afterReviewId,
+                                            @Param("lastProductId") int lastProductId, Pageable page);
+
+    @Transactional(readOnly = true)
+    @Query("select r.id as id, r.version as version from ReviewEntity r where r.productId = :productId order by r.id")
+    List<ReviewVersion> findVersionsByProductId(@Param("productId") int productId);
 }
@@ -0,0 +1,94 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.*;
+
+/**
+ * The number of reviews of a product and its most recent reviews, kept up to date in the same transaction as the
+ * reviews are created and deleted.
+ */
+@Entity
+@Table(name = "review_summaries")
+public class ReviewSummaryEntity {
+
+    @Id
+    private int productId;
+
+    @Version
+    private int version;
+
+    private int count;
+
+    private Instant latestReviewAt;
+
+    @Convert(converter = ReviewIdsConverter.class)
+    private List<Integer> recentReviewIds = new ArrayList<>();
+
+    public ReviewSummaryEntity() {
+    }
+
+    public ReviewSummaryEntity(int productId) {
+        this.productId = productId;
+    }
+
+    /**
+     * Counts a new review and keeps the ids of the most recent reviews, newest first.
+     */
+    public void addReview(int reviewId, Instant createdAt, int maxRecentReviews) {
+        count++;
+        if (latestReviewAt == null || createdAt.isAfter(latestReviewAt)) {
+            latestReviewAt = createdAt;
+        }
+        List<Integer> recent = new ArrayList<>(maxRecentReviews);
+        recent.add(reviewId);
+        for (Integer id : recentReviewIds) {
+            if (recent.size() >= maxRecentReviews) {
+                break;
+            }
+            recent.add(id);
+        }
+        recentReviewIds = recent;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public Instant getLatestReviewAt() {
+        return latestReviewAt;
+    }
+
+    public void setLatestReviewAt(Instant latestReviewAt) {
+        this.latestReviewAt = latestReviewAt;
+    }
+
+    public List<Integer> getRecentReviewIds() {
+        return recentReviewIds;
+    }
+
+    public void setRecentReviewIds(List<Integer> recentReviewIds) {
+        this.recentReviewIds = recentReviewIds;
+    }
+}
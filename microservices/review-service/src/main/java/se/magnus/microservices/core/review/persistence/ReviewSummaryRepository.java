@@ -0,0 +1,36 @@
+package se.magnus.microservices.core.review.persistence;
+
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ReviewSummaryRepository extends CrudRepository<ReviewSummaryEntity, Integer> {
+
+    @Transactional(readOnly = true)
+    Optional<ReviewSummaryEntity> findByProductId(int productId);
+
+    /**
+     * Creates an empty summary for the product unless it already has one, so that concurrent creates of the first
+     * reviews of a product all find a row to lock.
+     */
+    @Modifying
+    @Query(value = "insert ignore into review_summaries (product_id, version, count, recent_review_ids) values (:productId, 0, 0, '')", nativeQuery = true)
+    int insertIfAbsent(@Param("productId") int productId);
+
+    /**
+     * Reads the summary of a product and locks it until the end of the transaction, which serializes the updates of
+     * the summary of a product.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ReviewSummaryEntity s where s.productId = :productId")
+    Optional<ReviewSummaryEntity> findForUpdate(@Param("productId") int productId);
+
+    @Modifying
+    @Query("delete from ReviewSummaryEntity s where s.productId = :productId")
+    int deleteByProductId(@Param("productId") int productId);
+}
@@ -0,0 +1,11 @@
+package se.magnus.microservices.core.review.persistence;
+
+/**
+ * Projection of a review holding only its id and version, used to compute ETags without loading whole reviews.
+ */
+public interface ReviewVersion {
+
+    int getId();
+
+    int getVersion();
+}
@@ -10,6 +10,7 @@ import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.EventProcessingException;
+import se.magnus.util.metrics.ServiceMetrics;
 
 @Configuration
 public class MessageProcessorConfig {
@@ -18,14 +19,17 @@ public class MessageProcessorConfig {
 
     private final ReviewService reviewService;
 
+    private final ServiceMetrics metrics;
+
     @Autowired
-    public MessageProcessorConfig(ReviewService reviewService) {
+    public MessageProcessorConfig(ReviewService reviewService, ServiceMetrics metrics) {
         this.reviewService = reviewService;
+        this.metrics = metrics;
     }
 
     @Bean
     public Consumer<Event<Integer, Review>> messageProcessor() {
-        return event -> {
+        return event -> metrics.processEvent(event, () -> {
             LOG.info("Process message created at {}...", event.getEventCreatedAt());
 
             switch (event.getEventType()) {
@@ -49,6 +53,6 @@ public class MessageProcessorConfig {
             }
 
             LOG.info("Message processing done!");
-        };
+        });
     }
 }
@@ -18,7 +18,8 @@ public interface ReviewMapper {
 
     @Mappings({
             @Mapping(target = "id", ignore = true),
-            @Mapping(target = "version", ignore = true)
+            @Mapping(target = "version", ignore = true),
+            @Mapping(target = "createdAt", ignore = true)
     })
     ReviewEntity apiToEntity(Review api);
 
@@ -1,23 +1,33 @@
 package se.magnus.microservices.core.review.services;
 
-import static java.util.logging.Level.FINE;
-
+import java.time.ZoneOffset;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import se.magnus.api.core.review.Review;
 import se.magnus.api.core.review.ReviewService;
+import se.magnus.api.core.review.ReviewSummary;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.review.persistence.ReviewEntity;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.microservices.core.review.persistence.ReviewSummaryEntity;
+import se.magnus.microservices.core.review.persistence.ReviewSummaryRepository;
+import se.magnus.util.http.ETagUtil;
+import se.magnus.util.http.ETagged;
 import se.magnus.util.http.ServiceUtil;
+import se.magnus.util.reactor.ReactiveDiagnostics;
 
 @RestController
 public class ReviewServiceImpl implements ReviewService {
@@ -26,18 +36,42 @@ public class ReviewServiceImpl implements ReviewService {
 
     private final ReviewRepository repository;
 
+    private final ReviewSummaryRepository summaryRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxRecentReviews;
+
+    private final int rangePageSize;
+
     private final ReviewMapper mapper;
 
     private final ServiceUtil serviceUtil;
 
     private final Scheduler jdbcScheduler;
 
+    private final ReactiveDiagnostics diagnostics;
+
     @Autowired
-    public ReviewServiceImpl(@Qualifier("jdbcScheduler") Scheduler jdbcScheduler, ReviewRepository repository, ReviewMapper mapper, ServiceUtil serviceUtil) {
+    public ReviewServiceImpl(
+            @Qualifier("jdbcScheduler") Scheduler jdbcScheduler,
+            ReviewRepository repository,
+            ReviewSummaryRepository summaryRepository,
+            TransactionTemplate transactionTemplate,
+            @Value("${app.review.summary.recent-reviews:5}") int maxRecentReviews,
+            @Value("${app.review.range.page-size:500}") int rangePageSize,
+            ReviewMapper mapper,
+            ServiceUtil serviceUtil,
+            ReactiveDiagnostics diagnostics) {
         this.jdbcScheduler = jdbcScheduler;
         this.repository = repository;
+        this.summaryRepository = summaryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxRecentReviews = maxRecentReviews;
+        this.rangePageSize = rangePageSize;
         this.mapper = mapper;
         this.serviceUtil = serviceUtil;
+        this.diagnostics = diagnostics;
     }
 
     @Override
@@ -53,7 +87,16 @@ public class ReviewServiceImpl implements ReviewService {
     private Review internalCreateReview(Review body) {
         try {
             ReviewEntity entity = mapper.apiToEntity(body);
-            ReviewEntity newEntity = repository.save(entity);
+            ReviewEntity newEntity = transactionTemplate.execute(status -> {
+
+                // Lock the summary of the product first, a duplicate review rolls back the update of the summary
+                summaryRepository.insertIfAbsent(body.getProductId());
+                ReviewSummaryEntity summary = summaryRepository.findForUpdate(body.getProductId()).get();
+
+                ReviewEntity saved = repository.save(entity);
+                summary.addReview(saved.getReviewId(), saved.getCreatedAt(), maxRecentReviews);
+                return saved;
+            });
 
             LOG.debug("createReview: created a review entity: {}/{}", body.getProductId(), body.getReviewId());
             return mapper.entityToApi(newEntity);
@@ -72,20 +115,95 @@ public class ReviewServiceImpl implements ReviewService {
 
         LOG.info("Will get reviews for product with id={}", productId);
 
-        return Mono.fromCallable(() -> internalGetReviews(productId))
-                .flatMapMany(Flux::fromIterable)
-                .log(LOG.getName(), FINE)
+        return ETagUtil.ifNoneMatchMany(getReviewsETag(productId), () -> diagnostics.log("ReviewService.getReviews", Mono.fromCallable(() -> internalGetReviews(productId)))
+                .subscribeOn(jdbcScheduler));
+    }
+
+    /**
+     * Reads the reviews a page of app.review.range.page-size at a time, the next page when the previous one has been
+     * written, so the size of the range does not decide the memory used.
+     */
+    @Override
+    public Flux<Review> getReviewsInRange(int afterProductId, int lastProductId) {
+
+        if (afterProductId < 0 || lastProductId < afterProductId) {
+            throw new InvalidInputException("Invalid product id range: (" + afterProductId + ", " + lastProductId + "]");
+        }
+
+        LOG.debug("Will get reviews for products with ids in ({}, {}]", afterProductId, lastProductId);
+
+        return diagnostics.log("ReviewService.getReviewsInRange", getReviewsInRangePage(afterProductId, Integer.MAX_VALUE, lastProductId)
+                .expand(page -> page.size() < rangePageSize ? Mono.empty() : getReviewsInRangePage(
+                        page.get(page.size() - 1).getProductId(), page.get(page.size() - 1).getReviewId(), lastProductId))
+                .concatMapIterable(page -> page, 1));
+    }
+
+    private Mono<List<Review>> getReviewsInRangePage(int afterProductId, int afterReviewId, int lastProductId) {
+        return Mono.fromCallable(() -> internalGetReviewsInRange(afterProductId, afterReviewId, lastProductId))
+                .subscribeOn(jdbcScheduler);
+    }
+
+    @Override
+    public Mono<ReviewSummary> getReviewSummary(int productId) {
+
+        if (productId < 1) {
+            throw new InvalidInputException("Invalid productId: " + productId);
+        }
+
+        return Mono.fromCallable(() -> summaryRepository.findByProductId(productId)
+                        .map(this::toReviewSummary)
+                        .orElse(ReviewSummary.empty(productId)))
                 .subscribeOn(jdbcScheduler);
     }
 
-    private List<Review> internalGetReviews(int productId) {
+    private ReviewSummary toReviewSummary(ReviewSummaryEntity entity) {
+        return new ReviewSummary(
+                entity.getProductId(),
+                entity.getCount(),
+                entity.getLatestReviewAt() == null ? null : entity.getLatestReviewAt().atZone(ZoneOffset.UTC),
+                entity.getRecentReviewIds());
+    }
+
+    private Mono<String> getReviewsETag(int productId) {
+        return Mono.fromCallable(() -> internalGetReviewsETag(productId))
+                .subscribeOn(jdbcScheduler);
+    }
+
+    /**
+     * Only reads the versions of the reviews, used for conditional requests.
+     */
+    private String internalGetReviewsETag(int productId) {
+        List<String> versions = repository.findVersionsByProductId(productId).stream()
+                .map(v -> v.getId() + ":" + v.getVersion())
+                .collect(Collectors.toList());
+        return ETagUtil.strongETag(versions);
+    }
+
+    private ETagged<List<Review>> internalGetReviews(int productId) {
 
         List<ReviewEntity> entityList = repository.findByProductId(productId);
         List<Review> list = mapper.entityListToApiList(entityList);
-        list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+        if (serviceUtil.isServiceAddressEnabled()) {
+            list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+        }
 
         LOG.debug("Response size: {}", list.size());
 
+        // The same ETag as internalGetReviewsETag, derived from the loaded reviews
+        List<String> versions = entityList.stream()
+                .sorted(Comparator.comparingInt(ReviewEntity::getId))
+                .map(e -> e.getId() + ":" + e.getVersion())
+                .collect(Collectors.toList());
+        return ETagged.of(list, ETagUtil.strongETag(versions));
+    }
+
+    private List<Review> internalGetReviewsInRange(int afterProductId, int afterReviewId, int lastProductId) {
+
+        List<Review> list = mapper.entityListToApiList(
+                repository.findByProductIdRange(afterProductId, afterReviewId, lastProductId, PageRequest.of(0, rangePageSize)));
+        if (serviceUtil.isServiceAddressEnabled()) {
+            list.forEach(e -> e.setServiceAddress(serviceUtil.getServiceAddress()));
+        }
         return list;
     }
 
@@ -103,6 +221,9 @@ public class ReviewServiceImpl implements ReviewService {
 
         LOG.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
 
-        repository.deleteAll(repository.findByProductId(productId));
+        transactionTemplate.executeWithoutResult(status -> {
+            repository.deleteAll(repository.findByProductId(productId));
+            summaryRepository.deleteByProductId(productId);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package se.magnus.microservices.core.review;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.persistence.ReviewRepository;
+
+/**
+ * Inserts reviews with the JDBC batching settings of review.yml.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class BatchInsertTests extends MySqlTestBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchInsertTests.class);
+
+    @Autowired
+    private ReviewRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setupDb() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void batchInserts() {
+
+        int reviewCount = 1000;
+
+        // Batches of one, i.e. one insert statement per review
+        long unbatchedStart = System.nanoTime();
+        long unbatchedStatements = insertReviews(1, reviewCount, 1);
+        long unbatchedMillis = (System.nanoTime() - unbatchedStart) / 1_000_000;
+
+        long batchedStart = System.nanoTime();
+        long batchedStatements = insertReviews(2, reviewCount, null);
+        long batchedMillis = (System.nanoTime() - batchedStart) / 1_000_000;
+
+        LOG.info("Inserted {} reviews: {} statements in {} ms unbatched, {} statements in {} ms batched",
+                reviewCount, unbatchedStatements, unbatchedMillis, batchedStatements, batchedMillis);
+
+        // The ids are allocated in blocks, not one round trip per review
+        assertTrue(unbatchedStatements < reviewCount + reviewCount / 10, "Statements: " + unbatchedStatements);
+        assertTrue(batchedStatements * 10 < unbatchedStatements, "Statements: " + batchedStatements);
+        assertEquals(2 * reviewCount, repository.count());
+    }
+
+    /**
+     * Inserts reviews in one transaction and returns the number of JDBC statements prepared, with the configured batch
+     * size if the batch size is null.
+     */
+    private long insertReviews(int productId, int reviewCount, Integer batchSize) {
+        List<ReviewEntity> entities = new ArrayList<>();
+        for (int i = 0; i < reviewCount; i++) {
+            entities.add(new ReviewEntity(productId, i, "a", "s", "c"));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (batchSize != null) {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            }
+            repository.saveAll(entities);
+        });
+        return statistics.getPrepareStatementCount();
+    }
+}
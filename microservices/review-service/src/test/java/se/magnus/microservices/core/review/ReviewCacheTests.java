@@ -0,0 +1,63 @@
+package se.magnus.microservices.core.review;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+
+import javax.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Transactional;
+import se.magnus.microservices.core.review.persistence.ReviewEntity;
+import se.magnus.microservices.core.review.persistence.ReviewRepository;
+
+/**
+ * Reads reviews with the second-level and query caches of the review_cache profile.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=update",
+        "spring.cloud.config.enabled=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=org.ehcache.jsr107.EhcacheCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.uri=ehcache.xml"})
+@Transactional(propagation = NOT_SUPPORTED)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ReviewCacheTests extends MySqlTestBase {
+
+    @Autowired
+    private ReviewRepository repository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setupDb() {
+        repository.deleteAll();
+        repository.save(new ReviewEntity(1, 2, "a", "s", "c"));
+    }
+
+    @Test
+    void reviewsByProductIdAreCachedUntilWritten() {
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertThat(repository.findByProductId(1), hasSize(1));
+        assertThat(repository.findByProductId(1), hasSize(1));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+
+        // Writing to the reviews table invalidates the cached result
+        repository.save(new ReviewEntity(1, 3, "a", "s", "c"));
+        assertThat(repository.findByProductId(1), hasSize(2));
+        assertEquals(1, statistics.getQueryCacheHitCount());
+    }
+}
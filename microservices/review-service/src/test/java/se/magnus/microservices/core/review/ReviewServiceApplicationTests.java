@@ -4,9 +4,11 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static se.magnus.api.event.Event.Type.CREATE;
 import static se.magnus.api.event.Event.Type.DELETE;
 
+import java.util.List;
 import java.util.function.Consumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,12 +21,14 @@ import se.magnus.api.core.review.Review;
 import se.magnus.api.event.Event;
 import se.magnus.api.exceptions.InvalidInputException;
 import se.magnus.microservices.core.review.persistence.ReviewRepository;
+import se.magnus.microservices.core.review.persistence.ReviewSummaryRepository;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
 		"spring.cloud.stream.defaultBinder=rabbit",
 		"logging.level.se.magnus=DEBUG",
 		"eureka.client.enabled=false",
 		"spring.jpa.hibernate.ddl-auto=update",
+		"app.review.range.page-size=2",
 		"spring.cloud.config.enabled=false"})
 class ReviewServiceApplicationTests extends MySqlTestBase {
 
@@ -34,6 +38,9 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 	@Autowired
 	private ReviewRepository repository;
 
+	@Autowired
+	private ReviewSummaryRepository summaryRepository;
+
 	@Autowired
 	@Qualifier("messageProcessor")
 	private Consumer<Event<Integer, Review>> messageProcessor;
@@ -41,6 +48,7 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 	@BeforeEach
 	void setupDb() {
 		repository.deleteAll();
+		summaryRepository.deleteAll();
 	}
 
 	@Test
@@ -98,6 +106,59 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 		sendDeleteReviewEvent(productId);
 	}
 
+	@Test
+	void getReviewSummary() {
+
+		int productId = 1;
+
+		getAndVerifyReviewSummary(productId)
+				.jsonPath("$.count").isEqualTo(0)
+				.jsonPath("$.recentReviewIds.length()").isEqualTo(0);
+
+		for (int reviewId = 1; reviewId <= 7; reviewId++) {
+			sendCreateReviewEvent(productId, reviewId);
+		}
+
+		// The summary must not count a review that failed to be created
+		assertThrows(InvalidInputException.class, () -> sendCreateReviewEvent(productId, 1));
+
+		getAndVerifyReviewSummary(productId)
+				.jsonPath("$.productId").isEqualTo(productId)
+				.jsonPath("$.count").isEqualTo(7)
+				.jsonPath("$.latestReviewDate").isNotEmpty()
+				.jsonPath("$.recentReviewIds.length()").isEqualTo(5)
+				.jsonPath("$.recentReviewIds[0]").isEqualTo(7)
+				.jsonPath("$.recentReviewIds[4]").isEqualTo(3);
+
+		sendDeleteReviewEvent(productId);
+
+		getAndVerifyReviewSummary(productId)
+				.jsonPath("$.count").isEqualTo(0);
+	}
+
+	@Test
+	void getReviewsInRange() {
+
+		sendCreateReviewEvent(2, 2);
+		sendCreateReviewEvent(1, 1);
+		sendCreateReviewEvent(2, 1);
+		sendCreateReviewEvent(3, 1);
+
+		List<Review> reviews = client.get()
+				.uri("/review/range?afterProductId=1&lastProductId=3")
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.returnResult(Review.class)
+				.getResponseBody().collectList().block();
+
+		assertEquals(3, reviews.size());
+		assertEquals(2, reviews.get(0).getProductId());
+		assertEquals(1, reviews.get(0).getReviewId());
+		assertEquals(2, reviews.get(1).getReviewId());
+		assertEquals(3, reviews.get(2).getProductId());
+	}
+
 	@Test
 	void getReviewsMissingParameter() {
 
@@ -145,6 +206,16 @@ class ReviewServiceApplicationTests extends MySqlTestBase {
 				.expectBody();
 	}
 
+	private WebTestClient.BodyContentSpec getAndVerifyReviewSummary(int productId) {
+		return client.get()
+				.uri("/review/summary?productId=" + productId)
+				.accept(APPLICATION_JSON)
+				.exchange()
+				.expectStatus().isEqualTo(OK)
+				.expectHeader().contentType(APPLICATION_JSON)
+				.expectBody();
+	}
+
 	private void sendCreateReviewEvent(int productId, int reviewId) {
 		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
 		Event<Integer, Review> event = new Event(CREATE, productId, review);
@@ -0,0 +1,230 @@
+package se.magnus.springcloud.gateway;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import reactor.core.publisher.Mono;
+
+/**
+ * A rate limiter based on token buckets kept in memory, one bucket per route and key, e.g. per client.
+ *
+ * The buckets are kept in a Caffeine cache, and each bucket is guarded by its own lock, so requests from different
+ * clients never contend. At most maxBuckets buckets are kept, beyond that Caffeine evicts the buckets that are least
+ * likely to be used again. An evicted bucket has in most cases been idle long enough to be full again anyway.
+ *
+ * With clusterAware set, the configured rates are divided by the number of gateway instances currently registered in
+ * the discovery service, i.e. each instance enforces its share of a cluster wide limit. This is an approximation that
+ * assumes the load balancer in front of the gateways spreads the requests of a client evenly.
+ *
+ * Usage in a route definition:
+ * <pre>
+ * filters:
+ * - name: RequestRateLimiter
+ *   args:
+ *     in-memory-rate-limiter.replenishRate: 10
+ *     in-memory-rate-limiter.burstCapacity: 20
+ * </pre>
+ */
+public class InMemoryRateLimiter extends AbstractRateLimiter<InMemoryRateLimiter.Config> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryRateLimiter.class);
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "in-memory-rate-limiter";
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Cache<String, TokenBucket> buckets;
+    private final IntSupplier clusterSize;
+    private final LongSupplier nanoClock;
+    private final MeterRegistry registry;
+    private final Map<String, Counter> rejectedCounters = new ConcurrentHashMap<>();
+
+    public InMemoryRateLimiter(ConfigurationService configurationService, MeterRegistry registry,
+                               IntSupplier clusterSize, int maxBuckets) {
+        this(configurationService, registry, clusterSize, maxBuckets, System::nanoTime);
+    }
+
+    InMemoryRateLimiter(ConfigurationService configurationService, MeterRegistry registry, IntSupplier clusterSize,
+                        int maxBuckets, LongSupplier nanoClock) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.registry = registry;
+        this.clusterSize = clusterSize;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder().maximumSize(maxBuckets).build();
+
+        Gauge.builder("gateway.ratelimiter.buckets", this, InMemoryRateLimiter::getBucketCount)
+                .description("Number of token buckets currently held in memory")
+                .register(registry);
+        Gauge.builder("gateway.ratelimiter.bucket.occupancy", this, InMemoryRateLimiter::getAverageOccupancy)
+                .description("Average share of the burst capacity that is currently used, over all buckets")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().get(routeId);
+        if (config == null) {
+            throw new IllegalArgumentException("No configuration found for route " + routeId);
+        }
+
+        int divisor = config.isClusterAware() ? Math.max(1, clusterSize.getAsInt()) : 1;
+        double replenishRate = config.getReplenishRate() / (double) divisor;
+        long burstCapacity = Math.max(config.getRequestedTokens(), config.getBurstCapacity() / divisor);
+
+        String key = routeId + "." + id;
+        long now = nanoClock.getAsLong();
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(burstCapacity, now));
+        long remaining = bucket.tryConsume(config.getRequestedTokens(), replenishRate, burstCapacity, now);
+        boolean allowed = remaining >= 0;
+
+        if (!allowed) {
+            LOG.debug("Rate limit exceeded for key: {}", key);
+            getRejectedCounter(routeId).increment();
+        }
+
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (config.isIncludeHeaders()) {
+            headers.put(REMAINING_HEADER, String.valueOf(Math.max(0, remaining)));
+            headers.put(REPLENISH_RATE_HEADER, String.valueOf(replenishRate));
+            headers.put(BURST_CAPACITY_HEADER, String.valueOf(burstCapacity));
+        }
+        return Mono.just(new Response(allowed, headers));
+    }
+
+    long getBucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    double getAverageOccupancy() {
+        long now = nanoClock.getAsLong();
+        double sum = 0;
+        int count = 0;
+        for (TokenBucket bucket : buckets.asMap().values()) {
+            sum += bucket.getOccupancy(now);
+            count++;
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+
+    private Counter getRejectedCounter(String routeId) {
+        return rejectedCounters.computeIfAbsent(routeId, route -> Counter.builder("gateway.ratelimiter.rejected")
+                .description("Number of requests rejected by the rate limiter")
+                .tag("route", route)
+                .register(registry));
+    }
+
+    private static class TokenBucket {
+
+        private double tokens;
+        private double replenishRate;
+        private long capacity;
+        private long lastRefill;
+
+        TokenBucket(long capacity, long now) {
+            this.tokens = capacity;
+            this.capacity = capacity;
+            this.lastRefill = now;
+        }
+
+        /**
+         * Returns the number of tokens left after taking the requested ones, or -1 if there were not enough tokens.
+         */
+        synchronized long tryConsume(int requestedTokens, double replenishRate, long capacity, long now) {
+            // The rates may change between calls, e.g. when the number of gateway instances changes
+            this.replenishRate = replenishRate;
+            this.capacity = capacity;
+            refill(now);
+
+            if (tokens < requestedTokens) {
+                return -1;
+            }
+            tokens -= requestedTokens;
+            return (long) tokens;
+        }
+
+        synchronized double getOccupancy(long now) {
+            double available = Math.min(capacity, tokens + (now - lastRefill) * replenishRate / NANOS_PER_SECOND);
+            return capacity == 0 ? 0 : 1 - available / capacity;
+        }
+
+        private void refill(long now) {
+            if (now > lastRefill) {
+                tokens = Math.min(capacity, tokens + (now - lastRefill) * replenishRate / NANOS_PER_SECOND);
+                lastRefill = now;
+            }
+        }
+    }
+
+    public static class Config {
+
+        private int replenishRate;
+
+        private long burstCapacity = 1;
+
+        private int requestedTokens = 1;
+
+        private boolean clusterAware = false;
+
+        private boolean includeHeaders = true;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public long getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(long burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+
+        public boolean isClusterAware() {
+            return clusterAware;
+        }
+
+        public Config setClusterAware(boolean clusterAware) {
+            this.clusterAware = clusterAware;
+            return this;
+        }
+
+        public boolean isIncludeHeaders() {
+            return includeHeaders;
+        }
+
+        public Config setIncludeHeaders(boolean includeHeaders) {
+            this.includeHeaders = includeHeaders;
+            return this;
+        }
+    }
+}
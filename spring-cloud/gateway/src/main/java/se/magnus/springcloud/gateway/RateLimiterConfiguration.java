@@ -0,0 +1,110 @@
+package se.magnus.springcloud.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.Principal;
+import java.util.function.IntSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+@Configuration
+public class RateLimiterConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiterConfiguration.class);
+
+    private static final String CLIENT_ID_CLAIM = "client_id";
+
+    // How long the number of gateway instances, as seen by the discovery client, is cached
+    private static final long CLUSTER_SIZE_REFRESH_MILLIS = 10_000;
+
+    @Bean
+    InMemoryRateLimiter inMemoryRateLimiter(
+            ConfigurationService configurationService,
+            MeterRegistry registry,
+            ObjectProvider<DiscoveryClient> discoveryClient,
+            @Value("${spring.application.name:gateway}") String applicationName,
+            @Value("${app.rate-limiter.max-buckets:100000}") int maxBuckets) {
+
+        return new InMemoryRateLimiter(configurationService, registry,
+                new ClusterSize(discoveryClient, applicationName), maxBuckets);
+    }
+
+    /**
+     * Resolves the client a request is made on behalf of, i.e. the subject of the JWT or, if missing, its client_id.
+     * Requests without an authenticated principal resolve to an empty key and are denied by the rate limiter filter.
+     */
+    @Bean
+    KeyResolver clientKeyResolver() {
+        return exchange -> exchange.getPrincipal().map(RateLimiterConfiguration::getClientKey);
+    }
+
+    private static String getClientKey(Principal principal) {
+        if (principal instanceof JwtAuthenticationToken) {
+            Jwt jwt = ((JwtAuthenticationToken) principal).getToken();
+            if (jwt.getSubject() != null) {
+                return jwt.getSubject();
+            }
+            String clientId = jwt.getClaimAsString(CLIENT_ID_CLAIM);
+            if (clientId != null) {
+                return clientId;
+            }
+        }
+        return principal.getName();
+    }
+
+    /**
+     * Number of gateway instances registered in the discovery service, at least one.
+     * Reading the discovery client is cheap since it serves a locally cached registry, but it is still only done once
+     * per refresh interval and never on more than one thread at a time.
+     */
+    private static class ClusterSize implements IntSupplier {
+
+        private final ObjectProvider<DiscoveryClient> discoveryClient;
+        private final String applicationName;
+
+        private volatile int size = 1;
+        private volatile long refreshedAt = 0;
+
+        ClusterSize(ObjectProvider<DiscoveryClient> discoveryClient, String applicationName) {
+            this.discoveryClient = discoveryClient;
+            this.applicationName = applicationName;
+        }
+
+        @Override
+        public int getAsInt() {
+            long now = System.currentTimeMillis();
+            if (now - refreshedAt > CLUSTER_SIZE_REFRESH_MILLIS) {
+                synchronized (this) {
+                    if (now - refreshedAt > CLUSTER_SIZE_REFRESH_MILLIS) {
+                        size = lookupSize();
+                        refreshedAt = now;
+                    }
+                }
+            }
+            return size;
+        }
+
+        private int lookupSize() {
+            DiscoveryClient client = discoveryClient.getIfAvailable();
+            if (client == null) {
+                return 1;
+            }
+            try {
+                int instances = client.getInstances(applicationName).size();
+                LOG.debug("Found {} instances of {} in the discovery service", instances, applicationName);
+                return Math.max(1, instances);
+            } catch (RuntimeException ex) {
+                LOG.warn("Failed to look up instances of {}, keeps using {}: {}", applicationName, size, ex.toString());
+                return size;
+            }
+        }
+    }
+}
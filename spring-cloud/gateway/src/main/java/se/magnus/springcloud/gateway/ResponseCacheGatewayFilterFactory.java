@@ -0,0 +1,366 @@
+package se.magnus.springcloud.gateway;
+
+import static org.springframework.cloud.gateway.filter.NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches successful GET responses in memory, per route.
+ *
+ * The cache key is built from the request path and query together with the scopes of the caller, never the token
+ * itself, so all callers holding the same scopes share entries. The Accept-Encoding header of the request is part of
+ * the key as well, so a compressed response is only served to callers that accept it. Cache-Control directives from
+ * both the client and the upstream service are honoured, and a cached ETag is used to answer conditional requests
+ * with 304 at the edge.
+ *
+ * Streamed responses, i.e. with a streaming media type or without a Content-Length, are passed through as they are
+ * written, since they would have to be collected in memory to be cached.
+ *
+ * Other methods than GET are never cached. A successful one, e.g. a POST or DELETE, evicts all entries for its path
+ * and the paths below it, whatever the scopes, query and Accept-Encoding they were cached for, so a stale response is
+ * not served after a change through this gateway.
+ *
+ * Usage in a route definition:
+ * <pre>
+ * filters:
+ * - name: ResponseCache
+ *   args:
+ *     timeToLive: 30s
+ *     maxSize: 1000
+ * </pre>
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCacheGatewayFilterFactory.class);
+
+    private static final String ANONYMOUS_SCOPE = "anonymous";
+    private static final String SCOPE_PREFIX = "SCOPE_";
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private static final List<MediaType> STREAMING_MEDIA_TYPES = Arrays.asList(
+            MediaType.APPLICATION_NDJSON, MediaType.TEXT_EVENT_STREAM);
+
+    private static final List<String> UNCACHEABLE_HEADERS = Arrays.asList(
+            HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, HttpHeaders.DATE, HttpHeaders.SET_COOKIE,
+            HttpHeaders.TRANSFER_ENCODING, CACHE_STATUS_HEADER);
+
+    public ResponseCacheGatewayFilterFactory() {
+        super(Config.class);
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return Arrays.asList("timeToLive", "maxSize");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        ResponseCache cache = new ResponseCache(config.getMaxSize());
+
+        // Must run before the NettyWriteResponseFilter to be able to decorate the response it writes to
+        return new OrderedGatewayFilter((exchange, chain) -> {
+
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET) {
+                String path = request.getPath().value();
+                exchange.getResponse().beforeCommit(() -> {
+                    HttpStatus status = exchange.getResponse().getStatusCode();
+                    if (status != null && status.is2xxSuccessful()) {
+                        LOG.debug("Evicts cached responses for path: {}, after a successful {}", path, request.getMethod());
+                        cache.evict(path);
+                    }
+                    return Mono.empty();
+                });
+                return chain.filter(exchange);
+            }
+
+            Map<String, String> requestDirectives = parseCacheControl(request.getHeaders().getCacheControl());
+            if (requestDirectives.containsKey("no-store")) {
+                return chain.filter(exchange);
+            }
+
+            return getCacheKey(exchange).flatMap(key -> {
+
+                CachedResponse cached = requestDirectives.containsKey("no-cache") ? null : cache.get(key);
+                if (cached != null) {
+                    LOG.debug("Cache hit for key: {}", key);
+                    return writeCachedResponse(exchange, cached);
+                }
+
+                LOG.debug("Cache miss for key: {}", key);
+                return chain.filter(exchange.mutate().response(new CachingResponse(exchange.getResponse(), key, request.getPath().value(), cache, config)).build());
+            });
+
+        }, WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private Mono<String> getCacheKey(ServerWebExchange exchange) {
+        ServerHttpRequest request = exchange.getRequest();
+        String rawQuery = request.getURI().getRawQuery();
+        String resource = request.getPath().value() + (rawQuery == null ? "" : "?" + rawQuery);
+        String acceptEncoding = String.join(",", request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT_ENCODING));
+
+        return exchange.getPrincipal()
+                .map(this::getScopes)
+                .defaultIfEmpty(ANONYMOUS_SCOPE)
+                .map(scopes -> scopes + " " + acceptEncoding + " " + resource);
+    }
+
+    private String getScopes(Principal principal) {
+        if (!(principal instanceof Authentication)) {
+            return ANONYMOUS_SCOPE;
+        }
+        return ((Authentication) principal).getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith(SCOPE_PREFIX))
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    private Mono<Void> writeCachedResponse(ServerWebExchange exchange, CachedResponse cached) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.getHeaders().putAll(cached.getHeaders());
+        response.getHeaders().set(HttpHeaders.AGE, String.valueOf(cached.getAgeInSeconds()));
+        response.getHeaders().set(CACHE_STATUS_HEADER, "HIT");
+
+        String eTag = cached.getHeaders().getETag();
+        if (eTag != null && isMatchingETag(exchange.getRequest().getHeaders().getIfNoneMatch(), eTag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+
+        response.setStatusCode(HttpStatus.OK);
+        return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(cached.getBody())));
+    }
+
+    private static boolean isMatchingETag(List<String> ifNoneMatch, String eTag) {
+        String strongETag = eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+        for (String clientETag : ifNoneMatch) {
+            if (clientETag.equals("*") || (clientETag.startsWith("W/") ? clientETag.substring(2) : clientETag).equals(strongETag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Map<String, String> parseCacheControl(String cacheControl) {
+        if (cacheControl == null || cacheControl.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> directives = new LinkedHashMap<>();
+        for (String directive : cacheControl.split(",")) {
+            String[] nameAndValue = directive.trim().split("=", 2);
+            directives.put(nameAndValue[0].trim().toLowerCase(), nameAndValue.length > 1 ? nameAndValue[1].trim() : "");
+        }
+        return directives;
+    }
+
+    private static boolean isStreamed(HttpHeaders headers) {
+        MediaType contentType = headers.getContentType();
+        if (contentType != null && STREAMING_MEDIA_TYPES.stream().anyMatch(contentType::isCompatibleWith)) {
+            return true;
+        }
+        return headers.getContentLength() < 0;
+    }
+
+    /**
+     * Returns for how long the response may be cached, or Duration.ZERO if it must not be cached at all.
+     */
+    private static Duration getTimeToLive(HttpHeaders headers, Duration maxTimeToLive) {
+        Map<String, String> directives = parseCacheControl(headers.getCacheControl());
+
+        if (directives.containsKey("no-store") || directives.containsKey("no-cache") || directives.containsKey("private")) {
+            return Duration.ZERO;
+        }
+
+        // We are a shared cache, so s-maxage takes precedence over max-age
+        String maxAge = directives.containsKey("s-maxage") ? directives.get("s-maxage") : directives.get("max-age");
+        if (maxAge == null) {
+            return maxTimeToLive;
+        }
+
+        try {
+            Duration upstreamTimeToLive = Duration.ofSeconds(Long.parseLong(maxAge));
+            return upstreamTimeToLive.compareTo(maxTimeToLive) < 0 ? upstreamTimeToLive : maxTimeToLive;
+        } catch (NumberFormatException nfe) {
+            LOG.debug("Ignoring malformed max-age: {}", maxAge);
+            return maxTimeToLive;
+        }
+    }
+
+    private static class CachingResponse extends ServerHttpResponseDecorator {
+
+        private final String key;
+        private final String path;
+        private final ResponseCache cache;
+        private final Config config;
+
+        CachingResponse(ServerHttpResponse delegate, String key, String path, ResponseCache cache, Config config) {
+            super(delegate);
+            this.key = key;
+            this.path = path;
+            this.cache = cache;
+            this.config = config;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+
+            Duration timeToLive = getTimeToLive(getHeaders(), config.getTimeToLive());
+            if (getStatusCode() != HttpStatus.OK || timeToLive.isZero() || timeToLive.isNegative() || isStreamed(getHeaders())) {
+                return super.writeWith(body);
+            }
+
+            getHeaders().set(CACHE_STATUS_HEADER, "MISS");
+            return super.writeWith(DataBufferUtils.join(Flux.from(body)).map(joined -> {
+                byte[] content = new byte[joined.readableByteCount()];
+                joined.read(content);
+                DataBufferUtils.release(joined);
+
+                HttpHeaders headers = new HttpHeaders();
+                headers.putAll(getHeaders());
+                UNCACHEABLE_HEADERS.forEach(headers::remove);
+
+                cache.put(key, new CachedResponse(path, headers, content, timeToLive));
+
+                return bufferFactory().wrap(content);
+            }));
+        }
+    }
+
+    private static class ResponseCache {
+
+        private final Cache<String, CachedResponse> entries;
+
+        ResponseCache(int maxSize) {
+            this.entries = Caffeine.newBuilder()
+                    .maximumSize(maxSize)
+                    .expireAfter(new Expiry<String, CachedResponse>() {
+                        @Override
+                        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                            return response.getTimeToLive().toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+                            return response.getTimeToLive().toNanos();
+                        }
+
+                        @Override
+                        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+                            return currentDuration;
+                        }
+                    })
+                    .build();
+        }
+
+        CachedResponse get(String key) {
+            return entries.getIfPresent(key);
+        }
+
+        void put(String key, CachedResponse response) {
+            entries.put(key, response);
+        }
+
+        /**
+         * Removes the entries for the path and the paths below it, for all scopes, queries and encodings.
+         */
+        void evict(String path) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            entries.asMap().values().removeIf(response -> response.getPath().equals(path) || response.getPath().startsWith(prefix));
+        }
+    }
+
+    private static class CachedResponse {
+
+        private final String path;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final Duration timeToLive;
+        private final long createdAt;
+
+        CachedResponse(String path, HttpHeaders headers, byte[] body, Duration timeToLive) {
+            this.path = path;
+            this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+            this.body = body;
+            this.timeToLive = timeToLive;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        long getAgeInSeconds() {
+            return (System.currentTimeMillis() - createdAt) / 1000;
+        }
+    }
+
+    public static class Config {
+
+        private Duration timeToLive = Duration.ofSeconds(30);
+
+        private int maxSize = 1000;
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package se.magnus.springcloud.gateway;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import se.magnus.util.security.CachingReactiveJwtDecoder;
 
 @SpringBootTest(
 		webEnvironment = RANDOM_PORT,
@@ -13,8 +17,16 @@ import org.springframework.boot.test.context.SpringBootTest;
 				"spring.cloud.config.enabled=false"})
 class GatewayApplicationTests {
 
+	@Autowired
+	private ReactiveJwtDecoder jwtDecoder;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	void usesSharedJwtDecoder() {
+		assertTrue(jwtDecoder instanceof CachingReactiveJwtDecoder);
+	}
+
 }
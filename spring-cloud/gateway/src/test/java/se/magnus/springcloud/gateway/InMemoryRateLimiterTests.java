@@ -0,0 +1,93 @@
+package se.magnus.springcloud.gateway;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+
+class InMemoryRateLimiterTests {
+
+    private static final String ROUTE_ID = "product-composite";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private long now;
+    private int clusterSize;
+
+    private InMemoryRateLimiter rateLimiter;
+    private InMemoryRateLimiter.Config config;
+
+    @BeforeEach
+    void setUp() {
+        registry.clear();
+        now = 0;
+        clusterSize = 1;
+
+        rateLimiter = new InMemoryRateLimiter(null, registry, () -> clusterSize, 100, () -> now);
+        config = new InMemoryRateLimiter.Config().setReplenishRate(10).setBurstCapacity(20);
+        rateLimiter.getConfig().put(ROUTE_ID, config);
+    }
+
+    @Test
+    void allowsBurstThenRejects() {
+        for (int i = 0; i < 20; i++) {
+            assertTrue(isAllowed("client-1"), "Request " + i + " should be allowed");
+        }
+        assertFalse(isAllowed("client-1"));
+
+        assertEquals(1.0, registry.get("gateway.ratelimiter.rejected").tag("route", ROUTE_ID).counter().count());
+        assertEquals(1.0, registry.get("gateway.ratelimiter.bucket.occupancy").gauge().value());
+    }
+
+    @Test
+    void replenishesOverTime() {
+        for (int i = 0; i < 20; i++) {
+            isAllowed("client-1");
+        }
+        assertFalse(isAllowed("client-1"));
+
+        // 10 tokens per second, i.e. one token every 100 ms
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        assertTrue(isAllowed("client-1"));
+        assertFalse(isAllowed("client-1"));
+    }
+
+    @Test
+    void bucketsArePerClient() {
+        for (int i = 0; i < 20; i++) {
+            isAllowed("client-1");
+        }
+        assertFalse(isAllowed("client-1"));
+        assertTrue(isAllowed("client-2"));
+
+        assertEquals(2.0, registry.get("gateway.ratelimiter.buckets").gauge().value());
+    }
+
+    @Test
+    void sharesLimitOverCluster() {
+        config.setClusterAware(true);
+        clusterSize = 2;
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(isAllowed("client-1"), "Request " + i + " should be allowed");
+        }
+        assertFalse(isAllowed("client-1"));
+    }
+
+    @Test
+    void includesHeaders() {
+        RateLimiter.Response response = rateLimiter.isAllowed(ROUTE_ID, "client-1").block();
+
+        assertEquals("19", response.getHeaders().get(InMemoryRateLimiter.REMAINING_HEADER));
+        assertEquals("20", response.getHeaders().get(InMemoryRateLimiter.BURST_CAPACITY_HEADER));
+    }
+
+    private boolean isAllowed(String client) {
+        return rateLimiter.isAllowed(ROUTE_ID, client).block().isAllowed();
+    }
+}
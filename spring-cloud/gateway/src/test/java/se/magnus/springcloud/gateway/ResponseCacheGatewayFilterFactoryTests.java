@@ -0,0 +1,203 @@
+package se.magnus.springcloud.gateway;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
+import static org.springframework.http.HttpStatus.OK;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+class ResponseCacheGatewayFilterFactoryTests {
+
+    private static final String BODY = "{\"productId\":1}";
+    private static final String ETAG = "\"abc\"";
+
+    private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+    private HttpStatus upstreamStatus;
+
+    private String upstreamCacheControl;
+
+    private MediaType upstreamContentType;
+
+    private boolean upstreamContentLength;
+
+    private GatewayFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        upstreamCalls.set(0);
+        upstreamStatus = OK;
+        upstreamCacheControl = "s-maxage=30";
+        upstreamContentType = MediaType.APPLICATION_JSON;
+        upstreamContentLength = true;
+
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setTimeToLive(Duration.ofMinutes(1));
+        config.setMaxSize(10);
+        filter = new ResponseCacheGatewayFilterFactory().apply(config);
+    }
+
+    @Test
+    void cachesSuccessfulGet() {
+        MockServerWebExchange first = get("/product-composite/1");
+        MockServerWebExchange second = get("/product-composite/1");
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(BODY, first.getResponse().getBodyAsString().block());
+        assertEquals(BODY, second.getResponse().getBodyAsString().block());
+        assertEquals("HIT", second.getResponse().getHeaders().getFirst("X-Cache"));
+    }
+
+    @Test
+    void keyIncludesPathAndQuery() {
+        get("/product-composite/1");
+        get("/product-composite/2");
+        get("/product-composite/2?delay=1");
+
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    void keyIncludesAcceptEncoding() {
+        get("/product-composite/1");
+        exchange(MockServerHttpRequest.get("/product-composite/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        exchange(MockServerHttpRequest.get("/product-composite/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void answersConditionalRequestFromCache() {
+        get("/product-composite/1");
+        MockServerWebExchange conditional = exchange(MockServerHttpRequest.get("/product-composite/1").ifNoneMatch(ETAG));
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(NOT_MODIFIED, conditional.getResponse().getStatusCode());
+    }
+
+    @Test
+    void honoursUpstreamNoStore() {
+        upstreamCacheControl = "no-cache, no-store, max-age=0, must-revalidate";
+        get("/product-composite/1");
+        get("/product-composite/1");
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void honoursRequestNoCache() {
+        get("/product-composite/1");
+        exchange(MockServerHttpRequest.get("/product-composite/1").header(HttpHeaders.CACHE_CONTROL, "no-cache"));
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void doesNotCacheStreamingMediaTypes() {
+        upstreamContentType = MediaType.APPLICATION_NDJSON;
+        MockServerWebExchange first = get("/product-composite/export");
+        get("/product-composite/export");
+
+        assertEquals(2, upstreamCalls.get());
+        assertEquals(BODY, first.getResponse().getBodyAsString().block());
+        assertNull(first.getResponse().getHeaders().getFirst("X-Cache"));
+    }
+
+    @Test
+    void doesNotCacheResponsesWithoutContentLength() {
+        upstreamContentLength = false;
+        get("/product-composite/1");
+        get("/product-composite/1");
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void doesNotCacheOtherMethods() {
+        exchange(MockServerHttpRequest.delete("/product-composite/1"));
+        exchange(MockServerHttpRequest.delete("/product-composite/1"));
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    @Test
+    void successfulWriteEvictsAllEntriesForPath() {
+        get("/product-composite/1");
+        get("/product-composite/1?delay=1");
+        exchange(MockServerHttpRequest.get("/product-composite/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        get("/product-composite/2");
+        assertEquals(4, upstreamCalls.get());
+
+        exchange(MockServerHttpRequest.delete("/product-composite/1"));
+        assertEquals(5, upstreamCalls.get());
+
+        get("/product-composite/1");
+        get("/product-composite/1?delay=1");
+        exchange(MockServerHttpRequest.get("/product-composite/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip"));
+        assertEquals(8, upstreamCalls.get());
+
+        get("/product-composite/2");
+        assertEquals(8, upstreamCalls.get());
+    }
+
+    @Test
+    void successfulWriteToCollectionEvictsEntriesBelowIt() {
+        get("/product-composite/1");
+        exchange(MockServerHttpRequest.post("/product-composite"));
+        get("/product-composite/1");
+
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    void failedWriteKeepsEntries() {
+        get("/product-composite/1");
+        upstreamStatus = INTERNAL_SERVER_ERROR;
+        exchange(MockServerHttpRequest.delete("/product-composite/1"));
+        upstreamStatus = OK;
+        get("/product-composite/1");
+
+        assertEquals(2, upstreamCalls.get());
+    }
+
+    private MockServerWebExchange get(String path) {
+        return exchange(MockServerHttpRequest.get(path));
+    }
+
+    private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, upstream()).block();
+        return exchange;
+    }
+
+    private GatewayFilterChain upstream() {
+        return exchange -> {
+            upstreamCalls.incrementAndGet();
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(upstreamStatus);
+            response.getHeaders().setETag(ETAG);
+            response.getHeaders().setCacheControl(upstreamCacheControl);
+            response.getHeaders().setContentType(upstreamContentType);
+            byte[] body = BODY.getBytes(UTF_8);
+            if (upstreamContentLength) {
+                response.getHeaders().setContentLength(body.length);
+            }
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package se.magnus.util.collections;
+
+import static se.magnus.util.collections.IntHashing.defaultStripes;
+import static se.magnus.util.collections.IntHashing.stripe;
+import static se.magnus.util.collections.IntHashing.stripeBits;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+/**
+ * A thread safe {@link IntHashSet}, striped into a number of sets that each are guarded by their own lock, see
+ * {@link ConcurrentIntObjectHashMap}. The size and the iteration are not atomic over the whole set.
+ */
+public class ConcurrentIntHashSet {
+
+    private final int stripeBits;
+    private final IntHashSet[] sets;
+    private final StampedLock[] locks;
+
+    public ConcurrentIntHashSet() {
+        this(0);
+    }
+
+    public ConcurrentIntHashSet(int expectedSize) {
+        this(expectedSize, defaultStripes());
+    }
+
+    public ConcurrentIntHashSet(int expectedSize, int stripes) {
+        this.stripeBits = stripeBits(stripes);
+        this.sets = new IntHashSet[stripes];
+        this.locks = new StampedLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            sets[i] = new IntHashSet(expectedSize / stripes);
+            locks[i] = new StampedLock();
+        }
+    }
+
+    public boolean contains(int value) {
+        int stripe = stripe(value, stripeBits);
+        long stamp = locks[stripe].readLock();
+        try {
+            return sets[stripe].contains(value);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return true if the value was added, false if the set already contained it
+     */
+    public boolean add(int value) {
+        int stripe = stripe(value, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return sets[stripe].add(value);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return true if the value was removed, false if the set did not contain it
+     */
+    public boolean remove(int value) {
+        int stripe = stripe(value, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return sets[stripe].remove(value);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (int stripe = 0; stripe < sets.length; stripe++) {
+            long stamp = locks[stripe].readLock();
+            try {
+                size += sets[stripe].size();
+            } finally {
+                locks[stripe].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Calls the action for each value, one stripe at a time while the stripe is read locked.
+     */
+    public void forEach(IntConsumer action) {
+        for (int stripe = 0; stripe < sets.length; stripe++) {
+            long stamp = locks[stripe].readLock();
+            try {
+                sets[stripe].forEach(action);
+            } finally {
+                locks[stripe].unlockRead(stamp);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < sets.length; stripe++) {
+            long stamp = locks[stripe].writeLock();
+            try {
+                sets[stripe].clear();
+            } finally {
+                locks[stripe].unlockWrite(stamp);
+            }
+        }
+    }
+}
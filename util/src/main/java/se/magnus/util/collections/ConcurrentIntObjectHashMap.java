@@ -0,0 +1,158 @@
+package se.magnus.util.collections;
+
+import static se.magnus.util.collections.IntHashing.defaultStripes;
+import static se.magnus.util.collections.IntHashing.stripe;
+import static se.magnus.util.collections.IntHashing.stripeBits;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread safe {@link IntObjectHashMap}, striped into a number of maps that each are guarded by their own lock, so
+ * that threads working on different keys seldom wait for each other. Lookups take the read lock of a stripe, so
+ * concurrent lookups never wait for each other.
+ *
+ * Updates of a key are atomic, the remapping function of {@link #compute(int, UnaryOperator)} is called while the
+ * stripe is locked and must be short and must not access the map. The size and the iteration are not atomic over the
+ * whole map.
+ *
+ * @param <V> the type of the values
+ */
+public class ConcurrentIntObjectHashMap<V> {
+
+    private final int stripeBits;
+    private final IntObjectHashMap<V>[] maps;
+    private final StampedLock[] locks;
+
+    public ConcurrentIntObjectHashMap() {
+        this(0);
+    }
+
+    public ConcurrentIntObjectHashMap(int expectedSize) {
+        this(expectedSize, defaultStripes());
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentIntObjectHashMap(int expectedSize, int stripes) {
+        this.stripeBits = stripeBits(stripes);
+        this.maps = new IntObjectHashMap[stripes];
+        this.locks = new StampedLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            maps[i] = new IntObjectHashMap<>(expectedSize / stripes);
+            locks[i] = new StampedLock();
+        }
+    }
+
+    public V get(int key) {
+        int stripe = stripe(key, stripeBits);
+        long stamp = locks[stripe].readLock();
+        try {
+            return maps[stripe].get(key);
+        } finally {
+            locks[stripe].unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the previous value of the key, or null if it had none
+     */
+    public V put(int key, V value) {
+        int stripe = stripe(key, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return maps[stripe].put(key, value);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the removed value, or null if the key had none
+     */
+    public V remove(int key) {
+        int stripe = stripe(key, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return maps[stripe].remove(key);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically replaces the value of a key, see {@link IntObjectHashMap#compute(int, UnaryOperator)}.
+     */
+    public V compute(int key, UnaryOperator<V> remapping) {
+        int stripe = stripe(key, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return maps[stripe].compute(key, remapping);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value of a key, after atomically creating it with the mapping function if the key has none.
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mapping) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        int stripe = stripe(key, stripeBits);
+        long stamp = locks[stripe].writeLock();
+        try {
+            return maps[stripe].computeIfAbsent(key, mapping);
+        } finally {
+            locks[stripe].unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            long stamp = locks[stripe].readLock();
+            try {
+                size += maps[stripe].size();
+            } finally {
+                locks[stripe].unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Calls the action for each key and value, one stripe at a time while the stripe is read locked.
+     */
+    public void forEach(IntObjectConsumer<? super V> action) {
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            long stamp = locks[stripe].readLock();
+            try {
+                maps[stripe].forEach(action);
+            } finally {
+                locks[stripe].unlockRead(stamp);
+            }
+        }
+    }
+
+    public void clear() {
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            long stamp = locks[stripe].writeLock();
+            try {
+                maps[stripe].clear();
+            } finally {
+                locks[stripe].unlockWrite(stamp);
+            }
+        }
+    }
+}
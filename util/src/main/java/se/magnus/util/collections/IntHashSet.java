@@ -0,0 +1,152 @@
+package se.magnus.util.collections;
+
+import static se.magnus.util.collections.IntHashing.capacityFor;
+import static se.magnus.util.collections.IntHashing.mix;
+import static se.magnus.util.collections.IntHashing.resizeThreshold;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of int values, e.g. product ids, kept in a single int array without boxing, using open addressing with linear
+ * probing and backward shift deletion. Not thread safe, see {@link ConcurrentIntHashSet}.
+ */
+public class IntHashSet {
+
+    // Value 0 marks a free slot, so whether the set contains 0 is kept aside
+    private static final int FREE = 0;
+
+    private int[] elements;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private boolean containsZero;
+
+    public IntHashSet() {
+        this(0);
+    }
+
+    public IntHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size + (containsZero ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean contains(int value) {
+        if (value == FREE) {
+            return containsZero;
+        }
+        return find(value) >= 0;
+    }
+
+    /**
+     * @return true if the value was added, false if the set already contained it
+     */
+    public boolean add(int value) {
+        if (value == FREE) {
+            boolean added = !containsZero;
+            containsZero = true;
+            return added;
+        }
+        int slot = find(value);
+        if (slot >= 0) {
+            return false;
+        }
+        elements[~slot] = value;
+        if (++size > resizeAt) {
+            resize();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the value was removed, false if the set did not contain it
+     */
+    public boolean remove(int value) {
+        if (value == FREE) {
+            boolean removed = containsZero;
+            containsZero = false;
+            return removed;
+        }
+        int slot = find(value);
+        if (slot < 0) {
+            return false;
+        }
+        size--;
+
+        // Move back the following values of the cluster that would no longer be found past the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; elements[next] != FREE; next = (next + 1) & mask) {
+            int home = mix(elements[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                elements[free] = elements[next];
+                free = next;
+            }
+        }
+        elements[free] = FREE;
+        return true;
+    }
+
+    public void forEach(IntConsumer action) {
+        if (containsZero) {
+            action.accept(FREE);
+        }
+        for (int element : elements) {
+            if (element != FREE) {
+                action.accept(element);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(elements, FREE);
+        size = 0;
+        containsZero = false;
+    }
+
+    /**
+     * @return the slot of the value, or if the value is missing the bitwise complement of the free slot where it belongs
+     */
+    private int find(int value) {
+        for (int slot = mix(value) & mask; ; slot = (slot + 1) & mask) {
+            int existing = elements[slot];
+            if (existing == value) {
+                return slot;
+            }
+            if (existing == FREE) {
+                return ~slot;
+            }
+        }
+    }
+
+    private void resize() {
+        if (elements.length == IntHashing.MAX_CAPACITY) {
+            throw new IllegalStateException("The set can't hold more than " + IntHashing.MAX_CAPACITY + " values");
+        }
+        int[] oldElements = elements;
+
+        allocate(elements.length << 1);
+        for (int element : oldElements) {
+            if (element != FREE) {
+                int slot = mix(element) & mask;
+                while (elements[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = element;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        elements = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = resizeThreshold(capacity);
+    }
+}
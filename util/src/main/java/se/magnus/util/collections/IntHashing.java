@@ -0,0 +1,61 @@
+package se.magnus.util.collections;
+
+/**
+ * Hashing and sizing shared by the int keyed collections.
+ */
+final class IntHashing {
+
+    static final float LOAD_FACTOR = 0.75f;
+    static final int MIN_CAPACITY = 16;
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private IntHashing() {
+    }
+
+    /**
+     * Spreads the bits of a key, product ids are mostly consecutive and would otherwise form long probe sequences.
+     */
+    static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * The power of two table size that holds the expected number of keys without resizing.
+     */
+    static int capacityFor(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative: " + expectedSize);
+        }
+        long capacity = MIN_CAPACITY;
+        while (capacity < MAX_CAPACITY && capacity * LOAD_FACTOR < expectedSize) {
+            capacity <<= 1;
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * The default number of stripes of the concurrent collections, a few per core to keep the lock contention low.
+     */
+    static int defaultStripes() {
+        return Integer.highestOneBit(Math.max(2, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+    }
+
+    /**
+     * Selects the stripe of a key by the high bits of its hash, the tables of the stripes use the low bits.
+     */
+    static int stripe(int key, int stripeBits) {
+        return stripeBits == 0 ? 0 : mix(key) >>> (32 - stripeBits);
+    }
+
+    static int stripeBits(int stripes) {
+        if (stripes < 1 || stripes > (1 << 16) || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripes must be a power of two between 1 and 65536: " + stripes);
+        }
+        return Integer.numberOfTrailingZeros(stripes);
+    }
+
+    static int resizeThreshold(int capacity) {
+        return capacity == MAX_CAPACITY ? MAX_CAPACITY - 1 : (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,12 @@
+package se.magnus.util.collections;
+
+/**
+ * Accepts the int keys and the values of the int keyed maps, without boxing the keys.
+ *
+ * @param <V> the type of the values
+ */
+@FunctionalInterface
+public interface IntObjectConsumer<V> {
+
+    void accept(int key, V value);
+}
@@ -0,0 +1,228 @@
+package se.magnus.util.collections;
+
+import static se.magnus.util.collections.IntHashing.capacityFor;
+import static se.magnus.util.collections.IntHashing.mix;
+import static se.magnus.util.collections.IntHashing.resizeThreshold;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * A hash map from int keys, e.g. product ids, to objects, without boxing the keys into Integer objects and without an
+ * entry object per mapping as in a HashMap. The keys and values are kept in two arrays, using open addressing with
+ * linear probing and backward shift deletion, so removed keys leave no tombstones behind.
+ *
+ * Null values are not allowed, a null returned by a lookup means that the key has no value. Not thread safe, see
+ * {@link ConcurrentIntObjectHashMap}.
+ *
+ * @param <V> the type of the values
+ */
+public class IntObjectHashMap<V> {
+
+    // Key 0 marks a free slot in the keys array, so its value is kept aside
+    private static final int FREE = 0;
+
+    private int[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    private Object zeroValue;
+
+    public IntObjectHashMap() {
+        this(0);
+    }
+
+    public IntObjectHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size + (zeroValue != null ? 1 : 0);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == FREE) {
+            return (V) zeroValue;
+        }
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * @return the previous value of the key, or null if it had none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value, "value");
+        if (key == FREE) {
+            V previous = (V) zeroValue;
+            zeroValue = value;
+            return previous;
+        }
+        int slot = find(key);
+        if (slot >= 0) {
+            V previous = (V) values[slot];
+            values[slot] = value;
+            return previous;
+        }
+        insert(~slot, key, value);
+        return null;
+    }
+
+    /**
+     * @return the removed value, or null if the key had none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        if (key == FREE) {
+            V previous = (V) zeroValue;
+            zeroValue = null;
+            return previous;
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+        removeAt(slot);
+        return previous;
+    }
+
+    /**
+     * Replaces the value of a key with the result of the remapping function, which is given the current value or null
+     * if the key has none. If the function returns null the key is removed. The function must not modify the map.
+     *
+     * @return the new value, or null if the key has no value
+     */
+    @SuppressWarnings("unchecked")
+    public V compute(int key, UnaryOperator<V> remapping) {
+        if (key == FREE) {
+            zeroValue = remapping.apply((V) zeroValue);
+            return (V) zeroValue;
+        }
+        int slot = find(key);
+        V updated = remapping.apply(slot < 0 ? null : (V) values[slot]);
+        if (slot >= 0) {
+            if (updated == null) {
+                removeAt(slot);
+            } else {
+                values[slot] = updated;
+            }
+        } else if (updated != null) {
+            insert(~slot, key, updated);
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the value of a key, after creating it with the mapping function if the key has none.
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mapping) {
+        V value = get(key);
+        if (value == null) {
+            value = Objects.requireNonNull(mapping.apply(key), "value");
+            put(key, value);
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjectConsumer<? super V> action) {
+        if (zeroValue != null) {
+            action.accept(FREE, (V) zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE) {
+                action.accept(keys[slot], (V) values[slot]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, null);
+        size = 0;
+        zeroValue = null;
+    }
+
+    /**
+     * @return the slot of the key, or if the key is missing the bitwise complement of the free slot where it belongs
+     */
+    private int find(int key) {
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            int existing = keys[slot];
+            if (existing == key) {
+                return slot;
+            }
+            if (existing == FREE) {
+                return ~slot;
+            }
+        }
+    }
+
+    private void insert(int slot, int key, Object value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            resize();
+        }
+    }
+
+    private void removeAt(int slot) {
+        size--;
+
+        // Move back the following keys of the cluster that would no longer be found past the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+    }
+
+    private void resize() {
+        if (keys.length == IntHashing.MAX_CAPACITY) {
+            throw new IllegalStateException("The map can't hold more than " + IntHashing.MAX_CAPACITY + " keys");
+        }
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        allocate(keys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            int key = oldKeys[i];
+            if (key != FREE) {
+                int slot = mix(key) & mask;
+                while (keys[slot] != FREE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = resizeThreshold(capacity);
+    }
+}
@@ -0,0 +1,18 @@
+package se.magnus.util.http;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+
+@Configuration
+public class ConditionalRequestConfig {
+
+    /**
+     * Makes the current exchange available in the Reactor context, used by {@link ETagUtil} to read If-None-Match
+     * and set the ETag header from within the reactive chain of an endpoint.
+     */
+    @Bean
+    public ServerWebExchangeContextFilter serverWebExchangeContextFilter() {
+        return new ServerWebExchangeContextFilter();
+    }
+}
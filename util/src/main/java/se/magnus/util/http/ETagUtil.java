@@ -0,0 +1,137 @@
+package se.magnus.util.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.reactive.ServerWebExchangeContextFilter;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Helpers for emitting strong ETags and answering conditional GET requests from reactive endpoints.
+ *
+ * The ETag of a response is derived from the entities its body is loaded from, so that it always matches the body. For
+ * conditional requests a separate, cheap to compute probe of the ETag is used first, e.g. a projection query that only
+ * reads version fields, and if the client already holds the current representation the response is completed with
+ * 304 - Not Modified without loading the body at all. Requests without If-None-Match never run the probe. The current
+ * exchange is looked up in the Reactor context, where it is put by the ServerWebExchangeContextFilter registered in
+ * {@link ConditionalRequestConfig}.
+ */
+public final class ETagUtil {
+
+    private ETagUtil() {
+    }
+
+    /**
+     * Creates a strong ETag from the supplied parts, e.g. the id and version of one or more entities.
+     */
+    public static String strongETag(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part).append(';');
+        }
+        return strongETagOf(sb);
+    }
+
+    /**
+     * Creates a strong ETag from a list of parts, e.g. the id and version of each entity in a result set.
+     */
+    public static String strongETag(List<?> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part).append(';');
+        }
+        return strongETagOf(sb);
+    }
+
+    /**
+     * Returns the body, with the ETag it was loaded with, unless the request carries an If-None-Match header that
+     * matches the ETag probe, in which case the response is completed as 304 - Not Modified and the body is never
+     * subscribed to.
+     *
+     * @param eTagProbe the current ETag of the resource, empty if it has none (e.g. does not exist), only subscribed
+     *                  to for conditional requests
+     * @param body supplies the body and its ETag, only called if it is actually needed
+     */
+    public static <T> Mono<T> ifNoneMatch(Mono<String> eTagProbe, Supplier<Mono<ETagged<T>>> body) {
+        return Mono.deferContextual(ctx -> getExchange(ctx)
+                .map(exchange -> {
+                    if (exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()) {
+                        return withETag(exchange, body.get());
+                    }
+                    return eTagProbe.defaultIfEmpty("")
+                            .flatMap(tag -> isNotModified(exchange, tag) ? Mono.<T>empty() : withETag(exchange, body.get()));
+                })
+                .orElseGet(() -> body.get().map(ETagged::getValue)));
+    }
+
+    /**
+     * Same as {@link #ifNoneMatch(Mono, Supplier)} but for endpoints returning a list of elements. The list is loaded
+     * before the first element is written, since the ETag derived from it must be set first.
+     */
+    public static <T> Flux<T> ifNoneMatchMany(Mono<String> eTagProbe, Supplier<Mono<ETagged<List<T>>>> body) {
+        return ifNoneMatch(eTagProbe, body).flatMapIterable(list -> list);
+    }
+
+    /**
+     * Tells if any of the ETags of an If-None-Match header matches the current ETag, using weak comparison.
+     *
+     * @param ifNoneMatch the ETags of the If-None-Match header of the request
+     * @param eTag the current ETag of the resource, empty if it has none
+     */
+    public static boolean matches(List<String> ifNoneMatch, String eTag) {
+        if (eTag.isEmpty()) {
+            return false;
+        }
+        for (String clientETag : ifNoneMatch) {
+            // "*" matches any current representation, used by the composite service to only ask for the ETag
+            if (clientETag.equals("*") || weak(clientETag).equals(weak(eTag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static <T> Mono<T> withETag(ServerWebExchange exchange, Mono<ETagged<T>> body) {
+        return body.map(tagged -> {
+            setETag(exchange, tagged.getETag());
+            return tagged.getValue();
+        });
+    }
+
+    private static Optional<ServerWebExchange> getExchange(ContextView ctx) {
+        return ctx.getOrEmpty(ServerWebExchangeContextFilter.EXCHANGE_CONTEXT_ATTRIBUTE);
+    }
+
+    private static String strongETagOf(CharSequence content) {
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(UTF_8)) + "\"";
+    }
+
+    private static void setETag(ServerWebExchange exchange, String eTag) {
+        if (!eTag.isEmpty()) {
+            exchange.getResponse().getHeaders().setETag(eTag);
+        }
+    }
+
+    private static boolean isNotModified(ServerWebExchange exchange, String eTag) {
+        if (matches(exchange.getRequest().getHeaders().getIfNoneMatch(), eTag)) {
+            setETag(exchange, eTag);
+            exchange.getResponse().setStatusCode(HttpStatus.NOT_MODIFIED);
+            exchange.getResponse().getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+            return true;
+        }
+        return false;
+    }
+
+    // Weak comparison, as required for If-None-Match, see https://tools.ietf.org/html/rfc7232#section-2.3.2
+    private static String weak(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+}
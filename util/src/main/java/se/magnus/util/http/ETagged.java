@@ -0,0 +1,36 @@
+package se.magnus.util.http;
+
+/**
+ * A value together with the ETag derived from it, e.g. a response body and the ETag computed from the versions of the
+ * entities it was loaded from, see {@link ETagUtil}.
+ *
+ * @param <T> the type of the value
+ */
+public final class ETagged<T> {
+
+    private final T value;
+    private final String eTag;
+
+    private ETagged(T value, String eTag) {
+        this.value = value;
+        this.eTag = eTag == null ? "" : eTag;
+    }
+
+    /**
+     * @param eTag the ETag of the value, null or empty if it has none
+     */
+    public static <T> ETagged<T> of(T value, String eTag) {
+        return new ETagged<>(value, eTag);
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return the ETag of the value, empty if it has none
+     */
+    public String getETag() {
+        return eTag;
+    }
+}
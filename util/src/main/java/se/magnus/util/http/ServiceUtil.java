@@ -8,40 +8,49 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+/**
+ * Provides the address of this service instance, i.e. host name, IP address and port, used to tell which instances
+ * served a response.
+ *
+ * The address is resolved once when the bean is created, since looking up the local host can block on DNS. Setting
+ * app.service-address.enabled to false leaves the address out of the responses altogether, see
+ * {@link #isServiceAddressEnabled()}.
+ */
 @Component
 public class ServiceUtil {
   private static final Logger LOG = LoggerFactory.getLogger(ServiceUtil.class);
 
-  private final String port;
-
-  private String serviceAddress = null;
+  private final boolean serviceAddressEnabled;
+  private final String serviceAddress;
 
   @Autowired
-  public ServiceUtil(@Value("${server.port}") String port) {
+  public ServiceUtil(
+    @Value("${server.port}") String port,
+    @Value("${app.service-address.enabled:true}") boolean serviceAddressEnabled) {
 
-    this.port = port;
+    this.serviceAddressEnabled = serviceAddressEnabled;
+    this.serviceAddress = findMyAddress() + ":" + port;
+    LOG.info("Resolved the service address: {}, included in responses: {}", serviceAddress, serviceAddressEnabled);
   }
 
   public String getServiceAddress() {
-    if (serviceAddress == null) {
-      serviceAddress = findMyHostname() + "/" + findMyIpAddress() + ":" + port;
-    }
     return serviceAddress;
   }
 
-  private String findMyHostname() {
-    try {
-      return InetAddress.getLocalHost().getHostName();
-    } catch (UnknownHostException e) {
-      return "unknown host name";
-    }
+  /**
+   * Tells if the service address shall be set on the returned objects.
+   */
+  public boolean isServiceAddressEnabled() {
+    return serviceAddressEnabled;
   }
 
-  private String findMyIpAddress() {
+  private String findMyAddress() {
     try {
-      return InetAddress.getLocalHost().getHostAddress();
+      InetAddress localHost = InetAddress.getLocalHost();
+      return localHost.getHostName() + "/" + localHost.getHostAddress();
     } catch (UnknownHostException e) {
-      return "unknown IP address";
+      LOG.warn("Failed to resolve the local host: {}", e.toString());
+      return "unknown host name/unknown IP address";
     }
   }
 }
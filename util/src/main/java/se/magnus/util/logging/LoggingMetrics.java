@@ -0,0 +1,70 @@
+package se.magnus.util.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the number of dropped and queued events of the {@link RingBufferAppender}s of the logging configuration.
+ * Nothing is published if the logging configuration has no such appender.
+ */
+@Component
+@ConditionalOnClass(name = "ch.qos.logback.classic.LoggerContext")
+public class LoggingMetrics implements MeterBinder {
+
+    /** Log events dropped by a ring buffer appender, tagged with the appender and the level of the events. */
+    public static final String DROPPED_COUNTER = "app.logging.dropped";
+
+    /** Log events waiting to be written by a ring buffer appender. */
+    public static final String QUEUED_GAUGE = "app.logging.queued";
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        ILoggerFactory loggerFactory = LoggerFactory.getILoggerFactory();
+        if (loggerFactory instanceof LoggerContext) {
+            bindTo(registry, (LoggerContext) loggerFactory);
+        }
+    }
+
+    void bindTo(MeterRegistry registry, LoggerContext context) {
+        for (RingBufferAppender appender : ringBufferAppenders(context)) {
+            for (Level level : RingBufferAppender.levels()) {
+                FunctionCounter.builder(DROPPED_COUNTER, appender, a -> a.getDroppedCount(level))
+                        .description("Log events dropped since the ring buffer was full")
+                        .tags("appender", appender.getName(), "level", level.toString())
+                        .register(registry);
+            }
+            Gauge.builder(QUEUED_GAUGE, appender, RingBufferAppender::queued)
+                    .description("Log events waiting to be written")
+                    .tags("appender", appender.getName())
+                    .register(registry);
+        }
+    }
+
+    private static Set<RingBufferAppender> ringBufferAppenders(LoggerContext context) {
+        Set<RingBufferAppender> appenders = new LinkedHashSet<>();
+        for (Logger logger : context.getLoggerList()) {
+            Iterator<Appender<ILoggingEvent>> iterator = logger.iteratorForAppenders();
+            while (iterator.hasNext()) {
+                Appender<ILoggingEvent> appender = iterator.next();
+                if (appender instanceof RingBufferAppender) {
+                    appenders.add((RingBufferAppender) appender);
+                }
+            }
+        }
+        return appenders;
+    }
+}
@@ -0,0 +1,278 @@
+package se.magnus.util.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands log events over to a background thread through a bounded, lock-free ring buffer, and writes them to the
+ * attached appenders from there. Logging threads, e.g. the Netty event loop threads, never wait for the attached
+ * appenders or for each other: if the ring buffer is full the event is dropped and counted.
+ *
+ * Events below WARN are also dropped when fewer than {@link #setDiscardingThreshold(int) discardingThreshold} slots are
+ * free, to leave room for warnings and errors. The number of dropped events per level is published as metrics by
+ * {@link LoggingMetrics}. Configured in a logback configuration, e.g.:
+ *
+ * <pre>
+ * &lt;appender name="RING_CONSOLE" class="se.magnus.util.logging.RingBufferAppender"&gt;
+ *     &lt;capacity&gt;8192&lt;/capacity&gt;
+ *     &lt;appender-ref ref="CONSOLE"/&gt;
+ * &lt;/appender&gt;
+ * </pre>
+ */
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final LongAdder[] dropped = new LongAdder[LEVELS.length];
+
+    private int capacity = DEFAULT_CAPACITY;
+    private int discardingThreshold = -1;
+    private int maxFlushTime = 1000;
+
+    // A bounded multi-producer queue, each slot has a sequence number that tells if it is free for the producer of a
+    // given position or holds the event of a position for the consumer
+    private AtomicReferenceArray<ILoggingEvent> events;
+    private AtomicLongArray sequences;
+    private int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private volatile boolean idle;
+    private Thread worker;
+
+    public RingBufferAppender() {
+        for (int i = 0; i < dropped.length; i++) {
+            dropped[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * The number of events the ring buffer holds, must be a power of two. Defaults to 8192.
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Events below WARN are dropped when fewer slots than this are free. Defaults to a fifth of the capacity, 0 never
+     * drops events below WARN while there is room.
+     */
+    public void setDiscardingThreshold(int discardingThreshold) {
+        this.discardingThreshold = discardingThreshold;
+    }
+
+    /**
+     * The maximum number of milliseconds to wait for the queued events to be written when the appender is stopped.
+     */
+    public void setMaxFlushTime(int maxFlushTime) {
+        this.maxFlushTime = maxFlushTime;
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            addError("Capacity must be a power of two of at least 2: " + capacity);
+            return;
+        }
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No appender attached to " + name);
+            return;
+        }
+        if (discardingThreshold < 0) {
+            discardingThreshold = capacity / 5;
+        }
+
+        events = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+
+        worker = new Thread(this::drain, "RingBufferAppender-" + name);
+        worker.setDaemon(true);
+        super.start();
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+        super.stop();
+
+        // The worker writes the events that are still queued before it exits
+        LockSupport.unpark(worker);
+        try {
+            worker.join(maxFlushTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            addWarn("Gave up waiting for " + queued() + " queued events to be written after " + maxFlushTime + " ms");
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        Level level = event.getLevel();
+        if (level.toInt() < Level.WARN_INT && capacity - queued() <= discardingThreshold) {
+            drop(level);
+            return;
+        }
+
+        // Formats the message and captures the thread name and MDC while still on the logging thread
+        event.prepareForDeferredProcessing();
+        if (!offer(event)) {
+            drop(level);
+            return;
+        }
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private boolean offer(ILoggingEvent event) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    events.lazySet(slot, event);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (sequence < position) {
+                // The slot still holds the event of the previous lap, i.e. the ring buffer is full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            ILoggingEvent event = poll();
+            if (event != null) {
+                appenders.appendLoopOnAppenders(event);
+                continue;
+            }
+            if (!isStarted()) {
+                return;
+            }
+
+            // Check again after announcing that the worker is idle, so that an event offered in between isn't missed
+            idle = true;
+            if (queued() == 0 && isStarted()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private ILoggingEvent poll() {
+        long position = head;
+        int slot = (int) position & mask;
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+        ILoggingEvent event = events.get(slot);
+        events.lazySet(slot, null);
+        sequences.set(slot, position + capacity);
+        head = position + 1;
+        return event;
+    }
+
+    private void drop(Level level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].toInt() == level.toInt()) {
+                dropped[i].increment();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of events waiting to be written
+     */
+    public int queued() {
+        return (int) Math.max(0, Math.min(capacity, tail.get() - head));
+    }
+
+    /**
+     * @return the number of events of a level that were dropped since the appender was created
+     */
+    public long getDroppedCount(Level level) {
+        for (int i = 0; i < LEVELS.length; i++) {
+            if (LEVELS[i].toInt() == level.toInt()) {
+                return dropped[i].sum();
+            }
+        }
+        return 0;
+    }
+
+    static Level[] levels() {
+        return LEVELS.clone();
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,76 @@
+package se.magnus.util.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Marker;
+
+/**
+ * Logs only one of every {@link #setRate(int) rate} events below WARN from noisy loggers, and drops the others before
+ * their messages are formatted. Warnings and errors are always logged.
+ *
+ * The loggers are given as a comma separated list of logger names, each including its child loggers and sampled on its
+ * own. Checks if a level is enabled, e.g. isDebugEnabled(), are not sampled, only the logging calls themselves. Configured in a
+ * logback configuration, e.g.:
+ *
+ * <pre>
+ * &lt;turboFilter class="se.magnus.util.logging.SamplingTurboFilter"&gt;
+ *     &lt;loggers&gt;org.hibernate.SQL,se.magnus.microservices&lt;/loggers&gt;
+ *     &lt;rate&gt;100&lt;/rate&gt;
+ * &lt;/turboFilter&gt;
+ * </pre>
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final List<String> prefixes = new ArrayList<>();
+    private AtomicLong[] counters = new AtomicLong[0];
+    private int rate = 1;
+
+    public void setLoggers(String loggers) {
+        prefixes.clear();
+        for (String logger : loggers.split(",")) {
+            if (!logger.trim().isEmpty()) {
+                prefixes.add(logger.trim());
+            }
+        }
+        counters = new AtomicLong[prefixes.size()];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new AtomicLong();
+        }
+    }
+
+    public void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Rate must be at least 1: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || rate == 1 || format == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+
+        // Events of disabled levels are left to the logger, so that they don't count
+        if (!level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+
+        String name = logger.getName();
+        for (int i = 0; i < prefixes.size(); i++) {
+            if (isSameOrChild(name, prefixes.get(i))) {
+                return counters[i].getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+
+    private static boolean isSameOrChild(String name, String prefix) {
+        return name.startsWith(prefix) && (name.length() == prefix.length() || name.charAt(prefix.length()) == '.');
+    }
+}
@@ -0,0 +1,80 @@
+package se.magnus.util.metrics;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.ApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the messages that failed after all retries, i.e. that the binder sends to the dead-letter queue.
+ *
+ * The binders send these messages to the error channel of the binding, which is bridged to the global errorChannel.
+ * Other failures end up on the global errorChannel as well, e.g. of outbound bindings or of pollers, so only errors of
+ * messages consumed from a queue or topic, i.e. that carry the amqp_consumedQueue or kafka_receivedTopic header, are
+ * counted.
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.integration.channel.PublishSubscribeChannel")
+public class MessagingErrorMetrics implements SmartInitializingSingleton {
+
+    private static final String ERROR_CHANNEL = "errorChannel";
+
+    private static final String[] DESTINATION_HEADERS = {"amqp_consumedQueue", "kafka_receivedTopic"};
+
+    private final ApplicationContext context;
+    private final ServiceMetrics metrics;
+
+    @Autowired
+    public MessagingErrorMetrics(ApplicationContext context, ServiceMetrics metrics) {
+        this.context = context;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (context.containsBean(ERROR_CHANNEL)) {
+            Object errorChannel = context.getBean(ERROR_CHANNEL);
+            if (errorChannel instanceof SubscribableChannel) {
+                ((SubscribableChannel) errorChannel).subscribe(this::onError);
+            }
+        }
+    }
+
+    void onError(Message<?> errorMessage) {
+        Throwable error = errorMessage.getPayload() instanceof Throwable ? (Throwable) errorMessage.getPayload() : null;
+        Message<?> failedMessage = error instanceof MessagingException ? ((MessagingException) error).getFailedMessage() : null;
+
+        String destination = getDestination(failedMessage);
+        if (destination != null) {
+            metrics.deadLettered(destination, getRootCause(error));
+        }
+    }
+
+    /**
+     * The queue or topic the failed message was consumed from, or null if it was not consumed by an inbound binding.
+     */
+    private static String getDestination(Message<?> failedMessage) {
+        if (failedMessage != null) {
+            MessageHeaders headers = failedMessage.getHeaders();
+            for (String header : DESTINATION_HEADERS) {
+                if (headers.containsKey(header)) {
+                    return String.valueOf(headers.get(header));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Throwable getRootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause != null && cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
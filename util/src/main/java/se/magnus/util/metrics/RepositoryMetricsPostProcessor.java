@@ -0,0 +1,84 @@
+package se.magnus.util.metrics;
+
+import static se.magnus.util.metrics.ServiceMetrics.OUTCOME_ERROR;
+import static se.magnus.util.metrics.ServiceMetrics.OUTCOME_SUCCESS;
+import static se.magnus.util.metrics.ServiceMetrics.REPOSITORY_TIMER;
+
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Method;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times every call to a Spring Data repository, tagged with the name of the repository method.
+ *
+ * Reactive repository methods are timed from subscription until the result is consumed, blocking ones for the duration
+ * of the call.
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.data.repository.Repository")
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<ServiceMetrics> metrics;
+
+    @Autowired
+    public RepositoryMetricsPostProcessor(ObjectProvider<ServiceMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof Repository)) {
+            return bean;
+        }
+
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.addAdvice(new TimingInterceptor(metrics));
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+
+    static class TimingInterceptor implements MethodInterceptor {
+
+        private final ObjectProvider<ServiceMetrics> metricsProvider;
+
+        TimingInterceptor(ObjectProvider<ServiceMetrics> metricsProvider) {
+            this.metricsProvider = metricsProvider;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            ServiceMetrics metrics = metricsProvider.getIfAvailable();
+            if (metrics == null || method.getDeclaringClass() == Object.class) {
+                return invocation.proceed();
+            }
+
+            String operation = method.getName();
+            if (Mono.class.isAssignableFrom(method.getReturnType())) {
+                return metrics.time(REPOSITORY_TIMER, metrics.getServiceName(), operation, (Mono<?>) invocation.proceed());
+            }
+            if (Flux.class.isAssignableFrom(method.getReturnType())) {
+                return metrics.time(REPOSITORY_TIMER, metrics.getServiceName(), operation, (Flux<?>) invocation.proceed());
+            }
+
+            Timer.Sample sample = metrics.start();
+            String outcome = OUTCOME_ERROR;
+            try {
+                Object result = invocation.proceed();
+                outcome = OUTCOME_SUCCESS;
+                return result;
+            } finally {
+                metrics.stop(sample, REPOSITORY_TIMER, metrics.getServiceName(), operation, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package se.magnus.util.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import se.magnus.api.event.Event;
+
+/**
+ * Records latency distributions and event counts with consistent names and tags in all services.
+ *
+ * Timers are tagged with the service doing the work, the operation and the outcome, i.e. success, error or cancelled,
+ * and publish percentile histograms, to make it possible to aggregate percentiles over instances in Prometheus.
+ * Reactive calls are timed from subscription until they complete, fail or are cancelled.
+ */
+@Component
+public class ServiceMetrics {
+
+    /** Calls from the composite service to the core services, including publishing of events. */
+    public static final String INTEGRATION_TIMER = "app.integration.calls";
+
+    /** Calls to the repositories in the core services, see {@link RepositoryMetricsPostProcessor}. */
+    public static final String REPOSITORY_TIMER = "app.repository.calls";
+
+    /** Processing of events by the message processors in the core services. */
+    public static final String MESSAGE_TIMER = "app.messages.processing";
+
+    /** Events processed by the message processors, tagged with outcome processed or failed. */
+    public static final String EVENT_COUNTER = "app.messages.events";
+
+    /** Messages that failed after all retries, i.e. are sent to a dead-letter queue, see {@link MessagingErrorMetrics}. */
+    public static final String DEAD_LETTER_COUNTER = "app.messages.dead-lettered";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+
+    private final MeterRegistry registry;
+    private final String serviceName;
+
+    @Autowired
+    public ServiceMetrics(MeterRegistry registry, @Value("${spring.application.name:unknown}") String serviceName) {
+        this.registry = registry;
+        this.serviceName = serviceName;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public <T> Mono<T> time(String timerName, String service, String operation, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return mono.doFinally(signal -> stop(sample, timerName, service, operation, outcome(signal)));
+        });
+    }
+
+    public <T> Flux<T> time(String timerName, String service, String operation, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            return flux.doFinally(signal -> stop(sample, timerName, service, operation, outcome(signal)));
+        });
+    }
+
+    /**
+     * Times a blocking call.
+     */
+    public <T> T time(String timerName, String service, String operation, Supplier<T> call) {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = call.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } finally {
+            stop(sample, timerName, service, operation, outcome);
+        }
+    }
+
+    /**
+     * Times the processing of an event, tagged with the event type, and counts it as processed or failed.
+     *
+     * A failed event is retried by the binder, i.e. it can be counted as failed more than once before it is either
+     * processed or dead-lettered.
+     */
+    public void processEvent(Event<?, ?> event, Runnable processing) {
+        String eventType = String.valueOf(event.getEventType());
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = OUTCOME_ERROR;
+        try {
+            processing.run();
+            outcome = OUTCOME_SUCCESS;
+        } finally {
+            stop(sample, MESSAGE_TIMER, serviceName, eventType, outcome);
+            Counter.builder(EVENT_COUNTER)
+                    .description("Events processed by the message processor")
+                    .tags(Tags.of("service", serviceName, "type", eventType, "outcome", OUTCOME_SUCCESS.equals(outcome) ? "processed" : "failed"))
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    public void deadLettered(String destination, Throwable cause) {
+        Counter.builder(DEAD_LETTER_COUNTER)
+                .description("Messages that failed after all retries")
+                .tags(Tags.of("service", serviceName, "destination", destination, "exception", cause == null ? "none" : cause.getClass().getSimpleName()))
+                .register(registry)
+                .increment();
+    }
+
+    Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    void stop(Timer.Sample sample, String timerName, String service, String operation, String outcome) {
+        sample.stop(Timer.builder(timerName)
+                .tags(Tags.of("service", service, "operation", operation, "outcome", outcome))
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private static String outcome(SignalType signal) {
+        switch (signal) {
+            case ON_COMPLETE:
+                return OUTCOME_SUCCESS;
+            case CANCEL:
+                return OUTCOME_CANCELLED;
+            default:
+                return OUTCOME_ERROR;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package se.magnus.util.mongo;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+/**
+ * Connection pool, write concern and read preference of the reactive Mongo client, set by the app.mongodb properties.
+ * The defaults are the defaults of the driver.
+ *
+ * The usage of the pool is exported by Spring Boot as the mongodb.driver.pool.size, .checkedout and .waitqueuesize
+ * gauges, the configured maximum size as the app.mongodb.pool.max-size gauge, so that the usage can be related to it.
+ */
+@Configuration
+@ConditionalOnClass(name = "com.mongodb.reactivestreams.client.MongoClient")
+public class MongoClientConfig {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MongoClientConfig.class);
+
+    public static final String POOL_MAX_SIZE_GAUGE = "app.mongodb.pool.max-size";
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoClientTuning(
+            @Value("${app.mongodb.pool.min-size:0}") int minSize,
+            @Value("${app.mongodb.pool.max-size:100}") int maxSize,
+            @Value("${app.mongodb.pool.max-wait:2m}") Duration maxWait,
+            @Value("${app.mongodb.pool.max-idle-time:0s}") Duration maxIdleTime,
+            @Value("${app.mongodb.pool.max-life-time:0s}") Duration maxLifeTime,
+            @Value("${app.mongodb.write-concern:acknowledged}") String writeConcernName,
+            @Value("${app.mongodb.write-concern-timeout:0s}") Duration writeConcernTimeout,
+            ObjectProvider<MeterRegistry> registry) {
+
+        WriteConcern writeConcern = writeConcern(writeConcernName, writeConcernTimeout);
+        LOG.info("Mongo connection pool size: {}-{}, max wait: {}, write concern: {}", minSize, maxSize, maxWait, writeConcern);
+
+        registry.ifAvailable(r -> Gauge.builder(POOL_MAX_SIZE_GAUGE, () -> maxSize)
+                .description("The maximum number of connections in the Mongo connection pool")
+                .register(r));
+
+        return builder -> builder
+                .applyToConnectionPoolSettings(pool -> pool
+                        .minSize(minSize)
+                        .maxSize(maxSize)
+                        .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(maxIdleTime.toMillis(), TimeUnit.MILLISECONDS)
+                        .maxConnectionLifeTime(maxLifeTime.toMillis(), TimeUnit.MILLISECONDS))
+                .writeConcern(writeConcern);
+    }
+
+    @Bean
+    public MongoReadOperations mongoReadOperations(
+            ReactiveMongoDatabaseFactory databaseFactory,
+            MongoConverter converter,
+            @Value("${app.mongodb.read-preference:primary}") String readPreferenceName) {
+
+        ReadPreference readPreference = ReadPreference.valueOf(readPreferenceName);
+        LOG.info("Mongo read preference of the queries: {}", readPreference.getName());
+
+        ReactiveMongoTemplate template = new ReactiveMongoTemplate(databaseFactory, converter);
+        template.setReadPreference(readPreference);
+        return new MongoReadOperations(template, readPreference);
+    }
+
+    static WriteConcern writeConcern(String name, Duration timeout) {
+        WriteConcern writeConcern = WriteConcern.valueOf(name);
+        if (writeConcern == null) {
+            throw new IllegalArgumentException("Unknown write concern: " + name + ", expected e.g. acknowledged, w1, w2, majority or journaled");
+        }
+        return timeout.isZero() ? writeConcern : writeConcern.withWTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
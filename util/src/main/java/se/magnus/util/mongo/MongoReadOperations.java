@@ -0,0 +1,31 @@
+package se.magnus.util.mongo;
+
+import com.mongodb.ReadPreference;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+/**
+ * Mongo operations for the queries that may be served by any member of the replica set, i.e. the reads of the GET
+ * endpoints, configured by app.mongodb.read-preference. Reads with a read preference other than primary may return
+ * data that is slightly behind the latest writes.
+ *
+ * Not a ReactiveMongoOperations bean itself, so that the repositories and all other reads and writes keep using the
+ * template auto-configured by Spring Boot, which reads from the primary.
+ */
+public class MongoReadOperations {
+
+    private final ReactiveMongoOperations operations;
+    private final ReadPreference readPreference;
+
+    public MongoReadOperations(ReactiveMongoOperations operations, ReadPreference readPreference) {
+        this.operations = operations;
+        this.readPreference = readPreference;
+    }
+
+    public ReactiveMongoOperations getOperations() {
+        return operations;
+    }
+
+    public ReadPreference getReadPreference() {
+        return readPreference;
+    }
+}
@@ -0,0 +1,128 @@
+package se.magnus.util.reactor;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+/**
+ * Logs the signals of reactive operations, i.e. subscribe, next, error, complete and cancel, for the operations that are
+ * enabled. Operations are enabled by the app.reactive-diagnostics.operations property, or at runtime through the
+ * reactivediagnostics actuator endpoint. The special operation "all" enables all operations.
+ *
+ * Whether an operation is logged is decided when the reactive chain is assembled: if the operation is not enabled, the
+ * publisher is returned as is, without any operator added. Since chains are assembled per request, enabling or
+ * disabling an operation takes effect from the next request.
+ *
+ * Each signal is logged as one line, on the form:
+ *
+ * operation=ProductService.getProduct signal=onNext elapsedMs=12 value=...
+ */
+@Component
+public class ReactiveDiagnostics {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveDiagnostics.class);
+
+    public static final String ALL_OPERATIONS = "all";
+
+    private final Set<String> knownOperations = ConcurrentHashMap.newKeySet();
+    private final Set<String> enabledOperations = ConcurrentHashMap.newKeySet();
+    private volatile boolean allEnabled;
+
+    @Autowired
+    public ReactiveDiagnostics(@Value("${app.reactive-diagnostics.operations:}") String[] operations) {
+        Arrays.stream(operations)
+                .map(String::trim)
+                .filter(operation -> !operation.isEmpty())
+                .forEach(operation -> setEnabled(operation, true));
+    }
+
+    public <T> Mono<T> log(String operation, Mono<T> mono) {
+        if (!isEnabled(operation)) {
+            return mono;
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return mono
+                    .doOnSubscribe(subscription -> event(operation, "onSubscribe", start, null))
+                    .doOnEach(signal -> event(operation, signal, start))
+                    .doOnCancel(() -> event(operation, "cancel", start, null));
+        });
+    }
+
+    public <T> Flux<T> log(String operation, Flux<T> flux) {
+        if (!isEnabled(operation)) {
+            return flux;
+        }
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            return flux
+                    .doOnSubscribe(subscription -> event(operation, "onSubscribe", start, null))
+                    .doOnEach(signal -> event(operation, signal, start))
+                    .doOnCancel(() -> event(operation, "cancel", start, null));
+        });
+    }
+
+    public boolean isEnabled(String operation) {
+        knownOperations.add(operation);
+        return allEnabled || enabledOperations.contains(operation);
+    }
+
+    public void setEnabled(String operation, boolean enabled) {
+        LOG.info("{} reactive diagnostics for operation: {}", enabled ? "Enables" : "Disables", operation);
+
+        if (ALL_OPERATIONS.equals(operation)) {
+            allEnabled = enabled;
+        } else if (enabled) {
+            knownOperations.add(operation);
+            enabledOperations.add(operation);
+        } else {
+            enabledOperations.remove(operation);
+        }
+    }
+
+    /**
+     * Returns the operations seen so far, or enabled, with their current state.
+     */
+    public Map<String, Boolean> getOperations() {
+        Map<String, Boolean> operations = new TreeMap<>();
+        knownOperations.forEach(operation -> operations.put(operation, allEnabled || enabledOperations.contains(operation)));
+        operations.put(ALL_OPERATIONS, allEnabled);
+        return operations;
+    }
+
+    private void event(String operation, Signal<?> signal, long start) {
+        switch (signal.getType()) {
+            case ON_NEXT:
+                event(operation, "onNext", start, signal.get());
+                break;
+            case ON_ERROR:
+                event(operation, "onError", start, signal.getThrowable());
+                break;
+            case ON_COMPLETE:
+                event(operation, "onComplete", start, null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void event(String operation, String signal, long start, Object value) {
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (value == null) {
+            LOG.info("operation={} signal={} elapsedMs={}", operation, signal, elapsedMs);
+        } else {
+            LOG.info("operation={} signal={} elapsedMs={} value={}", operation, signal, elapsedMs, value);
+        }
+    }
+}
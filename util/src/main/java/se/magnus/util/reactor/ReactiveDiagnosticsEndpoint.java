@@ -0,0 +1,38 @@
+package se.magnus.util.reactor;
+
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lists and toggles the operations logged by {@link ReactiveDiagnostics} on /actuator/reactivediagnostics, e.g.:
+ *
+ * curl -X POST localhost/actuator/reactivediagnostics/ProductService.getProduct -H "Content-Type: application/json" -d '{"enabled":true}'
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+@Endpoint(id = "reactivediagnostics")
+public class ReactiveDiagnosticsEndpoint {
+
+    private final ReactiveDiagnostics diagnostics;
+
+    @Autowired
+    public ReactiveDiagnosticsEndpoint(ReactiveDiagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    @ReadOperation
+    public Map<String, Boolean> operations() {
+        return diagnostics.getOperations();
+    }
+
+    @WriteOperation
+    public void configure(@Selector String operation, boolean enabled) {
+        diagnostics.setEnabled(operation, enabled);
+    }
+}
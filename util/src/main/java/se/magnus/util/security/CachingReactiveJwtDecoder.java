@@ -0,0 +1,113 @@
+package se.magnus.util.security;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Caches successfully decoded and verified JWTs, so that the signature of a token only is verified the first time it
+ * is seen.
+ *
+ * Tokens are looked up by their SHA-256 hash, the tokens themselves are never kept as keys. A cached token expires
+ * when the token itself expires, or after maxTimeToLive if that comes first. At most maxSize tokens are kept, beyond
+ * that Caffeine evicts the tokens that are least likely to be used again. Lookups do not lock, so the cache does not
+ * serialize the authenticated requests. Tokens that fail to decode or validate are never cached.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingReactiveJwtDecoder.class);
+
+    private final ReactiveJwtDecoder delegate;
+    private final Duration maxTimeToLive;
+    private final Clock clock;
+    private final Cache<String, CachedJwt> cache;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, int maxSize, Duration maxTimeToLive) {
+        this(delegate, maxSize, maxTimeToLive, Clock.systemUTC());
+    }
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, int maxSize, Duration maxTimeToLive, Clock clock) {
+        this.delegate = delegate;
+        this.maxTimeToLive = maxTimeToLive;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedJwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedJwt cached, long currentTime) {
+                        return Math.max(0, Duration.between(clock.instant(), cached.expiresAt).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedJwt cached, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, cached, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedJwt cached, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(() -> TimeUnit.MILLISECONDS.toNanos(clock.millis()))
+                .build();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        String key = hash(token);
+
+        CachedJwt cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached.jwt);
+        }
+
+        return delegate.decode(token).doOnNext(jwt -> {
+            Instant expiresAt = clock.instant().plus(maxTimeToLive);
+            if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isBefore(expiresAt)) {
+                expiresAt = jwt.getExpiresAt();
+            }
+            LOG.debug("Caching verified JWT with subject: {}, until: {}", jwt.getSubject(), expiresAt);
+            cache.put(key, new CachedJwt(jwt, expiresAt));
+        });
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException nsae) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    private static class CachedJwt {
+
+        private final Jwt jwt;
+        private final Instant expiresAt;
+
+        CachedJwt(Jwt jwt, Instant expiresAt) {
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package se.magnus.util.security;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+/**
+ * The JWT decoder of the resource servers, i.e. the gateway and the product composite service. Only applies to
+ * applications that have spring-security-oauth2-jose on the classpath and a JWK set URI configured.
+ */
+@Configuration
+@ConditionalOnClass(NimbusReactiveJwtDecoder.class)
+public class JwtDecoderConfig {
+
+    /**
+     * The JWK set of the authorization server. A bean of its own so that its background refresh is stopped when the
+     * application context is closed.
+     */
+    @Bean
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.jwk-set-uri")
+    public RefreshingJwkSetSource jwkSetSource(
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+            @Value("${app.jwt.jwk-set-refresh-interval:5m}") Duration jwkSetRefreshInterval,
+            @Value("${app.jwt.jwk-set-min-refresh-interval:30s}") Duration jwkSetMinRefreshInterval) {
+        return new RefreshingJwkSetSource(WebClient.create(), jwkSetUri, jwkSetRefreshInterval, jwkSetMinRefreshInterval);
+    }
+
+    /**
+     * Verifies JWTs using a JWK set that is kept in memory and refreshed in the background, and caches verified tokens
+     * until they expire, so signatures normally are only verified once per token.
+     */
+    @Bean
+    @ConditionalOnProperty("spring.security.oauth2.resourceserver.jwt.jwk-set-uri")
+    public ReactiveJwtDecoder jwtDecoder(
+            RefreshingJwkSetSource jwkSetSource,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri,
+            @Value("${app.jwt.cache-max-size:10000}") int cacheMaxSize,
+            @Value("${app.jwt.cache-max-time-to-live:1h}") Duration cacheMaxTimeToLive) {
+
+        NimbusReactiveJwtDecoder decoder = NimbusReactiveJwtDecoder
+                .withJwkSource(jwkSetSource)
+                .build();
+        if (!issuerUri.isEmpty()) {
+            decoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(issuerUri));
+        }
+        return new CachingReactiveJwtDecoder(decoder, cacheMaxSize, cacheMaxTimeToLive);
+    }
+}
@@ -0,0 +1,143 @@
+package se.magnus.util.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A source of signing keys, for use with NimbusReactiveJwtDecoder.withJwkSource, that keeps the JWK set of the
+ * authorization server in memory.
+ *
+ * The JWK set is loaded on first use and is from then on refreshed in the background at a fixed interval, so verifying
+ * a token normally never waits for the authorization server. If a token is signed with a key that is not known, e.g.
+ * after a key rotation, the JWK set is reloaded at once, but not more often than minRefreshInterval to protect the
+ * authorization server from tokens with made up key ids. Concurrent reloads are collapsed into one request.
+ *
+ * The background refresh is stopped when the source is destroyed, so it should be registered as a bean.
+ */
+public class RefreshingJwkSetSource implements Function<SignedJWT, Flux<JWK>>, DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RefreshingJwkSetSource.class);
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+
+    private final AtomicReference<Mono<JWKSet>> ongoingRefresh = new AtomicReference<>();
+    private final AtomicBoolean backgroundRefreshStarted = new AtomicBoolean(false);
+
+    private volatile Disposable backgroundRefresh;
+    private volatile boolean destroyed = false;
+    private volatile JWKSet jwkSet;
+    private volatile long refreshedAt = 0;
+
+    public RefreshingJwkSetSource(WebClient webClient, String jwkSetUri, Duration refreshInterval, Duration minRefreshInterval) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+
+        JWKSet current = jwkSet;
+        if (current == null) {
+            return refresh().flatMapIterable(selector::select);
+        }
+
+        List<JWK> keys = selector.select(current);
+        if (keys.isEmpty() && System.currentTimeMillis() - refreshedAt > minRefreshInterval.toMillis()) {
+            LOG.info("No matching key found for key id: {}, reloads the JWK set", jwt.getHeader().getKeyID());
+            return refresh().flatMapIterable(selector::select);
+        }
+        return Flux.fromIterable(keys);
+    }
+
+    private Mono<JWKSet> refresh() {
+        Mono<JWKSet> refresh = ongoingRefresh.get();
+        if (refresh != null) {
+            return refresh;
+        }
+
+        Mono<JWKSet> newRefresh = loadJwkSet()
+                .doOnNext(loaded -> {
+                    jwkSet = loaded;
+                    refreshedAt = System.currentTimeMillis();
+                    startBackgroundRefresh();
+                })
+                .doFinally(signal -> ongoingRefresh.set(null))
+                .cache();
+
+        if (ongoingRefresh.compareAndSet(null, newRefresh)) {
+            return newRefresh;
+        }
+        Mono<JWKSet> otherRefresh = ongoingRefresh.get();
+        return otherRefresh != null ? otherRefresh : newRefresh;
+    }
+
+    private Mono<JWKSet> loadJwkSet() {
+        LOG.debug("Loads the JWK set from: {}", jwkSetUri);
+        return webClient.get().uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(this::parse);
+    }
+
+    private JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException pe) {
+            throw new IllegalStateException("Invalid JWK set received from " + jwkSetUri, pe);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Disposable refresh = backgroundRefresh;
+        if (refresh != null) {
+            LOG.info("Stops refreshing the JWK set from {}", jwkSetUri);
+            refresh.dispose();
+        }
+    }
+
+    boolean isBackgroundRefreshRunning() {
+        Disposable refresh = backgroundRefresh;
+        return refresh != null && !refresh.isDisposed();
+    }
+
+    private void startBackgroundRefresh() {
+        if (destroyed || !backgroundRefreshStarted.compareAndSet(false, true)) {
+            return;
+        }
+
+        LOG.info("Refreshes the JWK set from {} every {}", jwkSetUri, refreshInterval);
+        backgroundRefresh = Flux.interval(refreshInterval, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh()
+                        .onErrorResume(ex -> {
+                            // Keep using the keys we have, a new attempt is made at the next interval
+                            LOG.warn("Failed to refresh the JWK set from {}: {}", jwkSetUri, ex.toString());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+}
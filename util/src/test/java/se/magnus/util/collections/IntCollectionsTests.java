@@ -0,0 +1,157 @@
+package se.magnus.util.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class IntCollectionsTests {
+
+    @Test
+    void mapPutGetAndRemove() {
+        IntObjectHashMap<String> map = new IntObjectHashMap<>();
+
+        assertThat(map.put(1, "a")).isNull();
+        assertThat(map.put(0, "zero")).isNull();
+        assertThat(map.put(-1, "minus")).isNull();
+        assertThat(map.put(1, "b")).isEqualTo("a");
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.get(1)).isEqualTo("b");
+        assertThat(map.get(0)).isEqualTo("zero");
+        assertThat(map.get(-1)).isEqualTo("minus");
+        assertThat(map.get(2)).isNull();
+
+        assertThat(map.remove(0)).isEqualTo("zero");
+        assertThat(map.remove(0)).isNull();
+        assertThat(map.remove(1)).isEqualTo("b");
+        assertThat(map.size()).isEqualTo(1);
+
+        map.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(-1)).isNull();
+
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void mapCompute() {
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+
+        assertThat(map.compute(5, v -> v == null ? 1 : v + 1)).isEqualTo(1);
+        assertThat(map.compute(5, v -> v == null ? 1 : v + 1)).isEqualTo(2);
+        assertThat(map.compute(5, v -> null)).isNull();
+        assertThat(map.containsKey(5)).isFalse();
+        assertThat(map.compute(6, v -> null)).isNull();
+        assertThat(map.isEmpty()).isTrue();
+
+        assertThat(map.computeIfAbsent(7, key -> key * 2)).isEqualTo(14);
+        assertThat(map.computeIfAbsent(7, key -> 0)).isEqualTo(14);
+    }
+
+    @Test
+    void mapAgreesWithHashMap() {
+        IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        // A small key range gives long clusters and exercises the backward shift of removes
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(5000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+
+        Map<Integer, Integer> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void setAgreesWithHashSet() {
+        IntHashSet set = new IntHashSet(4);
+        Set<Integer> expected = new HashSet<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            int value = random.nextInt(5000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(set.add(value)).isEqualTo(expected.add(value));
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        for (int value = -100; value < 4900; value++) {
+            assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+        }
+
+        Set<Integer> actual = new HashSet<>();
+        set.forEach(actual::add);
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    @Test
+    void concurrentUpdatesAreAtomic() throws InterruptedException {
+        ConcurrentIntObjectHashMap<Integer> map = new ConcurrentIntObjectHashMap<>(0, 4);
+        ConcurrentIntHashSet set = new ConcurrentIntHashSet(0, 4);
+        AtomicInteger added = new AtomicInteger();
+
+        int threads = 8;
+        int keys = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int key = 0; key < keys; key++) {
+                    map.compute(key, v -> v == null ? 1 : v + 1);
+                    if (set.add(key)) {
+                        added.incrementAndGet();
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(map.size()).isEqualTo(keys);
+        assertThat(set.size()).isEqualTo(keys);
+        assertThat(added.get()).isEqualTo(keys);
+        for (int key = 0; key < keys; key++) {
+            assertThat(map.get(key)).isEqualTo(threads);
+        }
+
+        map.clear();
+        set.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(set.isEmpty()).isTrue();
+    }
+
+    @Test
+    void stripesMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentIntObjectHashMap<>(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentIntHashSet(0, 0));
+        assertThat(new ConcurrentIntObjectHashMap<String>(0, 1).put(1, "a")).isNull();
+    }
+}
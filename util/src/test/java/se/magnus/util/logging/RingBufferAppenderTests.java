@@ -0,0 +1,139 @@
+package se.magnus.util.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RingBufferAppenderTests {
+
+    private final LoggerContext context = new LoggerContext();
+    private final Logger logger = context.getLogger("test");
+    private RingBufferAppender appender;
+
+    @AfterEach
+    void tearDown() {
+        context.stop();
+    }
+
+    @Test
+    void writesAllEventsOfAllThreadsInOrder() throws InterruptedException {
+        ListAppender<ILoggingEvent> target = new ListAppender<>();
+        start(target, 1024, 0);
+
+        int threads = 4;
+        int eventsPerThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < eventsPerThread; i++) {
+                    logger.warn("{} {}", thread, i);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        appender.stop();
+
+        long dropped = appender.getDroppedCount(Level.WARN);
+        assertThat(target.list.size() + dropped).isEqualTo(threads * eventsPerThread);
+
+        // The events of each thread are written in the order they were logged
+        int[] next = new int[threads];
+        for (ILoggingEvent event : target.list) {
+            String[] values = event.getFormattedMessage().split(" ");
+            int thread = Integer.parseInt(values[0]);
+            int i = Integer.parseInt(values[1]);
+            assertThat(i).isGreaterThanOrEqualTo(next[thread]);
+            next[thread] = i + 1;
+        }
+    }
+
+    @Test
+    void dropsEventsInsteadOfBlocking() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> written = new ArrayList<>();
+        AppenderBase<ILoggingEvent> blocked = new AppenderBase<ILoggingEvent>() {
+            @Override
+            protected void append(ILoggingEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.add(event.getFormattedMessage());
+            }
+        };
+        start(blocked, 16, 4);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            logger.info("info {}", i);
+        }
+        for (int i = 0; i < 100; i++) {
+            logger.error("error {}", i);
+        }
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start)).isLessThan(5);
+
+        // The worker holds one event, the info events leave room for 4 events in the ring buffer
+        assertThat(appender.getDroppedCount(Level.INFO)).isBetween(100L - 13, 100L - 12);
+        assertThat(appender.getDroppedCount(Level.ERROR)).isBetween(100L - 5, 100L - 4);
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        new LoggingMetrics().bindTo(registry, context);
+        assertThat(registry.get(LoggingMetrics.DROPPED_COUNTER).tag("appender", "RING").tag("level", "INFO")
+                .functionCounter().count()).isEqualTo(appender.getDroppedCount(Level.INFO));
+        assertThat(registry.get(LoggingMetrics.QUEUED_GAUGE).gauge().value()).isGreaterThan(0);
+
+        release.countDown();
+        appender.stop();
+        assertThat(written).hasSize((int) (200 - appender.getDroppedCount(Level.INFO) - appender.getDroppedCount(Level.ERROR)));
+        assertThat(written).contains("info 0", "error 0");
+    }
+
+    @Test
+    void capacityMustBeAPowerOfTwo() {
+        ListAppender<ILoggingEvent> target = new ListAppender<>();
+        target.setContext(context);
+        target.start();
+        appender = new RingBufferAppender();
+        appender.setContext(context);
+        appender.setCapacity(1000);
+        appender.addAppender(target);
+        appender.start();
+
+        assertThat(appender.isStarted()).isFalse();
+    }
+
+    private void start(AppenderBase<ILoggingEvent> target, int capacity, int discardingThreshold) {
+        target.setContext(context);
+        target.start();
+
+        appender = new RingBufferAppender();
+        appender.setName("RING");
+        appender.setContext(context);
+        appender.setCapacity(capacity);
+        appender.setDiscardingThreshold(discardingThreshold);
+        appender.addAppender(target);
+        appender.start();
+
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+    }
+}
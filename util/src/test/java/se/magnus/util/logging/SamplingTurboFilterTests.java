@@ -0,0 +1,70 @@
+package se.magnus.util.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SamplingTurboFilterTests {
+
+    private final LoggerContext context = new LoggerContext();
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setLoggers("org.hibernate.SQL, se.magnus.noisy");
+        filter.setRate(10);
+        filter.setContext(context);
+        filter.start();
+        context.addTurboFilter(filter);
+
+        appender.setContext(context);
+        appender.start();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+    }
+
+    @Test
+    void samplesEventsBelowWarn() {
+        Logger logger = context.getLogger("org.hibernate.SQL");
+        for (int i = 0; i < 100; i++) {
+            logger.info("select {}", i);
+        }
+
+        assertThat(appender.list).hasSize(10);
+        assertThat(appender.list.get(0).getFormattedMessage()).isEqualTo("select 0");
+        assertThat(appender.list.get(1).getFormattedMessage()).isEqualTo("select 10");
+    }
+
+    @Test
+    void logsWarningsAndOtherLoggers() {
+        Logger noisy = context.getLogger("se.magnus.noisy.Service");
+        Logger other = context.getLogger("se.magnus.noisyButNotSampled");
+        for (int i = 0; i < 100; i++) {
+            noisy.warn("warning {}", i);
+            other.info("info {}", i);
+        }
+
+        assertThat(appender.list).hasSize(200);
+    }
+
+    @Test
+    void disabledLevelsAreNotCounted() {
+        Logger logger = context.getLogger("se.magnus.noisy.Service");
+        for (int i = 0; i < 100; i++) {
+            logger.debug("debug {}", i);
+            assertThat(logger.isInfoEnabled()).isTrue();
+        }
+        logger.info("first");
+        logger.info("second");
+
+        assertThat(appender.list).extracting(ILoggingEvent::getFormattedMessage).containsExactly("first");
+    }
+}
@@ -0,0 +1,147 @@
+package se.magnus.util.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.magnus.api.event.Event.Type.CREATE;
+import static se.magnus.util.metrics.ServiceMetrics.DEAD_LETTER_COUNTER;
+import static se.magnus.util.metrics.ServiceMetrics.EVENT_COUNTER;
+import static se.magnus.util.metrics.ServiceMetrics.INTEGRATION_TIMER;
+import static se.magnus.util.metrics.ServiceMetrics.MESSAGE_TIMER;
+import static se.magnus.util.metrics.ServiceMetrics.REPOSITORY_TIMER;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.repository.Repository;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import se.magnus.api.event.Event;
+
+class ServiceMetricsTests {
+
+    private MeterRegistry registry;
+    private ServiceMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new ServiceMetrics(registry, "test");
+    }
+
+    @Test
+    void timesReactiveCallsWithOutcome() {
+        assertThat(metrics.time(INTEGRATION_TIMER, "product", "getProduct", Mono.just(1)).block()).isEqualTo(1);
+        Mono<Object> failing = metrics.time(INTEGRATION_TIMER, "product", "getProduct", Mono.error(new IllegalStateException()));
+        assertThrows(IllegalStateException.class, failing::block);
+        assertThat(metrics.time(INTEGRATION_TIMER, "review", "getReviews", Flux.range(1, 10)).take(1).collectList().block()).containsExactly(1);
+
+        assertThat(timer(INTEGRATION_TIMER, "product", "getProduct", "success").count()).isEqualTo(1);
+        assertThat(timer(INTEGRATION_TIMER, "product", "getProduct", "error").count()).isEqualTo(1);
+        assertThat(timer(INTEGRATION_TIMER, "review", "getReviews", "cancelled").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesFromSubscription() {
+        Mono<Integer> mono = metrics.time(INTEGRATION_TIMER, "product", "getProduct", Mono.just(1));
+        assertThat(registry.find(INTEGRATION_TIMER).timer()).isNull();
+
+        mono.block();
+        mono.block();
+        assertThat(timer(INTEGRATION_TIMER, "product", "getProduct", "success").count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsProcessedAndFailedEvents() {
+        Event<Integer, String> event = new Event<>(CREATE, 1, "data");
+
+        metrics.processEvent(event, () -> { });
+        assertThrows(IllegalStateException.class, () -> metrics.processEvent(event, () -> {
+            throw new IllegalStateException();
+        }));
+
+        assertThat(registry.get(EVENT_COUNTER).tags("service", "test", "type", "CREATE", "outcome", "processed").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get(EVENT_COUNTER).tags("service", "test", "type", "CREATE", "outcome", "failed").counter().count()).isEqualTo(1.0);
+        assertThat(timer(MESSAGE_TIMER, "test", "CREATE", "success").count()).isEqualTo(1);
+        assertThat(timer(MESSAGE_TIMER, "test", "CREATE", "error").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesRepositoryCalls() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("serviceMetrics", metrics);
+        RepositoryMetricsPostProcessor postProcessor = new RepositoryMetricsPostProcessor(beanFactory.getBeanProvider(ServiceMetrics.class));
+
+        TestRepository repository = (TestRepository) postProcessor.postProcessAfterInitialization(new TestRepositoryImpl(), "testRepository");
+
+        Mono<String> found = repository.findById(1);
+        assertThat(registry.find(REPOSITORY_TIMER).timer()).isNull();
+        assertThat(found.block()).isEqualTo("1");
+        assertThat(repository.count()).isEqualTo(42);
+        assertThrows(IllegalArgumentException.class, () -> repository.deleteById(1));
+
+        assertThat(timer(REPOSITORY_TIMER, "test", "findById", "success").count()).isEqualTo(1);
+        assertThat(timer(REPOSITORY_TIMER, "test", "count", "success").count()).isEqualTo(1);
+        assertThat(timer(REPOSITORY_TIMER, "test", "deleteById", "error").count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsDeadLetteredMessages() {
+        MessagingErrorMetrics errorMetrics = new MessagingErrorMetrics(null, metrics);
+
+        errorMetrics.onError(new ErrorMessage(new MessagingException(
+                MessageBuilder.withPayload("payload").setHeader("amqp_consumedQueue", "products.productsGroup").build(),
+                "Failed", new IllegalStateException("root cause"))));
+
+        assertThat(registry.get(DEAD_LETTER_COUNTER)
+                .tags("service", "test", "destination", "products.productsGroup", "exception", "IllegalStateException")
+                .counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void ignoresErrorsOfMessagesNotConsumed() {
+        MessagingErrorMetrics errorMetrics = new MessagingErrorMetrics(null, metrics);
+
+        errorMetrics.onError(new ErrorMessage(new MessagingException(
+                MessageBuilder.withPayload("payload").build(), "Failed to send", new IllegalStateException("root cause"))));
+        errorMetrics.onError(new ErrorMessage(new IllegalStateException("poller failed")));
+
+        assertThat(registry.find(DEAD_LETTER_COUNTER).counter()).isNull();
+    }
+
+    private Timer timer(String name, String service, String operation, String outcome) {
+        return registry.get(name).tags("service", service, "operation", operation, "outcome", outcome).timer();
+    }
+
+    interface TestRepository extends Repository<String, Integer> {
+
+        Mono<String> findById(int id);
+
+        long count();
+
+        void deleteById(int id);
+    }
+
+    static class TestRepositoryImpl implements TestRepository {
+
+        @Override
+        public Mono<String> findById(int id) {
+            return Mono.just(String.valueOf(id));
+        }
+
+        @Override
+        public long count() {
+            return 42;
+        }
+
+        @Override
+        public void deleteById(int id) {
+            throw new IllegalArgumentException();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package se.magnus.util.mongo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static se.magnus.util.mongo.MongoClientConfig.POOL_MAX_SIZE_GAUGE;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.WriteConcern;
+import com.mongodb.connection.ConnectionPoolSettings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+class MongoClientConfigTests {
+
+    @Test
+    void customizesPoolAndWriteConcern() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("registry", registry);
+
+        MongoClientSettings.Builder builder = MongoClientSettings.builder();
+        new MongoClientConfig().mongoClientTuning(5, 50, Duration.ofSeconds(2), Duration.ofMinutes(5), Duration.ZERO,
+                "majority", Duration.ofSeconds(5), beanFactory.getBeanProvider(MeterRegistry.class)).customize(builder);
+        MongoClientSettings settings = builder.build();
+
+        ConnectionPoolSettings pool = settings.getConnectionPoolSettings();
+        assertThat(pool.getMinSize()).isEqualTo(5);
+        assertThat(pool.getMaxSize()).isEqualTo(50);
+        assertThat(pool.getMaxWaitTime(TimeUnit.MILLISECONDS)).isEqualTo(2000);
+        assertThat(pool.getMaxConnectionIdleTime(TimeUnit.MINUTES)).isEqualTo(5);
+        assertThat(pool.getMaxConnectionLifeTime(TimeUnit.MILLISECONDS)).isZero();
+
+        assertThat(settings.getWriteConcern()).isEqualTo(WriteConcern.MAJORITY.withWTimeout(5, TimeUnit.SECONDS));
+        assertThat(registry.get(POOL_MAX_SIZE_GAUGE).gauge().value()).isEqualTo(50);
+    }
+
+    @Test
+    void writeConcernByName() {
+        assertThat(MongoClientConfig.writeConcern("acknowledged", Duration.ZERO)).isEqualTo(WriteConcern.ACKNOWLEDGED);
+        assertThat(MongoClientConfig.writeConcern("W2", Duration.ZERO)).isEqualTo(WriteConcern.W2);
+        assertThrows(IllegalArgumentException.class, () -> MongoClientConfig.writeConcern("most", Duration.ZERO));
+    }
+}
@@ -0,0 +1,50 @@
+package se.magnus.util.reactor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReactiveDiagnosticsTests {
+
+    @Test
+    void disabledOperationReturnsSamePublisher() {
+        ReactiveDiagnostics diagnostics = new ReactiveDiagnostics(new String[0]);
+
+        Mono<Integer> mono = Mono.just(1);
+        Flux<Integer> flux = Flux.just(1, 2);
+
+        assertThat(diagnostics.log("Test.mono", mono)).isSameAs(mono);
+        assertThat(diagnostics.log("Test.flux", flux)).isSameAs(flux);
+        assertThat(diagnostics.getOperations()).containsEntry("Test.mono", false).containsEntry("Test.flux", false);
+    }
+
+    @Test
+    void enabledOperationPassesSignalsThrough() {
+        ReactiveDiagnostics diagnostics = new ReactiveDiagnostics(new String[] {" Test.flux ", ""});
+
+        Flux<Integer> flux = Flux.just(1, 2);
+        Flux<Integer> logged = diagnostics.log("Test.flux", flux);
+
+        assertThat(logged).isNotSameAs(flux);
+        assertThat(logged.collectList().block()).containsExactly(1, 2);
+    }
+
+    @Test
+    void toggleAtRuntime() {
+        ReactiveDiagnostics diagnostics = new ReactiveDiagnostics(new String[0]);
+
+        diagnostics.setEnabled("Test.mono", true);
+        assertThat(diagnostics.isEnabled("Test.mono")).isTrue();
+        assertThat(diagnostics.isEnabled("Test.other")).isFalse();
+
+        diagnostics.setEnabled(ReactiveDiagnostics.ALL_OPERATIONS, true);
+        assertThat(diagnostics.isEnabled("Test.other")).isTrue();
+
+        diagnostics.setEnabled(ReactiveDiagnostics.ALL_OPERATIONS, false);
+        diagnostics.setEnabled("Test.mono", false);
+        assertThat(diagnostics.isEnabled("Test.mono")).isFalse();
+        assertThat(diagnostics.getOperations()).containsEntry(ReactiveDiagnostics.ALL_OPERATIONS, false);
+    }
+}
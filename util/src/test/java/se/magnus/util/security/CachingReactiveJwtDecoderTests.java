@@ -0,0 +1,130 @@
+package se.magnus.util.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+class CachingReactiveJwtDecoderTests {
+
+    private static final Instant NOW = Instant.parse("2021-07-01T10:00:00Z");
+
+    private final AtomicInteger decodeCalls = new AtomicInteger();
+
+    private Instant expiresAt;
+    private MutableClock clock;
+
+    private final ReactiveJwtDecoder delegate = token -> {
+        decodeCalls.incrementAndGet();
+        if (token.startsWith("invalid")) {
+            return Mono.error(new BadJwtException("Invalid token"));
+        }
+        return Mono.just(Jwt.withTokenValue(token).header("alg", "RS256").subject("writer")
+                .issuedAt(NOW).expiresAt(expiresAt).build());
+    };
+
+    @BeforeEach
+    void setUp() {
+        decodeCalls.set(0);
+        expiresAt = NOW.plusSeconds(60);
+        clock = new MutableClock(NOW);
+    }
+
+    @Test
+    void decodesEachTokenOnce() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(delegate, 10, Duration.ofHours(1), clock);
+
+        Jwt first = decoder.decode("token-1").block();
+        Jwt second = decoder.decode("token-1").block();
+        decoder.decode("token-2").block();
+
+        assertSame(first, second);
+        assertEquals(2, decodeCalls.get());
+    }
+
+    @Test
+    void expiresWithToken() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(delegate, 10, Duration.ofHours(1), clock);
+
+        decoder.decode("token-1").block();
+        clock.instant = NOW.plusSeconds(59);
+        decoder.decode("token-1").block();
+        assertEquals(1, decodeCalls.get());
+
+        clock.instant = NOW.plusSeconds(60);
+        decoder.decode("token-1").block();
+        assertEquals(2, decodeCalls.get());
+    }
+
+    @Test
+    void expiresAfterMaxTimeToLive() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(delegate, 10, Duration.ofSeconds(10), clock);
+
+        decoder.decode("token-1").block();
+        clock.instant = NOW.plusSeconds(9);
+        decoder.decode("token-1").block();
+        assertEquals(1, decodeCalls.get());
+
+        clock.instant = NOW.plusSeconds(10);
+        decoder.decode("token-1").block();
+        assertEquals(2, decodeCalls.get());
+    }
+
+    @Test
+    void keepsAtMostMaxSizeTokens() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(delegate, 2, Duration.ofHours(1), clock);
+
+        decoder.decode("token-1").block();
+        decoder.decode("token-2").block();
+        decoder.decode("token-1").block();
+        decoder.decode("token-3").block();
+        assertEquals(2L, decoder.size());
+        assertEquals(3, decodeCalls.get());
+    }
+
+    @Test
+    void doesNotCacheInvalidTokens() {
+        CachingReactiveJwtDecoder decoder = new CachingReactiveJwtDecoder(delegate, 10, Duration.ofHours(1), clock);
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("invalid-1").block());
+        assertThrows(BadJwtException.class, () -> decoder.decode("invalid-1").block());
+        assertEquals(2, decodeCalls.get());
+        assertEquals(0L, decoder.size());
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
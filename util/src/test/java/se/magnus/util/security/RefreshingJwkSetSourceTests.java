@@ -0,0 +1,60 @@
+package se.magnus.util.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+class RefreshingJwkSetSourceTests {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private final WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                loads.incrementAndGet();
+                return Mono.just(ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body("{\"keys\":[]}")
+                        .build());
+            })
+            .build();
+
+    private final SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("key-1").build(),
+            new JWTClaimsSet.Builder().subject("writer").build());
+
+    @Test
+    void stopsBackgroundRefreshWhenDestroyed() {
+        RefreshingJwkSetSource source = new RefreshingJwkSetSource(webClient, "http://auth-server/jwks",
+                Duration.ofHours(1), Duration.ofHours(1));
+
+        source.apply(jwt).collectList().block();
+        assertEquals(1, loads.get());
+        assertTrue(source.isBackgroundRefreshRunning());
+
+        source.destroy();
+        assertFalse(source.isBackgroundRefreshRunning());
+    }
+
+    @Test
+    void neverStartsBackgroundRefreshAfterDestroy() {
+        RefreshingJwkSetSource source = new RefreshingJwkSetSource(webClient, "http://auth-server/jwks",
+                Duration.ofHours(1), Duration.ofHours(1));
+
+        source.destroy();
+        source.apply(jwt).collectList().block();
+        assertFalse(source.isBackgroundRefreshRunning());
+    }
+}